@@ -0,0 +1,95 @@
+package com.example.hb.benchmark;
+
+import com.example.hb.service.FileIdCacheService;
+import com.example.hb.service.JournalFileIdStore;
+import com.example.hb.service.MediaDigestService;
+import com.example.hb.service.MediaStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полный путь апдейта: onUpdateReceived → очередь чата → маршрут → планировщик отправки → сериализация запроса.
+ * Одна операция — один апдейт, время включает ожидание ответа в заглушке отправителя.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+
+    private static final int BATCH = 256;
+
+    /** Сколько разных чатов делят пачку апдейтов */
+    @Param({"1", "64"})
+    int chats;
+
+    private Path cacheDir;
+    private StubbedBot bot;
+    private Update[] updates;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        cacheDir = Files.createTempDirectory("dispatch-benchmark");
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        MediaStore mediaStore = new MediaStore(resolver, "media", cacheDir.resolve("media").toString());
+        FileIdCacheService cache = new FileIdCacheService(new SimpleMeterRegistry(),
+                new MediaDigestService(mediaStore),
+                new JournalFileIdStore(cacheDir.resolve("cache.properties"), 200, 100), 600_000, 1000);
+        bot = StubbedBot.create(cache, mediaStore);
+        updates = new Update[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            updates[i] = StubbedBot.textUpdate(1000 + i % chats, StubbedBot.TEXT_TRIGGER);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException, IOException {
+        bot.shutdown();
+        try (var files = Files.walk(cacheDir)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void onUpdateReceived() throws InterruptedException {
+        for (Update update : updates) {
+            bot.onUpdateReceived(update);
+        }
+        bot.sent.acquire(BATCH);
+    }
+
+    /**
+     * Webhook-путь для простого текстового ответа: ответ возвращается в теле HTTP, без очереди
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void onWebhookUpdateReceived(Blackhole blackhole) {
+        for (Update update : updates) {
+            blackhole.consume(bot.onWebhookUpdateReceived(update));
+        }
+    }
+}
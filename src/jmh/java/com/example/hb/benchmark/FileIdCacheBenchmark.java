@@ -0,0 +1,92 @@
+package com.example.hb.benchmark;
+
+import com.example.hb.service.FileIdCacheService;
+import com.example.hb.service.JournalFileIdStore;
+import com.example.hb.service.MediaDigestService;
+import com.example.hb.service.MediaStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FileIdCacheService под конкуренцией: обработчики апдейтов читают File ID,
+ * пока загрузки и инвалидации пишут в кэш (и в журнал).
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileIdCacheBenchmark {
+
+    private static final int KEYS = 64;
+
+    private Path cacheDir;
+    private JournalFileIdStore store;
+    private FileIdCacheService cache;
+    private String[] paths;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        cacheDir = Files.createTempDirectory("file-id-cache-benchmark");
+        store = new JournalFileIdStore(cacheDir.resolve("cache.properties"), 200, 10_000);
+        cache = new FileIdCacheService(new SimpleMeterRegistry(),
+                new MediaDigestService(new MediaStore(new PathMatchingResourcePatternResolver(), "media",
+                        cacheDir.resolve("media").toString())), store, 600_000, 1000);
+        paths = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            paths[i] = "media/benchmark-" + i + ".mp4";
+            cache.saveFileId(paths[i], "FILE_" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        try (var files = Files.walk(cacheDir)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public String get() {
+        return cache.getFileId(paths[ThreadLocalRandom.current().nextInt(KEYS)]);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void save() {
+        int i = ThreadLocalRandom.current().nextInt(KEYS);
+        cache.saveFileId(paths[i], "FILE_" + i);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void remove() {
+        cache.removeFileId(paths[ThreadLocalRandom.current().nextInt(KEYS)]);
+    }
+}
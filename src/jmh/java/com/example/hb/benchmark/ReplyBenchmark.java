@@ -0,0 +1,111 @@
+package com.example.hb.benchmark;
+
+import com.example.hb.bot.ReplyTemplate;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardButton;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение и сериализация ответа: как было (новые SendMessage и клавиатура на каждый ответ)
+ * и с заранее сериализованным шаблоном и общей клавиатурой.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplyBenchmark {
+
+    private static final Long CHAT_ID = 123456789L;
+    private static final String TEXT = "Как я могу тебе помочь?";
+    private static final List<List<String>> BUTTONS =
+            List.of(List.of("малышка оторва", "шанель номер 1"), List.of("шутка"));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ReplyKeyboardMarkup sharedKeyboard;
+    private ReplyTemplate template;
+
+    @Setup
+    public void setUp() {
+        sharedKeyboard = buildKeyboard();
+        SendMessage message = new SendMessage();
+        message.setText(TEXT);
+        message.setReplyMarkup(sharedKeyboard);
+        template = ReplyTemplate.of(message);
+    }
+
+    @Benchmark
+    public ReplyKeyboardMarkup buildKeyboardPerReply() {
+        return buildKeyboard();
+    }
+
+    @Benchmark
+    public SendMessage buildMessagePerReply() {
+        return buildMessage();
+    }
+
+    @Benchmark
+    public Object buildMessageFromTemplate() {
+        return template.forChat(CHAT_ID);
+    }
+
+    @Benchmark
+    public String serializeMessagePerReply() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(buildMessage());
+    }
+
+    @Benchmark
+    public String serializeSharedKeyboardMessage() throws JsonProcessingException {
+        SendMessage message = new SendMessage();
+        message.setChatId(CHAT_ID.toString());
+        message.setText(TEXT);
+        message.setReplyMarkup(sharedKeyboard);
+        return objectMapper.writeValueAsString(message);
+    }
+
+    @Benchmark
+    public String serializeTemplate() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(template.forChat(CHAT_ID));
+    }
+
+    private SendMessage buildMessage() {
+        SendMessage message = new SendMessage();
+        message.setChatId(CHAT_ID.toString());
+        message.setText(TEXT);
+        message.setReplyMarkup(buildKeyboard());
+        return message;
+    }
+
+    private static ReplyKeyboardMarkup buildKeyboard() {
+        ReplyKeyboardMarkup keyboardMarkup = new ReplyKeyboardMarkup();
+        keyboardMarkup.setResizeKeyboard(true);
+        keyboardMarkup.setOneTimeKeyboard(false);
+        List<KeyboardRow> keyboard = new ArrayList<>();
+        for (List<String> row : BUTTONS) {
+            KeyboardRow keyboardRow = new KeyboardRow();
+            row.forEach(button -> keyboardRow.add(new KeyboardButton(button)));
+            keyboard.add(keyboardRow);
+        }
+        keyboardMarkup.setKeyboard(keyboard);
+        return keyboardMarkup;
+    }
+}
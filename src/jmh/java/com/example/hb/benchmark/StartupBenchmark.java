@@ -0,0 +1,180 @@
+package com.example.hb.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Время до первого ответа (time-to-first-update): от запуска процесса бота до первого sendMessage.
+ * Бот запускается отдельным процессом и ходит в заглушку Bot API (telegram.bot.api-url),
+ * которая на первый getUpdates отдаёт /start. Сравниваются обычный jar и сборка профиля fast-start.
+ * Нужны собранные артефакты: mvn -Pfast-start,benchmark package -DskipTests, затем
+ * mvn -Pbenchmark exec:exec@benchmarks -Dbenchmark.args="Startup"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StartupBenchmark {
+
+    private static final String JAR = "hb-0.0.1-SNAPSHOT.jar";
+    private static final String START_UPDATE = """
+            {"ok":true,"result":[{"update_id":1,"message":{"message_id":1,"date":0,
+            "chat":{"id":1000,"type":"private"},"from":{"id":1000,"is_bot":false,"first_name":"Bench"},
+            "text":"/start"}}]}""";
+    private static final String SENT_MESSAGE = """
+            {"ok":true,"result":{"message_id":2,"date":0,"chat":{"id":1000,"type":"private"},"text":"ok"}}""";
+
+    @Param({"jar", "fast-start"})
+    String build;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private Path workDir;
+    private volatile CountDownLatch firstReply;
+    private final AtomicBoolean updateDelivered = new AtomicBoolean();
+    private Process process;
+
+    @Setup(Level.Trial)
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        // getUpdates держит поток, пока «ждёт» апдейтов, — sendMessage нужен свой
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        workDir = Files.createTempDirectory("startup-benchmark");
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() {
+        firstReply = new CountDownLatch(1);
+        updateDelivered.set(false);
+    }
+
+    @Benchmark
+    public void timeToFirstReply() throws IOException, InterruptedException {
+        process = new ProcessBuilder(command())
+                .directory(workDir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(workDir.resolve("bot.log").toFile())
+                .start();
+        if (!firstReply.await(2, TimeUnit.MINUTES)) {
+            throw new IllegalStateException("Bot did not reply, see " + workDir.resolve("bot.log"));
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopBot() throws InterruptedException {
+        if (process != null) {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopServer() throws IOException {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        try (var files = Files.walk(workDir)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    private List<String> command() {
+        Path target = Paths.get("target").toAbsolutePath();
+        List<String> command = new ArrayList<>(List.of(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString()));
+        if ("fast-start".equals(build)) {
+            Path dir = target.resolve("fast-start");
+            requireExists(dir.resolve("app.jsa"));
+            command.addAll(List.of("-XX:SharedArchiveFile=" + dir.resolve("app.jsa"), "-Dspring.aot.enabled=true",
+                    "-jar", dir.resolve(JAR).toString()));
+        } else {
+            requireExists(target.resolve(JAR));
+            command.addAll(List.of("-jar", target.resolve(JAR).toString()));
+        }
+        command.addAll(List.of(
+                "--server.port=0",
+                "--telegram.bot.token=123456:benchmark",
+                "--telegram.bot.username=benchmark_bot",
+                "--telegram.bot.api-url=http://127.0.0.1:" + server.getAddress().getPort(),
+                "--telegram.preload.enabled=false",
+                "--telegram.cache.file=" + workDir.resolve("file-id-cache.properties"),
+                "--telegram.media.store-dir=" + workDir.resolve("media")));
+        return command;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestURI().getPath();
+        method = method.substring(method.lastIndexOf('/') + 1).toLowerCase();
+        exchange.getRequestBody().readAllBytes();
+        String body;
+        switch (method) {
+            case "getupdates" -> {
+                if (updateDelivered.compareAndSet(false, true)) {
+                    body = START_UPDATE;
+                } else {
+                    sleepQuietly();
+                    body = "{\"ok\":true,\"result\":[]}";
+                }
+            }
+            case "sendmessage" -> {
+                firstReply.countDown();
+                body = SENT_MESSAGE;
+            }
+            default -> body = "{\"ok\":true,\"result\":true}";
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void sleepQuietly() {
+        try {
+            Thread.sleep(200);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void requireExists(Path path) {
+        if (!Files.exists(path)) {
+            throw new IllegalStateException(path + " not found, build it with mvn -Pfast-start package -DskipTests");
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.hb.benchmark;
+
+import com.example.hb.bot.EvgenBot;
+import com.example.hb.bot.ReplyTemplates;
+import com.example.hb.bot.RouteAction;
+import com.example.hb.bot.RouteTable;
+import com.example.hb.bot.UpdateCoalescer;
+import com.example.hb.bot.UpdateDispatcher;
+import com.example.hb.config.RouteProperties;
+import com.example.hb.config.RouteProperties.RouteDefinition;
+import com.example.hb.config.TelegramBotConfig;
+import com.example.hb.service.FileIdCacheService;
+import com.example.hb.service.JournalSubscriberStore;
+import com.example.hb.service.MediaStore;
+import com.example.hb.service.PriorityTaskExecutor;
+import com.example.hb.service.StartupTimings;
+import com.example.hb.service.SubscriberRegistry;
+import com.example.hb.service.TelegramSendScheduler;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Бот без сети: запрос к API сериализуется так же, как в DefaultAbsSender, но никуда не отправляется.
+ * Планировщик отправки настроен без ограничений, чтобы мерить стоимость обработки, а не лимиты Telegram.
+ */
+class StubbedBot extends EvgenBot {
+
+    static final String TEXT_TRIGGER = "шутка";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /** Разрешение на каждый «отправленный» запрос — бенчмарк ждёт их, чтобы учесть асинхронную обработку */
+    final Semaphore sent = new Semaphore(0);
+
+    private final UpdateDispatcher dispatcher;
+    private final TelegramSendScheduler scheduler;
+
+    private StubbedBot(TelegramBotConfig config, RouteTable routeTable, FileIdCacheService fileIdCacheService,
+                       MediaStore mediaStore, UpdateDispatcher dispatcher, TelegramSendScheduler scheduler,
+                       MeterRegistry meterRegistry) {
+        super(config, routeTable, new ReplyTemplates(routeTable), fileIdCacheService, mediaStore, dispatcher,
+                // Бенчмарк шлёт один и тот же запрос из тех же чатов — схлопывание исказило бы замер
+                new UpdateCoalescer(meterRegistry, false, 0), scheduler,
+                new PriorityTaskExecutor(meterRegistry, 8, 4, 2, 100),
+                new SubscriberRegistry(new JournalSubscriberStore(Path.of("target/benchmark-subscribers.txt")),
+                        meterRegistry, 0),
+                new StartupTimings(meterRegistry), meterRegistry);
+        this.dispatcher = dispatcher;
+        this.scheduler = scheduler;
+    }
+
+    static StubbedBot create(FileIdCacheService fileIdCacheService, MediaStore mediaStore) {
+        TelegramBotConfig config = new TelegramBotConfig();
+        ReflectionTestUtils.setField(config, "botToken", "0:benchmark");
+        ReflectionTestUtils.setField(config, "botUsername", "benchmark_bot");
+
+        RouteDefinition text = new RouteDefinition();
+        text.setAction(RouteAction.TEXT);
+        text.setTriggers(List.of(TEXT_TRIGGER));
+        text.setText("Колобок повесился 🙂");
+        RouteProperties properties = new RouteProperties();
+        properties.getRoutes().put("joke", text);
+        properties.setKeyboard(List.of(List.of("малышка оторва", "шанель номер 1"), List.of(TEXT_TRIGGER)));
+
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UpdateDispatcher dispatcher = new UpdateDispatcher(meterRegistry, 16, 100_000);
+        TelegramSendScheduler scheduler = new TelegramSendScheduler(meterRegistry,
+                1_000_000, 1_000_000, 1_000_000, 1_000_000, 1_000_000, 0, 1_000_000);
+        scheduler.afterPropertiesSet();
+        return new StubbedBot(config, new RouteTable(properties), fileIdCacheService, mediaStore, dispatcher,
+                scheduler, meterRegistry);
+    }
+
+    static Update textUpdate(long chatId, String text) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        chat.setType("private");
+        Message message = new Message();
+        message.setChat(chat);
+        message.setText(text);
+        Update update = new Update();
+        update.setMessage(message);
+        return update;
+    }
+
+    @Override
+    public <T extends Serializable, Method extends BotApiMethod<T>> T execute(Method method)
+            throws TelegramApiException {
+        try {
+            OBJECT_MAPPER.writeValueAsString(method);
+        } catch (JsonProcessingException e) {
+            throw new TelegramApiException("Unable to serialize " + method.getMethod(), e);
+        }
+        sent.release();
+        return null;
+    }
+
+    void shutdown() throws InterruptedException {
+        dispatcher.destroy();
+        scheduler.destroy();
+    }
+}
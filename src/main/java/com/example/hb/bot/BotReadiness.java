@@ -0,0 +1,171 @@
+package com.example.hb.bot;
+
+import com.example.hb.config.TelegramBotConfig;
+import com.example.hb.service.FileIdCacheService;
+import com.example.hb.service.LeaderElection;
+import com.example.hb.service.MediaStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.health.contributor.Health;
+import org.springframework.boot.health.contributor.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Готовность экземпляра принимать пользователей (readiness), в отличие от «процесс жив» (liveness).
+ * Готов, когда бот зарегистрирован (или это резервная реплика, см. LeaderElection) и каждое медиа
+ * отдаётся по File ID из кэша — иначе первый пользователь ждал бы загрузку видео целиком.
+ * Медиа, которое предзагрузка не смогла загрузить, и истёкший telegram.readiness.warmup-timeout-ms
+ * ожидание прогрева снимают: лучше медленный первый ответ, чем реплика, которая никогда не станет готовой.
+ * Раз став готовым, экземпляр из-за кэша обратно не откатывается: устаревший File ID
+ * не должен разом выводить из балансировки все реплики.
+ */
+@Slf4j
+@Component
+public class BotReadiness implements HealthIndicator {
+
+    public enum Registration { PENDING, REGISTERED, FAILED }
+
+    public enum PreloadState { PENDING, RUNNING, DONE, SKIPPED }
+
+    private final TelegramBotConfig config;
+    private final RouteTable routeTable;
+    private final FileIdCacheService fileIdCacheService;
+    private final MediaStore mediaStore;
+    private final LeaderElection leaderElection;
+    private final long warmupDeadline;
+    private final Set<String> failedPreloads = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger preloadTotal = new AtomicInteger();
+    private final AtomicInteger preloadUploaded = new AtomicInteger();
+
+    private volatile Registration registration = Registration.PENDING;
+    private volatile String registrationError;
+    private volatile PreloadState preloadState = PreloadState.PENDING;
+    private volatile boolean warmedUp;
+
+    public BotReadiness(TelegramBotConfig config, RouteTable routeTable, FileIdCacheService fileIdCacheService,
+                        MediaStore mediaStore, LeaderElection leaderElection,
+                        @Value("${telegram.readiness.warmup-timeout-ms:300000}") long warmupTimeoutMs) {
+        this.config = config;
+        this.routeTable = routeTable;
+        this.fileIdCacheService = fileIdCacheService;
+        this.mediaStore = mediaStore;
+        this.leaderElection = leaderElection;
+        this.warmupDeadline = System.currentTimeMillis() + warmupTimeoutMs;
+    }
+
+    public void registered() {
+        registration = Registration.REGISTERED;
+        registrationError = null;
+    }
+
+    public void registrationFailed(String error) {
+        registration = Registration.FAILED;
+        registrationError = error;
+    }
+
+    /**
+     * @param total сколько медиа предстоит загрузить (без уже закэшированных)
+     */
+    public void preloadStarted(int total) {
+        failedPreloads.clear();
+        preloadTotal.set(total);
+        preloadUploaded.set(0);
+        preloadState = PreloadState.RUNNING;
+    }
+
+    public void preloadUploaded() {
+        preloadUploaded.incrementAndGet();
+    }
+
+    public void preloadFailed(Route route) {
+        failedPreloads.add(route.id());
+    }
+
+    public void preloadFinished() {
+        preloadState = PreloadState.DONE;
+    }
+
+    public void preloadSkipped() {
+        preloadState = PreloadState.SKIPPED;
+    }
+
+    public boolean isReady() {
+        return report().ready();
+    }
+
+    @Override
+    public Health health() {
+        Report report = report();
+        return (report.ready() ? Health.up() : Health.outOfService()).withDetails(report.details()).build();
+    }
+
+    /**
+     * Состояние для /health/ready: готовность и подробности по регистрации, предзагрузке и каждому медиа
+     */
+    public Report report() {
+        Map<String, Object> details = new LinkedHashMap<>();
+        boolean standby = !config.isWebhookMode() && registration != Registration.FAILED && !leaderElection.isLeader();
+        boolean registrationReady = registration == Registration.REGISTERED || standby;
+        details.put("registration", standby ? "standby" : lower(registration));
+        if (registrationError != null) {
+            details.put("registrationError", registrationError);
+        }
+        details.put("mode", config.isWebhookMode() ? "webhook" : "polling");
+        details.put("leader", leaderElection.isLeader());
+        details.put("preload", lower(preloadState));
+        if (preloadState == PreloadState.RUNNING || preloadState == PreloadState.DONE) {
+            details.put("preloadProgress", preloadUploaded.get() + "/" + preloadTotal.get());
+        }
+
+        boolean allWarm = true;
+        Map<String, String> media = new LinkedHashMap<>();
+        for (Route route : routeTable.getMediaRoutes()) {
+            String status = mediaStatus(route);
+            media.put(route.id(), status);
+            // Если предзагрузка здесь отключена, прогревать некому — холодное медиа не ждём
+            allWarm &= !"cold".equals(status) || preloadState == PreloadState.SKIPPED;
+        }
+        details.put("media", media);
+
+        if (!warmedUp && registrationReady && allWarm) {
+            warmedUp = true;
+            log.info("Instance is ready: bot registered and all media served from cache");
+        }
+        boolean timedOut = !warmedUp && System.currentTimeMillis() >= warmupDeadline;
+        if (timedOut) {
+            details.put("warmup", "timed out");
+        }
+        return new Report(registrationReady && (warmedUp || timedOut), details);
+    }
+
+    /**
+     * cached / configured — отдаётся без загрузки; missing — файла нет, ждать нечего;
+     * failed — предзагрузка не удалась; cold — ещё не загружено
+     */
+    private String mediaStatus(Route route) {
+        if (route.hasConfiguredFileId()) {
+            return "configured";
+        }
+        if (!mediaStore.exists(route.mediaPath())) {
+            return "missing";
+        }
+        if (fileIdCacheService.hasFileId(route.mediaPath())) {
+            return "cached";
+        }
+        return failedPreloads.contains(route.id()) ? "failed" : "cold";
+    }
+
+    private static String lower(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    public record Report(boolean ready, Map<String, Object> details) {
+    }
+}
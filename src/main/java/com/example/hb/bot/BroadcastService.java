@@ -0,0 +1,426 @@
+package com.example.hb.bot;
+
+import com.example.hb.service.FileIdCacheService;
+import com.example.hb.service.LeaderElection;
+import com.example.hb.service.SubscriberRegistry;
+import com.example.hb.service.TaskPriority;
+import com.example.hb.service.TelegramSendScheduler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
+import org.telegram.telegrambots.meta.api.methods.send.SendVideo;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Рассылка медиа всем подписчикам (см. SubscriberRegistry) по готовому File ID — без повторной загрузки файла.
+ * Скорость задаёт TelegramSendScheduler: рассылка идёт фоновым приоритетом на пределе общего лимита Bot API,
+ * а ответы пользователям его обгоняют. Одновременно в очереди отправки не больше telegram.broadcast.window
+ * сообщений, поэтому память не зависит от числа получателей.
+ * Подписчики обходятся по возрастанию chatId; состояние (последний чат, до которого всё отправлено, и счётчики)
+ * раз в telegram.broadcast.checkpoint-interval-ms сохраняется в хранилище подписчиков. После рестарта или смены
+ * лидера рассылка продолжается с этого места: повторно получат сообщение только чаты из последнего интервала.
+ * Рассылку ведёт только лидер; запустить или отменить её можно с любой реплики — лидер подхватит состояние.
+ */
+@Slf4j
+@Service
+public class BroadcastService implements InitializingBean, DisposableBean {
+
+    public enum Status { RUNNING, FINISHED, CANCELLED }
+
+    enum Outcome { SENT, FAILED, BLOCKED }
+
+    private static final int FORBIDDEN = 403;
+    private static final int BAD_REQUEST = 400;
+
+    private final EvgenBot evgenBot;
+    private final TelegramSendScheduler sendScheduler;
+    private final SubscriberRegistry subscriberRegistry;
+    private final FileIdCacheService fileIdCacheService;
+    private final RouteTable routeTable;
+    private final ReplyTemplates replyTemplates;
+    private final LeaderElection leaderElection;
+    private final int pageSize;
+    private final Semaphore window;
+    private final long checkpointIntervalNanos;
+    private final long pollIntervalMs;
+    private final Map<Outcome, Counter> messageCounters = new EnumMap<>(Outcome.class);
+
+    private ScheduledExecutorService ticker;
+    private volatile Checkpoint current;
+    private volatile boolean running;
+    private volatile boolean stopRequested;
+    private volatile long resumedAtNanos;
+    private volatile long processedAtResume;
+
+    public BroadcastService(EvgenBot evgenBot, TelegramSendScheduler sendScheduler,
+                            SubscriberRegistry subscriberRegistry, FileIdCacheService fileIdCacheService,
+                            RouteTable routeTable, ReplyTemplates replyTemplates, LeaderElection leaderElection,
+                            MeterRegistry meterRegistry,
+                            @Value("${telegram.broadcast.page-size:1000}") int pageSize,
+                            @Value("${telegram.broadcast.window:100}") int window,
+                            @Value("${telegram.broadcast.checkpoint-interval-ms:5000}") long checkpointIntervalMs,
+                            @Value("${telegram.broadcast.poll-ms:5000}") long pollIntervalMs) {
+        this.evgenBot = evgenBot;
+        this.sendScheduler = sendScheduler;
+        this.subscriberRegistry = subscriberRegistry;
+        this.fileIdCacheService = fileIdCacheService;
+        this.routeTable = routeTable;
+        this.replyTemplates = replyTemplates;
+        this.leaderElection = leaderElection;
+        this.pageSize = pageSize;
+        this.window = new Semaphore(window);
+        this.checkpointIntervalNanos = TimeUnit.MILLISECONDS.toNanos(checkpointIntervalMs);
+        this.pollIntervalMs = pollIntervalMs;
+        for (Outcome outcome : Outcome.values()) {
+            messageCounters.put(outcome, Counter.builder("bot.broadcast.messages")
+                    .description("Сообщения рассылки по исходу отправки")
+                    .tag("result", outcome.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+        Gauge.builder("bot.broadcast.running", this, service -> service.running ? 1 : 0)
+                .description("1, если эта реплика сейчас ведёт рассылку")
+                .register(meterRegistry);
+        Gauge.builder("bot.broadcast.recipients", this, service -> service.current != null ? service.current.total() : 0)
+                .description("Получателей в текущей рассылке")
+                .register(meterRegistry);
+        Gauge.builder("bot.broadcast.processed", this, service -> service.current != null ? service.current.processed() : 0)
+                .description("Получателей, которым текущая рассылка уже отправлена (успешно или нет)")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "broadcast");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleWithFixedDelay(this::tickQuietly, pollIntervalMs, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Начать рассылку медиа маршрута всем подписчикам
+     * @throws IllegalArgumentException маршрута нет или он не медиа
+     * @throws IllegalStateException    File ID ещё не получен или другая рассылка не закончена
+     */
+    public synchronized Checkpoint start(String routeId) {
+        Route route = routeTable.getMediaRoutes().stream()
+                .filter(candidate -> candidate.id().equals(routeId))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown media route: " + routeId));
+        String fileId = route.hasConfiguredFileId() ? route.fileId() : fileIdCacheService.getFileId(route.mediaPath());
+        if (fileId == null || fileId.isEmpty()) {
+            throw new IllegalStateException("No File ID for " + routeId + " yet: request it once or wait for preload");
+        }
+        Checkpoint stored = Checkpoint.decode(subscriberRegistry.loadCheckpoint());
+        if (stored != null && stored.status() == Status.RUNNING) {
+            throw new IllegalStateException("Broadcast " + stored.jobId() + " is still running");
+        }
+        Checkpoint checkpoint = new Checkpoint(UUID.randomUUID().toString().substring(0, 8), route.id(), fileId,
+                route.video(), Status.RUNNING, Long.MIN_VALUE, subscriberRegistry.count(), 0, 0, 0);
+        subscriberRegistry.saveCheckpoint(checkpoint.encode());
+        log.info("Broadcast {} of {} to {} subscribers scheduled", checkpoint.jobId(), routeId, checkpoint.total());
+        if (ticker != null) {
+            ticker.execute(this::tickQuietly);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Отменить текущую рассылку. Лидер остановится на ближайшем сохранении состояния.
+     * @return состояние отменённой рассылки или null, если отменять нечего
+     */
+    public synchronized Checkpoint cancel() {
+        Checkpoint stored = Checkpoint.decode(subscriberRegistry.loadCheckpoint());
+        if (stored == null || stored.status() != Status.RUNNING) {
+            return null;
+        }
+        Checkpoint cancelled = stored.withStatus(Status.CANCELLED);
+        subscriberRegistry.saveCheckpoint(cancelled.encode());
+        Checkpoint local = current;
+        if (running && local != null && local.jobId().equals(stored.jobId())) {
+            stopRequested = true;
+        }
+        log.info("Broadcast {} cancelled", stored.jobId());
+        return cancelled;
+    }
+
+    /**
+     * Состояние последней рассылки: у ведущей её реплики — текущее, у остальных — последнее сохранённое
+     */
+    public Map<String, Object> status() {
+        Checkpoint checkpoint = running ? current : Checkpoint.decode(subscriberRegistry.loadCheckpoint());
+        if (checkpoint == null) {
+            return Map.of("status", "none");
+        }
+        Map<String, Object> status = checkpoint.toDetails();
+        status.put("runningHere", running);
+        if (running) {
+            double seconds = (System.nanoTime() - resumedAtNanos) / 1e9;
+            if (seconds > 0) {
+                status.put("perSecond", Math.round((checkpoint.processed() - processedAtResume) / seconds));
+            }
+        }
+        return status;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        stopRequested = true;
+        if (ticker != null) {
+            ticker.shutdown();
+            ticker.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Лидер без активной рассылки проверяет, не ждёт ли незаконченная; если ждёт — ведёт её до конца,
+     * отмены или потери лидерства
+     */
+    void tick() throws InterruptedException {
+        if (running || !leaderElection.isLeader()) {
+            return;
+        }
+        Checkpoint stored = Checkpoint.decode(subscriberRegistry.loadCheckpoint());
+        if (stored == null || stored.status() != Status.RUNNING) {
+            return;
+        }
+        run(stored);
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            log.error("Broadcast failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void run(Checkpoint start) throws InterruptedException {
+        running = true;
+        stopRequested = false;
+        current = start;
+        resumedAtNanos = System.nanoTime();
+        processedAtResume = start.processed();
+        log.info("{} broadcast {} of {} ({} of {} recipients done)",
+                start.processed() > 0 ? "Resuming" : "Starting", start.jobId(), start.routeId(),
+                start.processed(), start.total());
+        ArrayDeque<PendingSend> inFlight = new ArrayDeque<>();
+        long lastSavedAt = System.nanoTime();
+        try {
+            while (active()) {
+                List<Long> page = subscriberRegistry.page(current.lastChatId(), pageSize);
+                if (page.isEmpty()) {
+                    current = current.withStatus(Status.FINISHED);
+                    break;
+                }
+                for (Long chatId : page) {
+                    if (!active()) {
+                        break;
+                    }
+                    window.acquire();
+                    inFlight.add(new PendingSend(chatId, send(current, chatId)));
+                    settle(inFlight, false);
+                    if (System.nanoTime() - lastSavedAt >= checkpointIntervalNanos) {
+                        saveCheckpoint();
+                        lastSavedAt = System.nanoTime();
+                    }
+                }
+                settle(inFlight, true);
+            }
+        } finally {
+            // Отправленное уже стоит в очереди планировщика — дожидаемся исходов, чтобы сохранить точную позицию
+            settle(inFlight, true);
+            saveCheckpoint();
+            running = false;
+            logProgress(current.status() == Status.RUNNING ? "paused" : current.status().name().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    private boolean active() {
+        return !stopRequested && leaderElection.isLeader() && current.status() == Status.RUNNING;
+    }
+
+    private CompletableFuture<Outcome> send(Checkpoint checkpoint, long chatId) {
+        CompletableFuture<Message> sending;
+        if (checkpoint.video()) {
+            SendVideo video = new SendVideo();
+            video.setChatId(Long.toString(chatId));
+            video.setVideo(new InputFile(checkpoint.fileId()));
+            video.setReplyMarkup(replyTemplates.keyboard());
+            sending = sendScheduler.submit(chatId, TaskPriority.BACKGROUND, "sendVideo", () -> evgenBot.execute(video));
+        } else {
+            SendPhoto photo = new SendPhoto();
+            photo.setChatId(Long.toString(chatId));
+            photo.setPhoto(new InputFile(checkpoint.fileId()));
+            photo.setReplyMarkup(replyTemplates.keyboard());
+            sending = sendScheduler.submit(chatId, TaskPriority.BACKGROUND, "sendPhoto", () -> evgenBot.execute(photo));
+        }
+        return sending.handle((message, error) -> {
+            window.release();
+            return error == null ? Outcome.SENT : failure(chatId, error);
+        });
+    }
+
+    private Outcome failure(long chatId, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof TelegramApiRequestException requestException) {
+            Integer code = requestException.getErrorCode();
+            String message = requestException.getApiResponse();
+            boolean gone = code != null && (code == FORBIDDEN
+                    || code == BAD_REQUEST && message != null && message.contains("chat not found"));
+            if (gone) {
+                // Бот заблокирован или чат удалён — следующие рассылки на него время не тратят
+                subscriberRegistry.unsubscribe(chatId);
+                return Outcome.BLOCKED;
+            }
+        }
+        log.debug("Broadcast to chat {} failed: {}", chatId, cause.getMessage());
+        return Outcome.FAILED;
+    }
+
+    /**
+     * Учесть завершённые отправки с головы очереди: позиция продвигается только по непрерывному
+     * префиксу, поэтому всё до lastChatId гарантированно обработано
+     */
+    private void settle(ArrayDeque<PendingSend> inFlight, boolean wait) {
+        PendingSend head;
+        while ((head = inFlight.peek()) != null && (wait || head.outcome().isDone())) {
+            Outcome outcome = head.outcome().join();
+            messageCounters.get(outcome).increment();
+            current = current.advance(head.chatId(), outcome);
+            inFlight.poll();
+        }
+    }
+
+    private void saveCheckpoint() {
+        try {
+            Checkpoint stored = Checkpoint.decode(subscriberRegistry.loadCheckpoint());
+            if (stored != null && stored.jobId().equals(current.jobId()) && stored.status() == Status.CANCELLED) {
+                // Отменили с другой реплики — останавливаемся и не затираем отмену
+                current = current.withStatus(Status.CANCELLED);
+                return;
+            }
+            subscriberRegistry.saveCheckpoint(current.encode());
+            logProgress("checkpoint");
+        } catch (RuntimeException e) {
+            // Не страшно: после рестарта повторно уйдёт чуть больше сообщений
+            log.warn("Failed to save broadcast checkpoint: {}", e.getMessage());
+        }
+    }
+
+    private void logProgress(String event) {
+        Checkpoint checkpoint = current;
+        log.info("Broadcast {} {}: {}/{} processed (sent {}, failed {}, blocked {})", checkpoint.jobId(), event,
+                checkpoint.processed(), checkpoint.total(), checkpoint.sent(), checkpoint.failed(), checkpoint.blocked());
+    }
+
+    private record PendingSend(long chatId, CompletableFuture<Outcome> outcome) {
+    }
+
+    /**
+     * Сохраняемое состояние рассылки
+     *
+     * @param lastChatId последний чат, до которого (включительно) всё обработано
+     * @param total      подписчиков на момент запуска
+     */
+    public record Checkpoint(String jobId, String routeId, String fileId, boolean video, Status status,
+                             long lastChatId, long total, long sent, long failed, long blocked) {
+
+        public long processed() {
+            return sent + failed + blocked;
+        }
+
+        Checkpoint advance(long chatId, Outcome outcome) {
+            return new Checkpoint(jobId, routeId, fileId, video, status, chatId, total,
+                    sent + (outcome == Outcome.SENT ? 1 : 0),
+                    failed + (outcome == Outcome.FAILED ? 1 : 0),
+                    blocked + (outcome == Outcome.BLOCKED ? 1 : 0));
+        }
+
+        Checkpoint withStatus(Status newStatus) {
+            return new Checkpoint(jobId, routeId, fileId, video, newStatus, lastChatId, total, sent, failed, blocked);
+        }
+
+        Map<String, Object> toDetails() {
+            Map<String, Object> details = new LinkedHashMap<>();
+            details.put("jobId", jobId);
+            details.put("route", routeId);
+            details.put("status", status.name().toLowerCase(Locale.ROOT));
+            details.put("total", total);
+            details.put("processed", processed());
+            details.put("sent", sent);
+            details.put("failed", failed);
+            details.put("blocked", blocked);
+            return details;
+        }
+
+        String encode() {
+            Properties properties = new Properties();
+            properties.setProperty("jobId", jobId);
+            properties.setProperty("routeId", routeId);
+            properties.setProperty("fileId", fileId);
+            properties.setProperty("video", Boolean.toString(video));
+            properties.setProperty("status", status.name());
+            properties.setProperty("lastChatId", Long.toString(lastChatId));
+            properties.setProperty("total", Long.toString(total));
+            properties.setProperty("sent", Long.toString(sent));
+            properties.setProperty("failed", Long.toString(failed));
+            properties.setProperty("blocked", Long.toString(blocked));
+            StringWriter writer = new StringWriter();
+            try {
+                properties.store(writer, null);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return writer.toString();
+        }
+
+        static Checkpoint decode(String encoded) {
+            if (encoded == null || encoded.isEmpty()) {
+                return null;
+            }
+            Properties properties = new Properties();
+            try {
+                properties.load(new StringReader(encoded));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return new Checkpoint(properties.getProperty("jobId"), properties.getProperty("routeId"),
+                    properties.getProperty("fileId"), Boolean.parseBoolean(properties.getProperty("video")),
+                    Status.valueOf(properties.getProperty("status")),
+                    Long.parseLong(properties.getProperty("lastChatId")), Long.parseLong(properties.getProperty("total")),
+                    Long.parseLong(properties.getProperty("sent")), Long.parseLong(properties.getProperty("failed")),
+                    Long.parseLong(properties.getProperty("blocked")));
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.example.hb.bot;
+
+import com.example.hb.service.DeliveryStore;
+import com.example.hb.service.LeaderElection;
+import com.example.hb.service.ScheduledDelivery;
+import com.example.hb.service.TimingWheel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отложенные доставки: ответ маршрута (обычно поздравительное видео) уходит в чат в заданный момент
+ * по часовому поясу получателя. Доставки лежат в DeliveryStore и переживают редеплой; в памяти лидера
+ * они разложены по TimingWheel — один поток-тикер на все доставки, без таймера на каждую.
+ * Сработавшие доставки отправляются через EvgenBot.deliver (очередь чата и File ID из кэша),
+ * не больше telegram.delivery.window одновременно; из хранилища запись удаляется после отправки,
+ * так что рестарт посреди отправки приводит к повтору, а не к потере.
+ * Доставки, опоздавшие больше чем на telegram.delivery.max-lateness-ms (например, бот лежал), не отправляются.
+ * Доставки, добавленные на других репликах, лидер подхватывает раз в telegram.delivery.sync-ms: читает
+ * только записанные с прошлой сверки (с запасом в один интервал на расхождение часов реплик),
+ * целиком хранилище читается один раз — когда реплика становится лидером. Все обращения к хранилищу идут
+ * вне монитора: под ним только выбирается, что отправить, так что медленный JDBC/Redis не задерживает
+ * тики, schedule() и завершения отправок.
+ * Отмену на другой реплике лидер замечает при отправке: доставки, которой нет в хранилище, не отправляет.
+ */
+@Slf4j
+@Service
+public class DeliveryScheduler implements InitializingBean, DisposableBean {
+
+    enum Result { SENT, FAILED, EXPIRED, CANCELLED }
+
+    private final EvgenBot evgenBot;
+    private final RouteTable routeTable;
+    private final DeliveryStore store;
+    private final LeaderElection leaderElection;
+    private final long tickMs;
+    private final int window;
+    private final long maxLatenessMs;
+    private final long syncIntervalMs;
+    private final Map<Result, Counter> resultCounters = new EnumMap<>(Result.class);
+    private final Timer latenessTimer;
+
+    /** Колесо, сработавшие по id, отправляемые сейчас и отложенные до следующего тика — только у лидера, под this.
+     *  settled — завершённые после начала последнего чтения хранилища: прочитанная копия может их ещё содержать.
+     *  syncedAt — начало последней сверки с хранилищем */
+    private TimingWheel<ScheduledDelivery> wheel;
+    private final LinkedHashMap<String, ScheduledDelivery> ready = new LinkedHashMap<>();
+    private final Set<String> sending = new HashSet<>();
+    private final Set<String> settled = new HashSet<>();
+    private final List<ScheduledDelivery> deferred = new ArrayList<>();
+    private long syncedAt;
+
+    private ScheduledExecutorService ticker;
+
+    public DeliveryScheduler(EvgenBot evgenBot, RouteTable routeTable, DeliveryStore store,
+                             LeaderElection leaderElection, MeterRegistry meterRegistry,
+                             @Value("${telegram.delivery.tick-ms:1000}") long tickMs,
+                             @Value("${telegram.delivery.window:50}") int window,
+                             @Value("${telegram.delivery.max-lateness-ms:21600000}") long maxLatenessMs,
+                             @Value("${telegram.delivery.sync-ms:60000}") long syncIntervalMs) {
+        this.evgenBot = evgenBot;
+        this.routeTable = routeTable;
+        this.store = store;
+        this.leaderElection = leaderElection;
+        this.tickMs = tickMs;
+        this.window = window;
+        this.maxLatenessMs = maxLatenessMs;
+        this.syncIntervalMs = syncIntervalMs;
+        for (Result result : Result.values()) {
+            resultCounters.put(result, Counter.builder("bot.delivery.deliveries")
+                    .description("Отложенные доставки по исходу")
+                    .tag("result", result.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+        this.latenessTimer = Timer.builder("bot.delivery.lateness")
+                .description("Задержка отправки относительно назначенного момента")
+                .register(meterRegistry);
+        Gauge.builder("bot.delivery.pending", this, DeliveryScheduler::pending)
+                .description("Доставки, ожидающие своего момента в колесе лидера")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "delivery-scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::tickQuietly, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Запланировать ответ маршрута в чат на локальное время получателя
+     * @throws IllegalArgumentException маршрута нет, или момент уже прошёл, или он слишком далеко
+     */
+    public ScheduledDelivery schedule(long chatId, String routeId, LocalDateTime at, ZoneId zone) {
+        Route route = findRoute(routeId);
+        if (route == null || route.action() == RouteAction.START) {
+            throw new IllegalArgumentException("Unknown route: " + routeId);
+        }
+        long fireAt = at.atZone(zone).toInstant().toEpochMilli();
+        long now = System.currentTimeMillis();
+        if (fireAt < now - tickMs) {
+            throw new IllegalArgumentException("Delivery time " + at + " " + zone + " is in the past");
+        }
+        if (fireAt - now > TimingWheel.range(tickMs)) {
+            throw new IllegalArgumentException("Delivery time " + at + " is too far ahead");
+        }
+        ScheduledDelivery delivery = new ScheduledDelivery(UUID.randomUUID().toString().substring(0, 12), chatId,
+                route.id(), fireAt, zone.getId());
+        store.put(delivery);
+        synchronized (this) {
+            // Сверка могла уже подхватить доставку из хранилища
+            boolean picked = ready.containsKey(delivery.id()) || sending.contains(delivery.id());
+            if (wheel != null && !picked && !wheel.schedule(delivery.id(), fireAt, delivery)) {
+                ready.put(delivery.id(), delivery);
+            }
+        }
+        log.info("Scheduled delivery {} of {} to chat {} at {} {}", delivery.id(), routeId, chatId, at, zone);
+        return delivery;
+    }
+
+    /**
+     * @return false, если доставки нет — уже отправлена или отменена
+     */
+    public boolean cancel(String id) {
+        if (store.get(id) == null) {
+            return false;
+        }
+        store.remove(id);
+        synchronized (this) {
+            if (wheel != null) {
+                wheel.cancel(id);
+                ready.remove(id);
+            }
+        }
+        resultCounters.get(Result.CANCELLED).increment();
+        log.info("Cancelled delivery {}", id);
+        return true;
+    }
+
+    public ScheduledDelivery get(String id) {
+        return store.get(id);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (ticker != null) {
+            ticker.shutdown();
+            ticker.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Один ход тикера: лидер прокручивает колесо и отправляет сработавшее, остальные реплики колесо не держат
+     */
+    void tick() {
+        long now = System.currentTimeMillis();
+        boolean initial;
+        boolean sync;
+        long since;
+        synchronized (this) {
+            if (!leaderElection.isLeader()) {
+                if (wheel != null) {
+                    log.info("Lost leadership, releasing {} scheduled deliveries", wheel.size());
+                    wheel = null;
+                    ready.clear();
+                    deferred.clear();
+                    settled.clear();
+                }
+                return;
+            }
+            initial = wheel == null;
+            sync = initial || syncIntervalMs > 0 && now - syncedAt >= syncIntervalMs;
+            since = syncedAt - syncIntervalMs;
+            if (sync) {
+                // Завершённые до этого момента уже удалены из хранилища и в чтение не попадут
+                settled.clear();
+            }
+        }
+        // Тик вызывается только потоком тикера, так что между блоками колесо никто не создаст и не сбросит
+        List<ScheduledDelivery> loaded = null;
+        if (sync) {
+            loaded = initial ? store.loadAll() : store.updatedSince(since);
+        }
+        List<ScheduledDelivery> expired = List.of();
+        List<ScheduledDelivery> picked;
+        synchronized (this) {
+            if (loaded != null) {
+                expired = merge(loaded, now, initial);
+            }
+            wheel.advance(now, delivery -> ready.put(delivery.id(), delivery));
+            deferred.forEach(delivery -> ready.putIfAbsent(delivery.id(), delivery));
+            deferred.clear();
+            picked = drain();
+        }
+        for (ScheduledDelivery delivery : expired) {
+            store.remove(delivery.id());
+        }
+        dispatch(picked);
+    }
+
+    private void tickQuietly() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            log.error("Delivery tick failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Разложить прочитанные из хранилища доставки по колесу; повторно прочитанные заменяют себя же
+     *
+     * @return опоздавшие доставки — их нужно удалить из хранилища
+     */
+    private List<ScheduledDelivery> merge(List<ScheduledDelivery> loaded, long now, boolean initial) {
+        if (initial) {
+            wheel = new TimingWheel<>(tickMs, now);
+        }
+        List<ScheduledDelivery> expired = new ArrayList<>();
+        for (ScheduledDelivery delivery : loaded) {
+            String id = delivery.id();
+            if (sending.contains(id) || ready.containsKey(id) || settled.contains(id)) {
+                continue;
+            }
+            if (delivery.fireAt() < now - maxLatenessMs) {
+                log.warn("Dropping delivery {} to chat {}: it is {} min late", delivery.id(), delivery.chatId(),
+                        TimeUnit.MILLISECONDS.toMinutes(now - delivery.fireAt()));
+                expired.add(delivery);
+                resultCounters.get(Result.EXPIRED).increment();
+            } else {
+                try {
+                    if (!wheel.schedule(delivery.id(), delivery.fireAt(), delivery)) {
+                        ready.put(delivery.id(), delivery);
+                    }
+                } catch (IllegalArgumentException e) {
+                    // Тик уменьшили после того, как доставку запланировали
+                    log.warn("Skipping delivery {}: {}", delivery.id(), e.getMessage());
+                }
+            }
+        }
+        syncedAt = now;
+        if (initial) {
+            log.info("Loaded {} scheduled deliveries ({} due now)", wheel.size() + ready.size(), ready.size());
+        }
+        return expired;
+    }
+
+    /**
+     * Выбрать сработавшие доставки в пределах окна; вызывается под this, отправляет dispatch уже без монитора
+     */
+    private List<ScheduledDelivery> drain() {
+        List<ScheduledDelivery> picked = new ArrayList<>();
+        Map.Entry<String, ScheduledDelivery> next;
+        while (sending.size() < window && (next = ready.pollFirstEntry()) != null) {
+            if (sending.add(next.getKey())) {
+                picked.add(next.getValue());
+            }
+        }
+        return picked;
+    }
+
+    /**
+     * Отправить выбранные доставки; место пропущенных (отменённых) занимают следующие из ready
+     */
+    private void dispatch(List<ScheduledDelivery> picked) {
+        while (!picked.isEmpty()) {
+            List<ScheduledDelivery> skipped = new ArrayList<>();
+            for (ScheduledDelivery delivery : picked) {
+                if (!send(delivery)) {
+                    skipped.add(delivery);
+                }
+            }
+            if (skipped.isEmpty()) {
+                return;
+            }
+            synchronized (this) {
+                skipped.forEach(delivery -> settle(delivery.id()));
+                picked = wheel != null ? drain() : List.of();
+            }
+        }
+    }
+
+    /**
+     * @return false, если доставка не отправлялась — её нужно снять из sending
+     */
+    private boolean send(ScheduledDelivery delivery) {
+        Route route = findRoute(delivery.routeId());
+        if (route == null || store.get(delivery.id()) == null) {
+            // Маршрут убрали из конфигурации или доставку отменили на другой реплике
+            store.remove(delivery.id());
+            if (route == null) {
+                resultCounters.get(Result.FAILED).increment();
+                log.warn("Dropping delivery {}: route {} no longer exists", delivery.id(), delivery.routeId());
+            }
+            return false;
+        }
+        latenessTimer.record(Math.max(0, System.currentTimeMillis() - delivery.fireAt()), TimeUnit.MILLISECONDS);
+        evgenBot.deliver(delivery.chatId(), route).whenComplete((result, error) -> completed(delivery, error));
+        return true;
+    }
+
+    private void completed(ScheduledDelivery delivery, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof RejectedExecutionException) {
+            synchronized (this) {
+                sending.remove(delivery.id());
+                if (wheel != null) {
+                    // Очередь обработчиков переполнена — повторим на следующем тике
+                    deferred.add(delivery);
+                }
+            }
+            return;
+        }
+        // Удаляем, пока доставка ещё в sending: до этого сверка её не подхватит
+        try {
+            store.remove(delivery.id());
+        } catch (RuntimeException e) {
+            log.warn("Failed to remove delivered {}: {}", delivery.id(), e.getMessage());
+        }
+        if (cause == null) {
+            resultCounters.get(Result.SENT).increment();
+        } else {
+            resultCounters.get(Result.FAILED).increment();
+            log.warn("Delivery {} to chat {} failed: {}", delivery.id(), delivery.chatId(), cause.getMessage());
+        }
+        List<ScheduledDelivery> picked;
+        synchronized (this) {
+            settle(delivery.id());
+            picked = wheel != null ? drain() : List.of();
+        }
+        dispatch(picked);
+    }
+
+    /**
+     * Доставка завершена и удалена из хранилища; вызывается под this
+     */
+    private void settle(String id) {
+        sending.remove(id);
+        if (wheel != null) {
+            settled.add(id);
+        }
+    }
+
+    private synchronized int pending() {
+        return wheel != null ? wheel.size() + ready.size() + sending.size() : 0;
+    }
+
+    private Route findRoute(String routeId) {
+        return routeTable.getRoutes().stream()
+                .filter(route -> route.id().equals(routeId))
+                .findFirst()
+                .orElse(null);
+    }
+}
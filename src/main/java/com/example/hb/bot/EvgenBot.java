@@ -1,41 +1,138 @@
 package com.example.hb.bot;
 
 import com.example.hb.config.TelegramBotConfig;
+import com.example.hb.service.BotEvents;
 import com.example.hb.service.FileIdCacheService;
-import com.example.hb.service.VideoService;
+import com.example.hb.service.MediaFile;
+import com.example.hb.service.MediaKind;
+import com.example.hb.service.MediaStore;
+import com.example.hb.service.PriorityTaskExecutor;
+import com.example.hb.service.SingleFlight;
+import com.example.hb.service.StartupTimings;
+import com.example.hb.service.SubscriberRegistry;
+import com.example.hb.service.TaskPriority;
+import com.example.hb.service.TelegramSendScheduler;
+import com.example.hb.service.UpdateTrace;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.methods.send.SendPhoto;
 import org.telegram.telegrambots.meta.api.methods.send.SendVideo;
 import org.telegram.telegrambots.meta.api.objects.InputFile;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
-import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
-import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardRemove;
-import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardButton;
-import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
 
 @Slf4j
 @Component
 public class EvgenBot extends TelegramLongPollingBot {
 
+    private static final String MEDIA_VIDEO = "video";
+    private static final String MEDIA_PHOTO = "photo";
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
     private final TelegramBotConfig config;
-    private final VideoService videoService;
+    private final RouteTable routeTable;
+    private final ReplyTemplates replyTemplates;
     private final FileIdCacheService fileIdCacheService;
+    private final MediaStore mediaStore;
+    private final UpdateDispatcher updateDispatcher;
+    private final UpdateCoalescer updateCoalescer;
+    private final TelegramSendScheduler sendScheduler;
+    private final PriorityTaskExecutor taskExecutor;
+    private final SubscriberRegistry subscriberRegistry;
+    private final StartupTimings startupTimings;
+    private final SingleFlight<String, String> uploads = new SingleFlight<>();
+    private final Map<String, Timer> routeTimers;
+    private final Map<String, Timer> uploadTimers;
+    private final Map<String, DistributionSummary> uploadSizes;
 
     @Autowired
-    public EvgenBot(TelegramBotConfig config, VideoService videoService, FileIdCacheService fileIdCacheService) {
-        super(config.getBotToken());
+    public EvgenBot(TelegramBotConfig config, RouteTable routeTable, ReplyTemplates replyTemplates,
+                    FileIdCacheService fileIdCacheService, MediaStore mediaStore,
+                    UpdateDispatcher updateDispatcher, UpdateCoalescer updateCoalescer,
+                    TelegramSendScheduler sendScheduler, PriorityTaskExecutor taskExecutor,
+                    SubscriberRegistry subscriberRegistry, StartupTimings startupTimings,
+                    MeterRegistry meterRegistry) {
+        super(config.createBotOptions(), config.getBotToken());
         this.config = config;
-        this.videoService = videoService;
+        this.routeTable = routeTable;
+        this.replyTemplates = replyTemplates;
         this.fileIdCacheService = fileIdCacheService;
+        this.mediaStore = mediaStore;
+        this.updateDispatcher = updateDispatcher;
+        this.updateCoalescer = updateCoalescer;
+        this.sendScheduler = sendScheduler;
+        this.taskExecutor = taskExecutor;
+        this.subscriberRegistry = subscriberRegistry;
+        this.startupTimings = startupTimings;
+
+        Map<String, Timer> timers = new HashMap<>();
+        for (Route route : routeTable.getRoutes()) {
+            timers.put(route.id(), Timer.builder("bot.route.latency")
+                    .description("Время обработки сообщения маршрутом, включая отправку ответа")
+                    .tag("route", route.id())
+                    .register(meterRegistry));
+        }
+        this.routeTimers = Map.copyOf(timers);
+        Map<String, Timer> durations = new HashMap<>();
+        Map<String, DistributionSummary> sizes = new HashMap<>();
+        for (String kind : new String[]{MEDIA_VIDEO, MEDIA_PHOTO}) {
+            durations.put(kind, Timer.builder("telegram.upload.duration")
+                    .description("Длительность загрузки медиафайла в Telegram")
+                    .tag("kind", kind)
+                    .register(meterRegistry));
+            sizes.put(kind, DistributionSummary.builder("telegram.upload.size")
+                    .description("Размер загружаемого медиафайла")
+                    .baseUnit("bytes")
+                    .tag("kind", kind)
+                    .register(meterRegistry));
+        }
+        this.uploadTimers = Map.copyOf(durations);
+        this.uploadSizes = Map.copyOf(sizes);
+        resizeConnectionPool(sendScheduler.getMaxInFlight());
+    }
+
+    /**
+     * telegrambots не даёт настроить пул HTTP-соединений, а по умолчанию в нём 2 соединения на хост —
+     * меньше, чем одновременных вызовов пропускает TelegramSendScheduler. Расширяем пул клиента
+     * этого бота до max-in-flight; если внутренности библиотеки изменились, остаёмся на 2 с предупреждением.
+     */
+    private void resizeConnectionPool(int size) {
+        try {
+            Field clientField = DefaultAbsSender.class.getDeclaredField("httpClient");
+            clientField.setAccessible(true);
+            Object client = clientField.get(this);
+            Field managerField = client.getClass().getDeclaredField("connManager");
+            managerField.setAccessible(true);
+            if (managerField.get(client) instanceof PoolingHttpClientConnectionManager pool) {
+                pool.setMaxTotal(Math.max(pool.getMaxTotal(), size));
+                pool.setDefaultMaxPerRoute(Math.max(pool.getDefaultMaxPerRoute(), size));
+                return;
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Failed to resize the Telegram HTTP connection pool: {}", e.getMessage());
+            return;
+        }
+        log.warn("Telegram HTTP client has no pooling connection manager, pool size left at its default");
     }
 
     @Override
@@ -48,48 +145,145 @@ public class EvgenBot extends TelegramLongPollingBot {
         return config.getBotToken();
     }
 
+    /**
+     * Вызывается потоком long polling: только ставит апдейт в очередь чата,
+     * чтобы долгая загрузка видео в одном чате не задерживала ответы в других.
+     * Повтор запроса, который уже ждёт в очереди или только что обработан, отбрасывается (см. UpdateCoalescer).
+     */
     @Override
     public void onUpdateReceived(Update update) {
-        if (update.hasMessage()) {
-            Message message = update.getMessage();
-            Long chatId = message.getChatId();
-            String firstName = message.getFrom().getFirstName();
-            String lastName = message.getFrom().getLastName();
-            String fullName = (firstName != null ? firstName : "") + 
-                             (lastName != null ? " " + lastName : "").trim();
-            if (fullName.isEmpty()) {
-                fullName = firstName != null ? firstName : "Пользователь";
-            }
+        startupTimings.onUpdateReceived();
+        traceReceived(update);
+        Route route = resolveRoute(update);
+        if (admit(update, route)) {
+            enqueue(update, route);
+        }
+    }
 
-            try {
-                // Обработка видео для получения File ID
-                if (message.hasVideo()) {
-                    handleVideoReceived(chatId, message);
-                    return;
-                }
+    /**
+     * Вход для webhook-режима. Простые текстовые ответы возвращаются сразу, чтобы
+     * Telegram выполнил их из тела HTTP-ответа без отдельного запроса к API;
+     * остальное уходит в общую очередь обработчиков.
+     * @return метод для ответа в теле webhook или null
+     */
+    public BotApiMethod<?> onWebhookUpdateReceived(Update update) {
+        startupTimings.onUpdateReceived();
+        traceReceived(update);
+        Route route = resolveRoute(update);
+        if (!admit(update, route)) {
+            return null;
+        }
+        Long chatId = update.hasMessage() ? update.getMessage().getChatId() : null;
+        // Отвечаем в обход очереди только если в чате ничего не обрабатывается, иначе нарушим порядок
+        if (route != null && route.action() == RouteAction.TEXT && updateDispatcher.isIdle(chatId)) {
+            updateCoalescer.started(chatId, route);
+            return replyTemplates.text(route, chatId);
+        }
+        enqueue(update, route);
+        return null;
+    }
 
-                // Обработка текстовых сообщений
-                if (message.hasText()) {
-                    String text = message.getText().trim();
-                    if (text.equals("/start")) {
-                        handleStart(chatId, fullName);
-                    } else if (text.equals("😛 Анекдот")) {
-                        handleJoke(chatId);
-                    } else if (text.equals("✅ Меню")) {
-                        handleMenu(chatId);
-                    } else if (text.equals("малышка оторва") || text.equals("🎉 Поздравление")) {
-                        handleCongratulations(chatId);
-                    } else if (text.equals("шанель номер 1") || text.equals("🎲 Создание монополии")) {
-                        handleMonopoly(chatId);
-                    }
+    /**
+     * Маршрут текстового сообщения или null, если апдейт не по таблице маршрутов
+     */
+    private Route resolveRoute(Update update) {
+        if (update.hasMessage() && update.getMessage().hasText()) {
+            Route route = routeTable.resolve(update.getMessage().getText().trim());
+            if (route != null) {
+                BotEvents.RouteResolved event = new BotEvents.RouteResolved();
+                if (event.shouldCommit()) {
+                    event.chatId = update.getMessage().getChatId();
+                    event.updateId = updateId(update);
+                    event.route = route.id();
+                    event.action = route.action().name();
+                    event.commit();
                 }
-            } catch (TelegramApiException e) {
-                log.error("Error processing message: {}", e.getMessage(), e);
             }
+            return route;
         }
+        return null;
     }
 
-    private void handleVideoReceived(Long chatId, Message message) throws TelegramApiException {
+    private static void traceReceived(Update update) {
+        BotEvents.UpdateReceived event = new BotEvents.UpdateReceived();
+        if (event.shouldCommit()) {
+            Message message = update.getMessage();
+            event.chatId = message != null ? message.getChatId() : 0;
+            event.updateId = updateId(update);
+            event.kind = message == null ? "other" : message.hasText() ? "text" : message.hasVideo() ? "video" : "other";
+            event.commit();
+        }
+    }
+
+    private static UpdateTrace trace(Update update) {
+        Long chatId = update.hasMessage() ? update.getMessage().getChatId() : null;
+        return new UpdateTrace(chatId != null ? chatId : 0, updateId(update));
+    }
+
+    private static long updateId(Update update) {
+        return update.getUpdateId() != null ? update.getUpdateId() : 0;
+    }
+
+    private boolean admit(Update update, Route route) {
+        if (route == null) {
+            return true;
+        }
+        Message message = update.getMessage();
+        return updateCoalescer.admit(message.getChatId(), route, message.getDate());
+    }
+
+    private void enqueue(Update update, Route route) {
+        Long chatId = update.hasMessage() ? update.getMessage().getChatId() : null;
+        UpdateTrace trace = trace(update);
+        boolean queued = updateDispatcher.dispatchAsync(chatId, () -> UpdateTrace.with(trace, () -> {
+            updateCoalescer.started(chatId, route);
+            return handleUpdate(update, route);
+        }));
+        if (!queued) {
+            updateCoalescer.started(chatId, route);
+        }
+    }
+
+    /**
+     * Обработчик не ждёт Telegram: он собирает цепочку запросов и сразу возвращает её future,
+     * так что поток обслуживает другие чаты, пока идут отправка и загрузка
+     */
+    private CompletableFuture<Void> handleUpdate(Update update, Route route) {
+        if (!update.hasMessage()) {
+            return DONE;
+        }
+        Message message = update.getMessage();
+        Long chatId = message.getChatId();
+
+        CompletableFuture<Void> handling;
+        // Обработка видео для получения File ID
+        if (message.hasVideo()) {
+            handling = handleVideoReceived(chatId, message);
+        } else if (route != null) {
+            // Обработка текстовых сообщений по таблице маршрутов
+            handling = handleRoute(chatId, route);
+        } else {
+            return DONE;
+        }
+        return handling.exceptionally(e -> {
+            Throwable cause = unwrap(e);
+            log.error("Error processing message: {}", cause.getMessage(), cause);
+            return null;
+        });
+    }
+
+    private CompletableFuture<Void> handleRoute(Long chatId, Route route) {
+        long start = System.nanoTime();
+        CompletableFuture<Void> reply = switch (route.action()) {
+            case START -> handleStart(chatId, route);
+            case TEXT -> sendMessage(chatId, replyTemplates.text(route, chatId)).thenAccept(sent -> { });
+            case MEDIA -> handleMedia(chatId, route);
+        };
+        return reply.whenComplete((result, error) ->
+                routeTimers.get(route.id()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    private CompletableFuture<Void> handleVideoReceived(Long chatId, Message message) {
         String fileId = message.getVideo().getFileId();
         String fileName = message.getVideo().getFileName();
         
@@ -104,199 +298,137 @@ public class EvgenBot extends TelegramLongPollingBot {
                 "или\n" +
                 "`telegram.video.monopoly=" + fileId + "`");
         reply.setParseMode("Markdown");
-        reply.setReplyMarkup(createKeyboard());
-        execute(reply);
+        reply.setReplyMarkup(replyTemplates.keyboard());
+        return sendMessage(chatId, reply).thenAccept(sent -> { });
     }
 
-    private void handleStart(Long chatId, String fullName) throws TelegramApiException {
+    private CompletableFuture<Void> handleStart(Long chatId, Route route) {
         log.info("User started bot. Chat ID: {} (use this for telegram.preload.chatId in application.properties)", chatId);
+        subscriberRegistry.subscribe(chatId);
 
-        // Убираем старую клавиатуру, чтобы отобразились только актуальные кнопки
-        SendMessage removeKeyboard = new SendMessage();
-        removeKeyboard.setChatId(chatId.toString());
-        removeKeyboard.setText("Обновляю меню…");
-        removeKeyboard.setReplyMarkup(new ReplyKeyboardRemove(true));
-        execute(removeKeyboard);
-
-        SendMessage message = new SendMessage();
-        message.setChatId(chatId.toString());
-        message.setText("Как я могу тебе помочь?");
-        message.setReplyMarkup(createKeyboard());
-        execute(message);
+        // Убираем старую клавиатуру, чтобы отобразились только актуальные кнопки; меню — строго после этого
+        return sendMessage(chatId, replyTemplates.removeKeyboard(chatId))
+                .thenCompose(sent -> sendMessage(chatId, replyTemplates.text(route, chatId)))
+                .thenAccept(sent -> { });
     }
 
-    private void handleJoke(Long chatId) throws TelegramApiException {
-        SendMessage message = new SendMessage();
-        message.setChatId(chatId.toString());
-        message.setText("😛 Анекдот\n\n" +
-                "Мы продавали диван. Приехали покупатели, увезли.\n" +
-                "Через два часа раздаётся телефонный звонок:\n" +
-                "- У вас есть кот?\n" +
-                "- Есть.\n" +
-                "- Серый? Полосатый?\n" +
-                "- Да...\n" +
-                "- Он не хочет расставаться с диваном.");
-        message.setReplyMarkup(createKeyboard());
-        execute(message);
-    }
+    private CompletableFuture<Void> handleMedia(Long chatId, Route route) {
+        // 1. Проверяем File ID из конфигурации (приоритет)
+        if (route.hasConfiguredFileId()) {
+            return sendMediaByFileId(chatId, route.fileId(), route.video());
+        }
 
-    private void handleMenu(Long chatId) throws TelegramApiException {
-        SendMessage message = new SendMessage();
-        message.setChatId(chatId.toString());
-        message.setText("Меню ещё не настроено, но всё впереди!");
-        message.setReplyMarkup(createKeyboard());
-        execute(message);
-    }
+        String mediaPath = route.mediaPath();
 
-    private void handleCongratulations(Long chatId) throws TelegramApiException {
-        String mediaPath = "media/IMG_0128.MOV"; // путь из конфига
-        
-        // Определяем тип файла по расширению
-        boolean isVideo = mediaPath.toLowerCase().endsWith(".mp4") || 
-                         mediaPath.toLowerCase().endsWith(".mov") || 
-                         mediaPath.toLowerCase().endsWith(".avi") || 
-                         mediaPath.toLowerCase().endsWith(".mkv");
-        
-        // 1. Проверяем File ID из application.properties (приоритет)
-        if (videoService.hasCongratulationsVideo()) {
-            sendMediaByFileId(chatId, videoService.getCongratulationsVideoFileId(), isVideo);
-            return;
-        }
-        
         // 2. Проверяем кэш File ID (быстрая отправка)
         String cachedFileId = fileIdCacheService.getFileId(mediaPath);
         if (cachedFileId != null && !cachedFileId.isEmpty()) {
-            try {
-                log.info("Using cached File ID for congratulations");
-                sendMediaByFileId(chatId, cachedFileId, isVideo);
-                return;
-            } catch (TelegramApiException e) {
-                if (e.getMessage() != null && e.getMessage().contains("wrong file identifier")) {
-                    log.warn("Cached File ID invalid for {}, re-uploading", mediaPath);
-                    fileIdCacheService.removeFileId(mediaPath);
-                } else {
-                    throw e;
-                }
-            }
-        }
-        
-        // 3. Если File ID нет или кэш невалидный — загружаем файл с диска
-        if (fileIdCacheService.fileExists(mediaPath)) {
-            log.info("Uploading file for congratulations, will cache File ID");
-            
-            // Отправляем уведомление о загрузке
-            SendMessage loadingMessage = new SendMessage();
-            loadingMessage.setChatId(chatId.toString());
-            loadingMessage.setText("⏳ Загружаю видео... Пожалуйста, подождите.");
-            execute(loadingMessage);
-            
-            try {
-                String fileName = videoService.getCongratulationsMediaFileName();
-                // Загружаем файл - он автоматически отправится пользователю и вернет File ID
-                String fileId = uploadAndCacheMedia(chatId, mediaPath, fileName);
-                // НЕ отправляем второй раз - файл уже отправлен при загрузке
-                if (fileId != null) {
-                    log.info("File uploaded and cached. File ID: {}", fileId);
-                }
-            } catch (Exception e) {
-                throw e;
-            }
-        } else {
-            SendMessage message = new SendMessage();
-            message.setChatId(chatId.toString());
-            message.setText("🎉 Поздравление\n\n" +
-                    "Медиафайл ещё не настроен.\n\n" +
-                    "Для настройки:\n" +
-                    "1. Поместите файл (фото или видео) в папку src/main/resources/media/\n" +
-                    "2. Или укажите File ID в application.properties как telegram.video.congratulations");
-            message.setReplyMarkup(createKeyboard());
-            execute(message);
+            log.info("Using cached File ID for {}", route.id());
+            return sendMediaByFileId(chatId, cachedFileId, route.video())
+                    .exceptionallyCompose(e -> {
+                        Throwable cause = unwrap(e);
+                        if (cause.getMessage() != null && cause.getMessage().contains("wrong file identifier")) {
+                            log.warn("Cached File ID invalid for {}, re-uploading", mediaPath);
+                            fileIdCacheService.removeFileId(mediaPath);
+                            return uploadOrReportMissing(chatId, route);
+                        }
+                        return CompletableFuture.failedFuture(cause);
+                    });
         }
+
+        return uploadOrReportMissing(chatId, route);
     }
 
-    private void handleMonopoly(Long chatId) throws TelegramApiException {
-        String mediaPath = "media/IMG_0451.MP4"; // путь из конфига
-        
-        // Определяем тип файла по расширению
-        boolean isVideo = mediaPath.toLowerCase().endsWith(".mp4") || 
-                         mediaPath.toLowerCase().endsWith(".mov") || 
-                         mediaPath.toLowerCase().endsWith(".avi") || 
-                         mediaPath.toLowerCase().endsWith(".mkv");
-        
-        // 1. Проверяем File ID из application.properties (приоритет)
-        if (videoService.hasMonopolyVideo()) {
-            sendMediaByFileId(chatId, videoService.getMonopolyVideoFileId(), isVideo);
-            return;
-        }
-        
-        // 2. Проверяем кэш File ID (быстрая отправка)
-        String cachedFileId = fileIdCacheService.getFileId(mediaPath);
-        if (cachedFileId != null && !cachedFileId.isEmpty()) {
-            try {
-                log.info("Using cached File ID for monopoly");
-                sendMediaByFileId(chatId, cachedFileId, isVideo);
-                return;
-            } catch (TelegramApiException e) {
-                if (e.getMessage() != null && e.getMessage().contains("wrong file identifier")) {
-                    log.warn("Cached File ID invalid for {}, re-uploading", mediaPath);
-                    fileIdCacheService.removeFileId(mediaPath);
-                } else {
-                    throw e;
-                }
-            }
-        }
-        
-        // 3. Если File ID нет или кэш невалидный — загружаем файл с диска
-        if (fileIdCacheService.fileExists(mediaPath)) {
-            log.info("Uploading file for monopoly, will cache File ID");
-            
-            // Отправляем уведомление о загрузке
-            SendMessage loadingMessage = new SendMessage();
-            loadingMessage.setChatId(chatId.toString());
-            loadingMessage.setText("⏳ Загружаю видео... Пожалуйста, подождите.");
-            execute(loadingMessage);
-            
-            try {
-                String fileName = videoService.getMonopolyMediaFileName();
-                // Загружаем файл - он автоматически отправится пользователю и вернет File ID
-                String fileId = uploadAndCacheMedia(chatId, mediaPath, fileName);
-                // НЕ отправляем второй раз - файл уже отправлен при загрузке
-                if (fileId != null) {
-                    log.info("File uploaded and cached. File ID: {}", fileId);
-                }
-            } catch (Exception e) {
-                throw e;
-            }
-        } else {
-            SendMessage message = new SendMessage();
-            message.setChatId(chatId.toString());
-            message.setText("🎲 Создание монополии\n\n" +
-                    "Медиафайл ещё не настроен.\n\n" +
-                    "Для настройки:\n" +
-                    "1. Поместите файл (фото или видео) в папку src/main/resources/media/\n" +
-                    "2. Или укажите File ID в application.properties как telegram.video.monopoly");
-            message.setReplyMarkup(createKeyboard());
-            execute(message);
+    /**
+     * 3. Если File ID нет или кэш невалидный — загружаем файл с диска
+     */
+    private CompletableFuture<Void> uploadOrReportMissing(Long chatId, Route route) {
+        if (mediaStore.exists(route.mediaPath())) {
+            log.info("Uploading file for {}, will cache File ID", route.id());
+            return uploadOrJoin(chatId, route.mediaPath(), route.fileName(), route.video());
         }
+        return sendMessage(chatId, replyTemplates.missingMedia(route, chatId)).thenAccept(sent -> { });
     }
 
     /**
      * Быстрая отправка медиафайла по File ID (без загрузки)
      */
-    private void sendMediaByFileId(Long chatId, String fileId, boolean isVideo) throws TelegramApiException {
+    private CompletableFuture<Void> sendMediaByFileId(Long chatId, String fileId, boolean isVideo) {
         if (isVideo) {
             SendVideo video = new SendVideo();
             video.setChatId(chatId.toString());
             video.setVideo(new InputFile(fileId));
-            video.setReplyMarkup(createKeyboard());
-            execute(video);
-        } else {
-            SendPhoto photo = new SendPhoto();
-            photo.setChatId(chatId.toString());
-            photo.setPhoto(new InputFile(fileId));
-            photo.setReplyMarkup(createKeyboard());
-            execute(photo);
+            video.setReplyMarkup(replyTemplates.keyboard());
+            return sendScheduler.submit(chatId, TaskPriority.INTERACTIVE, "sendVideo", () -> execute(video))
+                    .thenAccept(sent -> { });
         }
+        SendPhoto photo = new SendPhoto();
+        photo.setChatId(chatId.toString());
+        photo.setPhoto(new InputFile(fileId));
+        photo.setReplyMarkup(replyTemplates.keyboard());
+        return sendScheduler.submit(chatId, TaskPriority.INTERACTIVE, "sendPhoto", () -> execute(photo))
+                .thenAccept(sent -> { });
+    }
+
+    /**
+     * Загрузить файл в этот чат или, если тот же файл уже загружается (для другого чата или предзагрузкой),
+     * дождаться той загрузки и отправить готовый File ID. Так одновременные запросы дают одну загрузку.
+     */
+    private CompletableFuture<Void> uploadOrJoin(Long chatId, String mediaPath, String fileName, boolean isVideo) {
+        return uploads.executeAsync(mediaPath, () -> {
+            // Уведомление о загрузке получает только тот, чей запрос действительно загружает файл.
+            // Уведомление и загрузка уходят одновременно: пользователь не ждёт лишний запрос до начала загрузки
+            CompletableFuture<Message> status = sendMessage(chatId, replyTemplates.loading(chatId))
+                    .exceptionally(e -> {
+                        log.warn("Failed to send upload status to chat {}: {}", chatId, unwrap(e).getMessage());
+                        return null;
+                    });
+            // Загружаем файл - он автоматически отправится пользователю и вернет File ID.
+            // Место в исполнителе загрузка получает раньше фоновой предзагрузки
+            CompletableFuture<String> upload = taskExecutor.submit(TaskPriority.UPLOAD,
+                    () -> uploadAndCacheMedia(chatId, mediaPath, fileName, TaskPriority.UPLOAD));
+            return upload.thenCombine(status, (fileId, sent) -> fileId);
+        }).thenCompose(result -> {
+            if (result.value() == null) {
+                return DONE;
+            }
+            if (result.leader()) {
+                // НЕ отправляем второй раз - файл уже отправлен при загрузке
+                log.info("File uploaded and cached. File ID: {}", result.value());
+                return DONE;
+            }
+            log.info("Joined in-flight upload of {}, sending by File ID", mediaPath);
+            return sendMediaByFileId(chatId, result.value(), isVideo);
+        });
+    }
+
+    private CompletableFuture<Message> sendMessage(Long chatId, BotApiMethod<Message> message) {
+        return sendScheduler.submit(chatId, TaskPriority.INTERACTIVE, "sendMessage", () -> execute(message));
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * Ответ маршрута без входящего сообщения (отложенная доставка): через очередь чата и тот же путь,
+     * что у кнопки, — File ID из конфигурации или кэша, загрузка только если его нет.
+     * Future завершается ошибкой, если отправка не удалась или очередь переполнена (RejectedExecutionException).
+     */
+    public CompletableFuture<Void> deliver(Long chatId, Route route) {
+        CompletableFuture<Void> delivered = new CompletableFuture<>();
+        boolean queued = updateDispatcher.dispatchAsync(chatId, () -> handleRoute(chatId, route)
+                .whenComplete((result, error) -> {
+                    if (error == null) {
+                        delivered.complete(null);
+                    } else {
+                        delivered.completeExceptionally(unwrap(error));
+                    }
+                }));
+        if (!queued) {
+            delivered.completeExceptionally(new RejectedExecutionException("Update queue is full"));
+        }
+        return delivered;
     }
 
     /**
@@ -304,43 +436,75 @@ public class EvgenBot extends TelegramLongPollingBot {
      * @return File ID загруженного файла
      */
     public String uploadAndCacheMediaSync(Long chatId, String mediaPath, String fileName) throws TelegramApiException {
-        return uploadAndCacheMedia(chatId, mediaPath, fileName);
+        // Если файл уже загружается по запросу пользователя — просто дожидаемся его File ID
+        return uploads.execute(mediaPath,
+                () -> uploadAndCacheMedia(chatId, mediaPath, fileName, TaskPriority.BACKGROUND)).value();
+    }
+
+    /**
+     * Загружает ещё не опубликованный файл (см. MediaStore.prepare) и сохраняет File ID по его отпечатку:
+     * после публикации пользователи сразу получают новое содержимое по File ID
+     * @return File ID загруженного файла
+     */
+    public String uploadAndCacheMediaSync(Long chatId, MediaFile mediaFile) throws TelegramApiException {
+        return uploads.execute(mediaFile.contentKey(),
+                () -> uploadAndCacheMedia(chatId, mediaFile, mediaFile.fileName(), TaskPriority.BACKGROUND)).value();
     }
 
     /**
      * Загружает медиафайл в Telegram и сохраняет File ID в кэш
      * @return File ID загруженного файла
      */
-    private String uploadAndCacheMedia(Long chatId, String mediaPath, String fileName) throws TelegramApiException {
+    private String uploadAndCacheMedia(Long chatId, String mediaPath, String fileName, TaskPriority priority)
+            throws TelegramApiException {
+        MediaFile mediaFile = mediaStore.getMediaFile(mediaPath);
+        if (mediaFile == null) {
+            log.warn("Media file {} not found, nothing to upload", mediaPath);
+            return null;
+        }
+        return uploadAndCacheMedia(chatId, mediaFile, fileName, priority);
+    }
+
+    private String uploadAndCacheMedia(Long chatId, MediaFile mediaFile, String fileName, TaskPriority priority)
+            throws TelegramApiException {
+        String mediaPath = mediaFile.path();
+        if (mediaFile.kind() == null) {
+            log.warn("Media file {} ({}) is neither a photo nor a video, nothing to upload",
+                    mediaPath, mediaFile.mimeType());
+            return null;
+        }
         try {
-            java.io.InputStream fileStream = fileIdCacheService.getResource(mediaPath).getInputStream();
-            String lowerFileName = fileName.toLowerCase();
-            Message sentMessage;
-            
-            if (lowerFileName.endsWith(".jpg") || lowerFileName.endsWith(".jpeg") || 
-                lowerFileName.endsWith(".png") || lowerFileName.endsWith(".gif")) {
+            Path file = mediaFile.file();
+            InputFile media = config.isLocalFileUploads()
+                    // Свой Bot API сервер читает файл с диска сам: без multipart и лимита в 50 МБ
+                    ? new InputFile(file.toAbsolutePath().toUri().toString())
+                    // Файл, а не поток: HTTP-клиент сам откроет и закроет его при отправке
+                    : new InputFile(file.toFile(), fileName);
+
+            if (mediaFile.kind() == MediaKind.PHOTO) {
                 // Загружаем фото
                 SendPhoto photo = new SendPhoto();
                 photo.setChatId(chatId.toString());
-                photo.setPhoto(new InputFile(fileStream, fileName));
-                sentMessage = execute(photo);
-                
+                photo.setPhoto(media);
+                Message sentMessage = timedUpload(chatId, mediaFile, MEDIA_PHOTO, () -> sendScheduler.execute(
+                        chatId, priority, "sendPhoto", mediaFile.size(), () -> execute(photo)));
+
                 if (sentMessage != null && sentMessage.getPhoto() != null && !sentMessage.getPhoto().isEmpty()) {
                     String fileId = sentMessage.getPhoto().get(sentMessage.getPhoto().size() - 1).getFileId();
-                    fileIdCacheService.saveFileId(mediaPath, fileId);
+                    cacheFileId(mediaFile, fileId);
                     return fileId;
                 }
-            } else if (lowerFileName.endsWith(".mp4") || lowerFileName.endsWith(".mov") || 
-                       lowerFileName.endsWith(".avi") || lowerFileName.endsWith(".mkv")) {
+            } else {
                 // Загружаем видео
                 SendVideo video = new SendVideo();
                 video.setChatId(chatId.toString());
-                video.setVideo(new InputFile(fileStream, fileName));
-                sentMessage = execute(video);
-                
+                video.setVideo(media);
+                Message sentMessage = timedUpload(chatId, mediaFile, MEDIA_VIDEO, () -> sendScheduler.execute(
+                        chatId, priority, "sendVideo", mediaFile.size(), () -> execute(video)));
+
                 if (sentMessage != null && sentMessage.getVideo() != null) {
                     String fileId = sentMessage.getVideo().getFileId();
-                    fileIdCacheService.saveFileId(mediaPath, fileId);
+                    cacheFileId(mediaFile, fileId);
                     return fileId;
                 }
             }
@@ -352,65 +516,41 @@ public class EvgenBot extends TelegramLongPollingBot {
     }
 
     /**
-     * Отправляет медиафайл (фото или видео) из локального файла
-     * @deprecated Используйте sendMediaByFileId для быстрой отправки
+     * File ID — по отпечатку именно загруженного содержимого: путь к этому моменту мог получить новую версию файла
      */
-    @Deprecated
-    private void sendMediaFromFile(Long chatId, java.io.InputStream fileStream, String fileName) 
-            throws TelegramApiException {
-        if (fileStream == null) {
-            log.warn("File stream is null for file: {}", fileName);
-            return;
+    private void cacheFileId(MediaFile mediaFile, String fileId) {
+        if (mediaFile.contentKey() != null) {
+            fileIdCacheService.saveContentFileId(mediaFile.contentKey(), fileId);
+        } else {
+            fileIdCacheService.saveFileId(mediaFile.path(), fileId);
         }
+    }
 
+    /**
+     * Выполнить загрузку, записав её длительность и размер файла (в метрики и событие JFR)
+     */
+    private Message timedUpload(Long chatId, MediaFile mediaFile, String kind,
+                                TelegramSendScheduler.ApiCall<Message> upload) throws TelegramApiException {
+        uploadSizes.get(kind).record(mediaFile.size());
+        BotEvents.Upload event = new BotEvents.Upload();
+        event.begin();
+        long start = System.nanoTime();
+        Message sent = null;
         try {
-            // Определяем тип файла по расширению
-            String lowerFileName = fileName.toLowerCase();
-            
-            if (lowerFileName.endsWith(".jpg") || lowerFileName.endsWith(".jpeg") || 
-                lowerFileName.endsWith(".png") || lowerFileName.endsWith(".gif")) {
-                // Отправляем фото
-                SendPhoto photo = new SendPhoto();
-                photo.setChatId(chatId.toString());
-                photo.setPhoto(new InputFile(fileStream, fileName));
-                photo.setReplyMarkup(createKeyboard());
-                execute(photo);
-            } else if (lowerFileName.endsWith(".mp4") || lowerFileName.endsWith(".mov") || 
-                       lowerFileName.endsWith(".avi") || lowerFileName.endsWith(".mkv")) {
-                // Отправляем видео
-                SendVideo video = new SendVideo();
-                video.setChatId(chatId.toString());
-                video.setVideo(new InputFile(fileStream, fileName));
-                video.setReplyMarkup(createKeyboard());
-                execute(video);
-            } else {
-                log.warn("Unsupported file type: {}", fileName);
-                SendMessage message = new SendMessage();
-                message.setChatId(chatId.toString());
-                message.setText("❌ Неподдерживаемый тип файла: " + fileName);
-                message.setReplyMarkup(createKeyboard());
-                execute(message);
+            sent = upload.call();
+            return sent;
+        } finally {
+            uploadTimers.get(kind).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            event.end();
+            if (event.shouldCommit()) {
+                event.chatId = chatId;
+                event.updateId = UpdateTrace.current().updateId();
+                event.mediaPath = mediaFile.path();
+                event.kind = kind;
+                event.bytes = mediaFile.size();
+                event.succeeded = sent != null;
+                event.commit();
             }
-        } catch (Exception e) {
-            log.error("Error sending media file: {}", fileName, e);
-            throw new TelegramApiException("Failed to send media file", e);
         }
     }
-
-    private ReplyKeyboardMarkup createKeyboard() {
-        ReplyKeyboardMarkup keyboardMarkup = new ReplyKeyboardMarkup();
-        keyboardMarkup.setResizeKeyboard(true);
-        keyboardMarkup.setOneTimeKeyboard(false);
-
-        List<KeyboardRow> keyboard = new ArrayList<>();
-
-        // Кнопки: малышка оторва, шанель номер 1
-        KeyboardRow row1 = new KeyboardRow();
-        row1.add(new KeyboardButton("малышка оторва"));
-        row1.add(new KeyboardButton("шанель номер 1"));
-        keyboard.add(row1);
-
-        keyboardMarkup.setKeyboard(keyboard);
-        return keyboardMarkup;
-    }
 }
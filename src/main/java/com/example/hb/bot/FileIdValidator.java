@@ -0,0 +1,250 @@
+package com.example.hb.bot;
+
+import com.example.hb.service.FileIdCacheService;
+import com.example.hb.service.LeaderElection;
+import com.example.hb.service.MediaStore;
+import com.example.hb.service.PriorityTaskExecutor;
+import com.example.hb.service.TaskPriority;
+import com.example.hb.service.TelegramSendScheduler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.methods.GetFile;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Фоновая проверка кэша File ID: лидер периодически запрашивает getFile для каждого закэшированного File ID
+ * и недействительный заменяет новой загрузкой в чат предзагрузки (telegram.preload.chatId) — до того,
+ * как на него наткнётся пользователь и будет ждать загрузку. Если чат не задан или загрузка не удалась,
+ * File ID просто удаляется из кэша: пользователь сразу попадёт на загрузку, без заведомо неудачной отправки.
+ * Проходы идут раз в telegram.fileid.validation.interval-ms со случайным отклонением (jitter), чтобы реплики
+ * и рестарты не сходились в один момент; запросы внутри прохода — по одному, не чаще min-gap-ms,
+ * фоновым приоритетом TelegramSendScheduler. File ID из конфигурации маршрута не проверяются — заменить их некем.
+ */
+@Slf4j
+@Service
+public class FileIdValidator implements InitializingBean, DisposableBean {
+
+    enum Validation { VALID, INVALID, ERROR }
+
+    enum Refresh { UPLOADED, REMOVED, FAILED }
+
+    private static final int BAD_REQUEST = 400;
+
+    private final EvgenBot evgenBot;
+    private final RouteTable routeTable;
+    private final FileIdCacheService fileIdCacheService;
+    private final MediaStore mediaStore;
+    private final TelegramSendScheduler sendScheduler;
+    private final PriorityTaskExecutor taskExecutor;
+    private final LeaderElection leaderElection;
+    private final String chatId;
+    private final boolean enabled;
+    private final long initialDelayMs;
+    private final long intervalMs;
+    private final double jitter;
+    private final long minGapMs;
+    private final Map<Validation, Counter> validationCounters = new EnumMap<>(Validation.class);
+    private final Map<Refresh, Counter> refreshCounters = new EnumMap<>(Refresh.class);
+    private final Timer passTimer;
+
+    private ScheduledExecutorService ticker;
+    private volatile boolean stopping;
+    private long lastRequestNanos;
+
+    public FileIdValidator(EvgenBot evgenBot, RouteTable routeTable, FileIdCacheService fileIdCacheService,
+                           MediaStore mediaStore, TelegramSendScheduler sendScheduler,
+                           PriorityTaskExecutor taskExecutor, LeaderElection leaderElection,
+                           MeterRegistry meterRegistry,
+                           @Value("${telegram.preload.chatId:}") String chatId,
+                           @Value("${telegram.fileid.validation.enabled:true}") boolean enabled,
+                           @Value("${telegram.fileid.validation.initial-delay-ms:600000}") long initialDelayMs,
+                           @Value("${telegram.fileid.validation.interval-ms:21600000}") long intervalMs,
+                           @Value("${telegram.fileid.validation.jitter:0.2}") double jitter,
+                           @Value("${telegram.fileid.validation.min-gap-ms:2000}") long minGapMs) {
+        this.evgenBot = evgenBot;
+        this.routeTable = routeTable;
+        this.fileIdCacheService = fileIdCacheService;
+        this.mediaStore = mediaStore;
+        this.sendScheduler = sendScheduler;
+        this.taskExecutor = taskExecutor;
+        this.leaderElection = leaderElection;
+        this.chatId = chatId;
+        this.enabled = enabled;
+        this.initialDelayMs = initialDelayMs;
+        this.intervalMs = intervalMs;
+        this.jitter = Math.clamp(jitter, 0, 1);
+        this.minGapMs = minGapMs;
+        for (Validation validation : Validation.values()) {
+            validationCounters.put(validation, Counter.builder("telegram.fileid.validations")
+                    .description("Проверки закэшированных File ID: valid, invalid или error (проверить не удалось)")
+                    .tag("result", validation.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+        for (Refresh refresh : Refresh.values()) {
+            refreshCounters.put(refresh, Counter.builder("telegram.fileid.refreshes")
+                    .description("Замены недействительных File ID: uploaded — загружен заново, removed — удалён из кэша")
+                    .tag("result", refresh.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+        this.passTimer = Timer.builder("telegram.fileid.validation.duration")
+                .description("Длительность прохода проверки кэша File ID")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fileid-validator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.schedule(this::runQuietly, withJitter(initialDelayMs), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        stopping = true;
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Один проход: проверить каждый закэшированный File ID медиамаршрутов и заменить недействительные
+     */
+    void validateAll() throws InterruptedException {
+        if (!leaderElection.isLeader()) {
+            return;
+        }
+        // Несколько маршрутов могут указывать на один файл — проверяем его один раз
+        Map<String, Route> routes = new LinkedHashMap<>();
+        for (Route route : routeTable.getMediaRoutes()) {
+            if (!route.hasConfiguredFileId()) {
+                routes.putIfAbsent(route.mediaPath(), route);
+            }
+        }
+        long start = System.nanoTime();
+        int checked = 0;
+        int invalid = 0;
+        for (Route route : routes.values()) {
+            if (stopping || !leaderElection.isLeader()) {
+                break;
+            }
+            String fileId = fileIdCacheService.peekFileId(route.mediaPath());
+            if (fileId == null || fileId.isEmpty()) {
+                continue;
+            }
+            Validation validation = validate(fileId);
+            validationCounters.get(validation).increment();
+            checked++;
+            if (validation == Validation.INVALID) {
+                invalid++;
+                refresh(route, fileId);
+            }
+        }
+        passTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        log.info("Validated {} cached File IDs, {} invalid", checked, invalid);
+    }
+
+    private void runQuietly() {
+        try {
+            validateAll();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (RuntimeException e) {
+            log.error("File ID validation failed: {}", e.getMessage(), e);
+        }
+        if (!stopping) {
+            ticker.schedule(this::runQuietly, withJitter(intervalMs), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Validation validate(String fileId) throws InterruptedException {
+        pace();
+        GetFile getFile = new GetFile(fileId);
+        try {
+            sendScheduler.execute(null, TaskPriority.BACKGROUND, "getFile", () -> evgenBot.execute(getFile));
+            return Validation.VALID;
+        } catch (TelegramApiRequestException e) {
+            String response = e.getApiResponse() != null ? e.getApiResponse().toLowerCase(Locale.ROOT) : "";
+            if (e.getErrorCode() != null && e.getErrorCode() == BAD_REQUEST) {
+                if (response.contains("file is too big")) {
+                    // getFile отдаёт файлы до 20 МБ, но сам File ID действителен — отправке он подходит
+                    return Validation.VALID;
+                }
+                if (response.contains("wrong file identifier") || response.contains("invalid file")) {
+                    return Validation.INVALID;
+                }
+            }
+            log.warn("getFile failed for cached File ID: {}", e.getMessage());
+            return Validation.ERROR;
+        } catch (TelegramApiException e) {
+            log.warn("getFile failed for cached File ID: {}", e.getMessage());
+            return Validation.ERROR;
+        }
+    }
+
+    private void refresh(Route route, String staleFileId) throws InterruptedException {
+        if (!staleFileId.equals(fileIdCacheService.peekFileId(route.mediaPath()))) {
+            // Пока шла проверка, File ID уже заменил запрос пользователя
+            return;
+        }
+        if (chatId == null || chatId.isEmpty() || !mediaStore.exists(route.mediaPath())) {
+            fileIdCacheService.removeFileId(route.mediaPath());
+            refreshCounters.get(Refresh.REMOVED).increment();
+            log.warn("Cached File ID for {} is invalid, removed (no preload chat to re-upload to)", route.id());
+            return;
+        }
+        pace();
+        try {
+            String fileId = taskExecutor.execute(TaskPriority.BACKGROUND,
+                    () -> evgenBot.uploadAndCacheMediaSync(Long.parseLong(chatId), route.mediaPath(), route.fileName()));
+            if (fileId != null) {
+                refreshCounters.get(Refresh.UPLOADED).increment();
+                log.info("Replaced invalid File ID for {}: {}", route.id(), fileId);
+                return;
+            }
+        } catch (TelegramApiException | NumberFormatException e) {
+            log.warn("Failed to re-upload {}: {}", route.id(), e.getMessage());
+        }
+        fileIdCacheService.removeFileId(route.mediaPath());
+        refreshCounters.get(Refresh.FAILED).increment();
+    }
+
+    /**
+     * Не чаще одного запроса в min-gap-ms: проверка не должна отнимать лимит у ответов пользователям
+     */
+    private void pace() throws InterruptedException {
+        long waitNanos = lastRequestNanos + TimeUnit.MILLISECONDS.toNanos(minGapMs) - System.nanoTime();
+        if (lastRequestNanos != 0 && waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        lastRequestNanos = System.nanoTime();
+    }
+
+    private long withJitter(long delayMs) {
+        long spread = (long) (delayMs * jitter);
+        return spread > 0 ? delayMs - spread + ThreadLocalRandom.current().nextLong(2 * spread + 1) : delayMs;
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.hb.bot;
+
+import com.example.hb.service.FileIdCacheService;
+import com.example.hb.service.LeaderElection;
+import com.example.hb.service.MediaFile;
+import com.example.hb.service.MediaStore;
+import com.example.hb.service.PriorityTaskExecutor;
+import com.example.hb.service.TaskPriority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячая замена медиа без пересборки jar: файл из telegram.media.watch-dir подменяет одноимённый файл
+ * из resources (X.mp4 → media/X.mp4), новый — добавляется. Каталог слушает WatchService; файл берётся в работу,
+ * когда события по нему стихли на telegram.media.watch-settle-ms (копирование большого видео — много событий).
+ * Новое содержимое сначала загружается в чат предзагрузки (telegram.preload.chatId) и получает File ID по своему
+ * отпечатку, и только потом публикуется в MediaStore: до этого момента пользователи получают прежнее видео
+ * по прежнему File ID, после — новое по новому, без ожидания загрузки. Удалённый файл возвращает версию из resources.
+ * Каталог слушает каждая реплика — манифест у каждой свой, — но загружает только лидер. Остальные реплики
+ * публикуют новое содержимое, когда его File ID появится в общем хранилище, а если лидер так и не загрузил его
+ * за telegram.media.follower-wait-ms — публикуют без File ID.
+ */
+@Slf4j
+@Service
+public class MediaWatcher implements InitializingBean, DisposableBean {
+
+    enum Reload { UPLOADED, CACHED, PUBLISHED, REVERTED, FAILED }
+
+    /** Подготовленное содержимое, чей File ID должен загрузить лидер, и с какого момента ждём */
+    private record Waiting(MediaFile file, long since) {
+    }
+
+    private final EvgenBot evgenBot;
+    private final MediaStore mediaStore;
+    private final FileIdCacheService fileIdCacheService;
+    private final PriorityTaskExecutor taskExecutor;
+    private final LeaderElection leaderElection;
+    private final String watchDir;
+    private final String mediaDir;
+    private final String chatId;
+    private final long settleNanos;
+    private final long followerWaitNanos;
+    private final Map<Reload, Counter> reloadCounters = new EnumMap<>(Reload.class);
+
+    /** Имя файла → время последнего события; только поток наблюдателя */
+    private final Map<String, Long> pending = new HashMap<>();
+    /** Путь в MediaStore → содержимое, ждущее загрузки лидером; только поток наблюдателя */
+    private final Map<String, Waiting> waiting = new HashMap<>();
+    private WatchService watchService;
+    private Thread thread;
+
+    public MediaWatcher(EvgenBot evgenBot, MediaStore mediaStore, FileIdCacheService fileIdCacheService,
+                        PriorityTaskExecutor taskExecutor, LeaderElection leaderElection,
+                        MeterRegistry meterRegistry,
+                        @Value("${telegram.media.watch-dir:}") String watchDir,
+                        @Value("${telegram.media.scan-dir:media}") String mediaDir,
+                        @Value("${telegram.preload.chatId:}") String chatId,
+                        @Value("${telegram.media.watch-settle-ms:2000}") long settleMs,
+                        @Value("${telegram.media.follower-wait-ms:300000}") long followerWaitMs) {
+        this.evgenBot = evgenBot;
+        this.mediaStore = mediaStore;
+        this.fileIdCacheService = fileIdCacheService;
+        this.taskExecutor = taskExecutor;
+        this.leaderElection = leaderElection;
+        this.watchDir = watchDir;
+        this.mediaDir = mediaDir;
+        this.chatId = chatId;
+        this.settleNanos = TimeUnit.MILLISECONDS.toNanos(settleMs);
+        this.followerWaitNanos = TimeUnit.MILLISECONDS.toNanos(followerWaitMs);
+        for (Reload reload : Reload.values()) {
+            reloadCounters.put(reload, Counter.builder("telegram.media.reloads")
+                    .description("Горячие замены медиа: uploaded — загружено до публикации, cached — File ID уже был, "
+                            + "published — опубликовано без File ID, reverted — вернулась версия из resources")
+                    .tag("result", reload.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() throws IOException {
+        if (watchDir == null || watchDir.isEmpty()) {
+            return;
+        }
+        Path dir = Paths.get(watchDir);
+        Files.createDirectories(dir);
+        watchService = FileSystems.getDefault().newWatchService();
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+        thread = Thread.ofPlatform().name("media-watcher").daemon().start(() -> watch(dir));
+        log.info("Watching {} for media updates", dir.toAbsolutePath());
+    }
+
+    @Override
+    public void destroy() throws IOException, InterruptedException {
+        if (watchService != null) {
+            watchService.close();
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    private void watch(Path dir) {
+        // Файлы, положенные в каталог до старта, тоже подменяют версии из resources
+        long settled = System.nanoTime() - settleNanos;
+        listFiles(dir).forEach(name -> pending.put(name, settled));
+        try {
+            while (true) {
+                WatchKey key = watchService.poll(settleNanos, TimeUnit.NANOSECONDS);
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            listFiles(dir).forEach(name -> pending.put(name, System.nanoTime()));
+                        } else if (event.context() instanceof Path name) {
+                            pending.put(name.toString(), System.nanoTime());
+                        }
+                    }
+                    key.reset();
+                }
+                reloadSettled(dir);
+                recheckWaiting();
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Остановка приложения
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reloadSettled(Path dir) throws InterruptedException {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<String, Long>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (now - entry.getValue() < settleNanos) {
+                continue;
+            }
+            iterator.remove();
+            if (isTemporary(entry.getKey())) {
+                continue;
+            }
+            try {
+                reload(dir.resolve(entry.getKey()));
+            } catch (RuntimeException e) {
+                reloadCounters.get(Reload.FAILED).increment();
+                log.error("Failed to reload media {}: {}", entry.getKey(), e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Подхватить новое содержимое файла: загрузить, если его File ID ещё нет, и опубликовать
+     */
+    private void reload(Path source) throws InterruptedException {
+        String mediaPath = mediaDir + "/" + source.getFileName();
+        if (!Files.isRegularFile(source)) {
+            waiting.remove(mediaPath);
+            MediaFile original = mediaStore.revert(mediaPath);
+            reloadCounters.get(Reload.REVERTED).increment();
+            log.info("{} removed from the watched directory, {}", mediaPath,
+                    original != null ? "serving the bundled version again" : "no longer available");
+            return;
+        }
+        MediaFile prepared;
+        try {
+            prepared = mediaStore.prepare(mediaPath, source);
+        } catch (IOException e) {
+            reloadCounters.get(Reload.FAILED).increment();
+            log.warn("Failed to read updated media {}: {}", source, e.getMessage());
+            return;
+        }
+        MediaFile current = mediaStore.getMediaFile(mediaPath);
+        Waiting previous = waiting.remove(mediaPath);
+        if (current != null && prepared.contentKey().equals(current.contentKey())) {
+            return;
+        }
+        if (previous != null && prepared.contentKey().equals(previous.file().contentKey())) {
+            // То же содержимое уже ждёт лидера — срок ожидания не продлеваем
+            offer(prepared, previous.since());
+            return;
+        }
+        offer(prepared, System.nanoTime());
+        if (waiting.containsKey(mediaPath)) {
+            log.info("New content of {} is waiting for the leader to upload it", mediaPath);
+        }
+    }
+
+    /**
+     * Опубликовать содержимое, если его File ID уже есть или его может загрузить эта реплика (лидер);
+     * иначе оставить ждать, пока File ID не появится в общем хранилище
+     */
+    private void offer(MediaFile prepared, long since) throws InterruptedException {
+        Reload result;
+        if (fileIdCacheService.peekContentFileId(prepared.contentKey()) != null) {
+            result = Reload.CACHED;
+        } else if (!leaderElection.isLeader()) {
+            if (System.nanoTime() - since < followerWaitNanos) {
+                waiting.put(prepared.path(), new Waiting(prepared, since));
+                return;
+            }
+            log.warn("Leader did not upload new content of {} in time, publishing without a File ID", prepared.path());
+            result = Reload.PUBLISHED;
+        } else if (prepared.kind() != null && chatId != null && !chatId.isEmpty() && upload(prepared)) {
+            result = Reload.UPLOADED;
+        } else {
+            // Загрузить заранее не вышло — первый запрос загрузит файл сам
+            result = Reload.PUBLISHED;
+        }
+        mediaStore.publish(prepared);
+        reloadCounters.get(result).increment();
+        log.info("Published new content of {} ({} bytes, {})", prepared.path(), prepared.size(),
+                result.name().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Проверить содержимое, ждущее лидера: появился ли File ID, не стала ли лидером эта реплика, не вышел ли срок
+     */
+    private void recheckWaiting() throws InterruptedException {
+        if (waiting.isEmpty()) {
+            return;
+        }
+        List<Waiting> due = new ArrayList<>(waiting.values());
+        waiting.clear();
+        for (Waiting entry : due) {
+            try {
+                offer(entry.file(), entry.since());
+            } catch (RuntimeException e) {
+                reloadCounters.get(Reload.FAILED).increment();
+                log.error("Failed to publish media {}: {}", entry.file().path(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private boolean upload(MediaFile mediaFile) throws InterruptedException {
+        try {
+            String fileId = taskExecutor.execute(TaskPriority.BACKGROUND,
+                    () -> evgenBot.uploadAndCacheMediaSync(Long.parseLong(chatId), mediaFile));
+            return fileId != null;
+        } catch (TelegramApiException | NumberFormatException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("Interrupted while uploading " + mediaFile.path());
+            }
+            log.warn("Failed to upload new content of {} in advance: {}", mediaFile.path(), e.getMessage());
+            return false;
+        }
+    }
+
+    private static List<String> listFiles(Path dir) {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, Files::isRegularFile)) {
+            files.forEach(file -> names.add(file.getFileName().toString()));
+        } catch (IOException e) {
+            log.warn("Failed to list watched directory {}: {}", dir, e.getMessage());
+        }
+        return names;
+    }
+
+    /**
+     * Скрытые и недописанные файлы (копирование через временное имя) не публикуем
+     */
+    private static boolean isTemporary(String name) {
+        return name.startsWith(".") || name.endsWith(".tmp") || name.endsWith(".part") || name.endsWith("~");
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.hb.bot;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import org.telegram.telegrambots.meta.api.methods.botapimethods.BotApiMethodMessage;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.io.IOException;
+
+/**
+ * sendMessage из готового шаблона: Jackson не обходит объект, а пишет заранее собранный JSON.
+ * Подходит и для execute(), и для ответа в теле webhook.
+ */
+@JsonSerialize(using = PreparedSendMessage.Serializer.class)
+public final class PreparedSendMessage extends BotApiMethodMessage {
+
+    private final Long chatId;
+    private final ReplyTemplate template;
+
+    PreparedSendMessage(Long chatId, ReplyTemplate template) {
+        this.chatId = chatId;
+        this.template = template;
+    }
+
+    public Long getChatId() {
+        return chatId;
+    }
+
+    @Override
+    public String getMethod() {
+        return SendMessage.PATH;
+    }
+
+    @Override
+    public void validate() {
+        // Шаблон проверен при создании, chat_id задан всегда
+    }
+
+    public String toJson() {
+        return template.toJson(chatId);
+    }
+
+    static final class Serializer extends JsonSerializer<PreparedSendMessage> {
+
+        @Override
+        public void serialize(PreparedSendMessage value, JsonGenerator gen, SerializerProvider serializers)
+                throws IOException {
+            gen.writeRawValue(value.toJson());
+        }
+    }
+}
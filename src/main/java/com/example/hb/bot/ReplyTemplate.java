@@ -0,0 +1,51 @@
+package com.example.hb.bot;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiValidationException;
+
+/**
+ * Статический ответ, сериализованный в JSON один раз при старте.
+ * При отправке к готовому телу дописывается только chat_id.
+ */
+public final class ReplyTemplate {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String CHAT_ID_FIELD = "chat_id";
+
+    /** JSON тела без открывающей скобки и без chat_id: "text":...,"method":"sendmessage"} */
+    private final String bodyTail;
+
+    private ReplyTemplate(String bodyTail) {
+        this.bodyTail = bodyTail;
+    }
+
+    /**
+     * Собрать шаблон из обычного SendMessage (chat_id в нём игнорируется)
+     */
+    public static ReplyTemplate of(SendMessage message) {
+        message.setChatId("0");
+        try {
+            message.validate();
+            ObjectNode body = OBJECT_MAPPER.valueToTree(message);
+            body.remove(CHAT_ID_FIELD);
+            return new ReplyTemplate(OBJECT_MAPPER.writeValueAsString(body).substring(1));
+        } catch (TelegramApiValidationException | JsonProcessingException e) {
+            throw new IllegalStateException("Invalid reply template: " + e.getMessage(), e);
+        }
+    }
+
+    public PreparedSendMessage forChat(Long chatId) {
+        return new PreparedSendMessage(chatId, this);
+    }
+
+    String toJson(Long chatId) {
+        String chatIdValue = chatId.toString();
+        return new StringBuilder(bodyTail.length() + chatIdValue.length() + 16)
+                .append("{\"").append(CHAT_ID_FIELD).append("\":\"").append(chatIdValue).append("\",")
+                .append(bodyTail)
+                .toString();
+    }
+}
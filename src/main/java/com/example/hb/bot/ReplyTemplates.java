@@ -0,0 +1,105 @@
+package com.example.hb.bot;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboard;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardRemove;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardButton;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Клавиатура и все статические ответы бота, собранные один раз при старте.
+ * Клавиатура общая для всех сообщений и не должна изменяться после создания.
+ */
+@Slf4j
+@Component
+public class ReplyTemplates {
+
+    private final ReplyKeyboardMarkup keyboard;
+    private final ReplyTemplate loading;
+    private final ReplyTemplate removeKeyboard;
+    /** Для медиамаршрутов без missing-text */
+    private final ReplyTemplate missingDefault;
+    private final Map<String, ReplyTemplate> routeTexts;
+    private final Map<String, ReplyTemplate> missingTexts;
+
+    public ReplyTemplates(RouteTable routeTable) {
+        this.keyboard = createKeyboard(routeTable.getKeyboard());
+        this.loading = ReplyTemplate.of(message("⏳ Загружаю видео... Пожалуйста, подождите.", null));
+        this.removeKeyboard = ReplyTemplate.of(message("Обновляю меню…", new ReplyKeyboardRemove(true)));
+        this.missingDefault = ReplyTemplate.of(message("Медиафайл ещё не настроен.", keyboard));
+
+        Map<String, ReplyTemplate> texts = new HashMap<>();
+        Map<String, ReplyTemplate> missing = new HashMap<>();
+        for (Route route : routeTable.getRoutes()) {
+            if (route.text() != null && !route.text().isEmpty()) {
+                texts.put(route.id(), ReplyTemplate.of(message(route.text(), keyboard)));
+            }
+            if (route.missingText() != null && !route.missingText().isEmpty()) {
+                missing.put(route.id(), ReplyTemplate.of(message(route.missingText(), keyboard)));
+            }
+        }
+        this.routeTexts = Map.copyOf(texts);
+        this.missingTexts = Map.copyOf(missing);
+        log.info("Prepared {} static reply templates", routeTexts.size() + missingTexts.size() + 3);
+    }
+
+    /**
+     * Общая клавиатура бота (только для чтения)
+     */
+    public ReplyKeyboardMarkup keyboard() {
+        return keyboard;
+    }
+
+    /**
+     * Ответ маршрута текстом route.text()
+     */
+    public PreparedSendMessage text(Route route, Long chatId) {
+        return routeTexts.get(route.id()).forChat(chatId);
+    }
+
+    /**
+     * Ответ маршрута, для которого не настроен медиафайл; missing-text необязателен — без него общий текст
+     */
+    public PreparedSendMessage missingMedia(Route route, Long chatId) {
+        return missingTexts.getOrDefault(route.id(), missingDefault).forChat(chatId);
+    }
+
+    public PreparedSendMessage loading(Long chatId) {
+        return loading.forChat(chatId);
+    }
+
+    public PreparedSendMessage removeKeyboard(Long chatId) {
+        return removeKeyboard.forChat(chatId);
+    }
+
+    private static SendMessage message(String text, ReplyKeyboard replyMarkup) {
+        SendMessage message = new SendMessage();
+        message.setText(text);
+        message.setReplyMarkup(replyMarkup);
+        return message;
+    }
+
+    private static ReplyKeyboardMarkup createKeyboard(List<List<String>> buttons) {
+        ReplyKeyboardMarkup keyboardMarkup = new ReplyKeyboardMarkup();
+        keyboardMarkup.setResizeKeyboard(true);
+        keyboardMarkup.setOneTimeKeyboard(false);
+
+        List<KeyboardRow> keyboard = buttons.stream()
+                .map(row -> {
+                    KeyboardRow keyboardRow = new KeyboardRow();
+                    row.forEach(button -> keyboardRow.add(new KeyboardButton(button)));
+                    return keyboardRow;
+                })
+                .toList();
+
+        keyboardMarkup.setKeyboard(keyboard);
+        return keyboardMarkup;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.hb.bot;
+
+/**
+ * Скомпилированный маршрут: всё, что нужно обработчику, посчитано при старте
+ *
+ * @param fileId      File ID из конфигурации (приоритетнее кэша), может быть пустым
+ * @param fileName    имя файла из mediaPath
+ * @param video       true — отправляем как видео, false — как фото
+ * @param missingText ответ, если медиафайл не настроен
+ */
+public record Route(String id,
+                    RouteAction action,
+                    String text,
+                    String mediaPath,
+                    String fileName,
+                    String fileId,
+                    boolean video,
+                    String missingText) {
+
+    public boolean hasConfiguredFileId() {
+        return fileId != null && !fileId.isEmpty();
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.hb.bot;
+
+/**
+ * Что делает бот в ответ на триггер
+ */
+public enum RouteAction {
+
+    /**
+     * Сбросить старую клавиатуру и показать меню
+     */
+    START,
+
+    /**
+     * Ответить текстом с клавиатурой
+     */
+    TEXT,
+
+    /**
+     * Отправить фото или видео: File ID из конфига, из кэша или загрузка файла
+     */
+    MEDIA
+}
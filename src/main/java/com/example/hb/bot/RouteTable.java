@@ -0,0 +1,102 @@
+package com.example.hb.bot;
+
+import com.example.hb.config.RouteProperties;
+import com.example.hb.config.RouteProperties.RouteDefinition;
+import com.example.hb.service.MediaKind;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Таблица маршрутов, собранная один раз при старте из конфигурации.
+ * Поиск по тексту сообщения — один get из HashMap.
+ */
+@Slf4j
+@Component
+public class RouteTable {
+
+    private final Map<String, Route> routesByTrigger;
+    private final List<Route> routes;
+    private final List<Route> mediaRoutes;
+    private final List<List<String>> keyboard;
+
+    public RouteTable(RouteProperties properties) {
+        Map<String, Route> byTrigger = new HashMap<>();
+        List<Route> all = new ArrayList<>();
+        List<Route> media = new ArrayList<>();
+        properties.getRoutes().forEach((id, definition) -> {
+            Route route = compile(id, definition);
+            all.add(route);
+            for (String trigger : definition.getTriggers()) {
+                Route previous = byTrigger.put(trigger.trim(), route);
+                if (previous != null) {
+                    throw new IllegalStateException("Trigger '" + trigger + "' is used by routes '"
+                            + previous.id() + "' and '" + id + "'");
+                }
+            }
+            if (route.action() == RouteAction.MEDIA) {
+                media.add(route);
+            }
+        });
+        this.routesByTrigger = Map.copyOf(byTrigger);
+        this.routes = List.copyOf(all);
+        this.mediaRoutes = List.copyOf(media);
+        this.keyboard = properties.getKeyboard().stream().map(List::copyOf).toList();
+        if (routesByTrigger.isEmpty()) {
+            log.warn("No bot routes configured (telegram.routes), bot will not reply to messages");
+        } else {
+            log.info("Compiled {} routes with {} triggers", properties.getRoutes().size(), routesByTrigger.size());
+        }
+    }
+
+    /**
+     * Маршрут для текста сообщения (уже без пробелов по краям) или null
+     */
+    public Route resolve(String text) {
+        return routesByTrigger.get(text);
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * Все маршруты с медиафайлами — для предзагрузки File ID
+     */
+    public List<Route> getMediaRoutes() {
+        return mediaRoutes;
+    }
+
+    public List<List<String>> getKeyboard() {
+        return keyboard;
+    }
+
+    private static Route compile(String id, RouteDefinition definition) {
+        RouteAction action = definition.getAction();
+        if (action == null) {
+            throw new IllegalStateException("Route '" + id + "' has no action");
+        }
+        if (action != RouteAction.MEDIA) {
+            if (definition.getText() == null || definition.getText().isEmpty()) {
+                throw new IllegalStateException("Route '" + id + "' requires text");
+            }
+            return new Route(id, action, definition.getText(), null, null, null, false, null);
+        }
+
+        String mediaPath = definition.getMediaPath();
+        String fileId = definition.getFileId();
+        if ((mediaPath == null || mediaPath.isEmpty()) && (fileId == null || fileId.isEmpty())) {
+            throw new IllegalStateException("Media route '" + id + "' requires media-path or file-id");
+        }
+        String fileName = mediaPath != null && !mediaPath.isEmpty() ? Paths.get(mediaPath).getFileName().toString() : "";
+        // Без файла тип не определить — File ID из конфига по умолчанию считаем видео
+        boolean video = fileName.isEmpty() || MediaKind.of(fileName) == MediaKind.VIDEO;
+        return new Route(id, action, definition.getText(), mediaPath, fileName, fileId, video,
+                definition.getMissingText());
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.hb.bot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Схлопывает одинаковые запросы одного чата перед очередью обработчиков.
+ * Все маршруты идемпотентны — повторное нажатие той же кнопки даёт тот же ответ, — поэтому лишний
+ * апдейт можно не обрабатывать, если такой же запрос из этого чата:
+ * ещё ждёт в очереди (pending), пришёл в том же бэклоге, накопившемся до старта процесса (backlog),
+ * или был принят меньше telegram.coalesce.window-ms назад (window).
+ * Так пять нажатий «шанель номер 1» за время редеплоя дают одно видео, а не пять.
+ * Входящие видео (получение File ID) маршрутами не являются и не схлопываются.
+ */
+@Slf4j
+@Component
+public class UpdateCoalescer {
+
+    /** Как часто (в принятых апдейтах) вычищать устаревшие записи */
+    private static final int PRUNE_EVERY = 256;
+
+    private final boolean enabled;
+    private final long windowMs;
+    private final long processStartSeconds = processStartMillis() / 1000;
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger admitted = new AtomicInteger();
+    private final Map<String, Counter> coalescedCounters;
+
+    /** Пока приходят только апдейты из бэклога; первый «живой» апдейт его закрывает */
+    private volatile boolean backlogOpen = true;
+
+    public UpdateCoalescer(MeterRegistry meterRegistry,
+                           @Value("${telegram.coalesce.enabled:true}") boolean enabled,
+                           @Value("${telegram.coalesce.window-ms:2000}") long windowMs) {
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        Map<String, Counter> counters = new ConcurrentHashMap<>();
+        for (String reason : new String[]{"pending", "backlog", "window"}) {
+            counters.put(reason, Counter.builder("bot.updates.coalesced")
+                    .description("Апдейты, схлопнутые с таким же запросом из того же чата")
+                    .tag("reason", reason)
+                    .register(meterRegistry));
+        }
+        this.coalescedCounters = Map.copyOf(counters);
+    }
+
+    /**
+     * Решить, обрабатывать ли запрос маршрута из чата
+     * @param messageDate время отправки сообщения (секунды Unix, как в Telegram), может быть null
+     * @return false — такой же запрос уже принят, апдейт можно отбросить
+     */
+    public boolean admit(Long chatId, Route route, Integer messageDate) {
+        if (!enabled || chatId == null || route == null) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        boolean backlog = messageDate != null && messageDate < processStartSeconds;
+        if (!backlog && backlogOpen) {
+            backlogOpen = false;
+        }
+        String[] reason = new String[1];
+        entries.compute(new Key(chatId, route.id()), (key, previous) -> {
+            reason[0] = collapseReason(previous, backlog, now);
+            return reason[0] != null ? previous : new Entry(now, backlog);
+        });
+        if (reason[0] != null) {
+            coalescedCounters.get(reason[0]).increment();
+            log.debug("Coalesced {} request from chat {} ({})", route.id(), chatId, reason[0]);
+            return false;
+        }
+        if (admitted.incrementAndGet() % PRUNE_EVERY == 0) {
+            prune(now);
+        }
+        return true;
+    }
+
+    /**
+     * Обработка принятого запроса началась (или он отброшен очередью) — следующий такой же уже не лишний
+     */
+    public void started(Long chatId, Route route) {
+        if (!enabled || chatId == null || route == null) {
+            return;
+        }
+        Entry entry = entries.get(new Key(chatId, route.id()));
+        if (entry != null) {
+            entry.started = true;
+        }
+    }
+
+    /**
+     * Число запросов, по которым ещё помнится последний принятый
+     */
+    int size() {
+        return entries.size();
+    }
+
+    private String collapseReason(Entry previous, boolean backlog, long now) {
+        if (previous == null) {
+            return null;
+        }
+        if (!previous.started) {
+            return "pending";
+        }
+        if (backlog && previous.backlog) {
+            return "backlog";
+        }
+        return now - previous.acceptedAt < windowMs ? "window" : null;
+    }
+
+    private void prune(long now) {
+        boolean keepBacklog = backlogOpen;
+        entries.values().removeIf(entry -> entry.started
+                && now - entry.acceptedAt >= windowMs
+                && !(entry.backlog && keepBacklog));
+    }
+
+    private static long processStartMillis() {
+        return ProcessHandle.current().info().startInstant()
+                .map(Instant::toEpochMilli)
+                .orElseGet(() -> ManagementFactory.getRuntimeMXBean().getStartTime());
+    }
+
+    private record Key(long chatId, String routeId) {
+    }
+
+    private static final class Entry {
+
+        private final long acceptedAt;
+        private final boolean backlog;
+        private volatile boolean started;
+
+        private Entry(long acceptedAt, boolean backlog) {
+            this.acceptedAt = acceptedAt;
+            this.backlog = backlog;
+        }
+    }
+}
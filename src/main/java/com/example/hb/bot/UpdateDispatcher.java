@@ -0,0 +1,219 @@
+package com.example.hb.bot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Раздаёт обработку апдейтов по виртуальным потокам.
+ * Апдейты одного чата выполняются строго в порядке поступления (своя очередь на чат),
+ * разные чаты обрабатываются параллельно, а число одновременно работающих обработчиков ограничено.
+ * Асинхронный обработчик (dispatchAsync) не держит поток, пока ждёт Telegram: следующий апдейт
+ * чата начнётся, когда завершится его CompletableFuture.
+ */
+@Slf4j
+@Component
+public class UpdateDispatcher implements DisposableBean {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentHashMap<Long, ChatLane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Semaphore permits;
+    private final int maxQueued;
+
+    private final Timer handlerTimer;
+    private final Timer queueWaitTimer;
+    private final Counter rejectedCounter;
+
+    public UpdateDispatcher(MeterRegistry meterRegistry,
+                            @Value("${telegram.dispatcher.max-in-flight:16}") int maxInFlight,
+                            @Value("${telegram.dispatcher.max-queued:1000}") int maxQueued) {
+        this.permits = new Semaphore(maxInFlight);
+        this.maxQueued = maxQueued;
+        this.handlerTimer = Timer.builder("bot.updates.handler.latency")
+                .description("Время выполнения обработчика апдейта")
+                .register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("bot.updates.queue.wait")
+                .description("Время ожидания апдейта в очереди до начала обработки")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("bot.updates.rejected")
+                .description("Апдейты, отброшенные из-за переполнения очереди")
+                .register(meterRegistry);
+        Gauge.builder("bot.updates.queue.depth", queued, AtomicInteger::get)
+                .description("Апдейты, ожидающие обработки")
+                .register(meterRegistry);
+        Gauge.builder("bot.updates.in.flight", inFlight, AtomicInteger::get)
+                .description("Обработчики, выполняющиеся прямо сейчас")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Поставить задачу в очередь чата. Возвращает false, если очередь переполнена и задача отброшена.
+     */
+    public boolean dispatch(Long chatId, Runnable task) {
+        return dispatchAsync(chatId, () -> {
+            task.run();
+            return DONE;
+        });
+    }
+
+    /**
+     * Поставить в очередь чата асинхронный обработчик: он запускает работу и сразу возвращает её future.
+     * Возвращает false, если очередь переполнена и задача отброшена.
+     */
+    public boolean dispatchAsync(Long chatId, Supplier<? extends CompletableFuture<?>> task) {
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejectedCounter.increment();
+            log.warn("Update queue is full ({}), dropping update for chat {}", maxQueued, chatId);
+            return false;
+        }
+        QueuedTask queuedTask = new QueuedTask(task, System.nanoTime());
+        ChatLane lane = lanes.compute(chatId != null ? chatId : 0L, (key, existing) -> {
+            ChatLane target = existing != null ? existing : new ChatLane(key);
+            target.tasks.add(queuedTask);
+            return target;
+        });
+        lane.schedule();
+        return true;
+    }
+
+    /**
+     * Нет ни ожидающих, ни выполняющихся задач для чата — ответ можно отдать в обход очереди без нарушения порядка
+     */
+    public boolean isIdle(Long chatId) {
+        return !lanes.containsKey(chatId != null ? chatId : 0L);
+    }
+
+    /**
+     * Текущее число апдейтов в очередях (без учёта выполняющихся)
+     */
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("Update dispatcher did not drain in time, {} updates left in queue", queued.get());
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Запустить обработчик; место в лимите обработчиков занято, пока не завершится его future
+     */
+    private CompletableFuture<?> execute(QueuedTask queuedTask) {
+        queued.decrementAndGet();
+        queueWaitTimer.record(System.nanoTime() - queuedTask.enqueuedAt(), TimeUnit.NANOSECONDS);
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return DONE;
+        }
+        inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        CompletableFuture<?> handling;
+        try {
+            handling = queuedTask.task().get();
+        } catch (Exception e) {
+            handling = CompletableFuture.failedFuture(e);
+        }
+        return handling.whenComplete((result, error) -> {
+            if (error != null) {
+                log.error("Unhandled error in update handler", error);
+            }
+            handlerTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            inFlight.decrementAndGet();
+            permits.release();
+        });
+    }
+
+    private record QueuedTask(Supplier<? extends CompletableFuture<?>> task, long enqueuedAt) {
+    }
+
+    /**
+     * Очередь одного чата: в каждый момент её разбирает не больше одного виртуального потока
+     */
+    private final class ChatLane implements Runnable {
+
+        private final Long chatId;
+        private final Queue<QueuedTask> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private ChatLane(Long chatId) {
+            this.chatId = chatId;
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    log.warn("Update dispatcher is shut down, {} updates for chat {} dropped", tasks.size(), chatId);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                QueuedTask queuedTask;
+                while ((queuedTask = tasks.poll()) != null) {
+                    CompletableFuture<?> handling = execute(queuedTask);
+                    if (!handling.isDone()) {
+                        // Поток отпускаем; разбор очереди продолжится, когда обработчик завершится
+                        handling.whenComplete((result, error) -> resume());
+                        return;
+                    }
+                }
+            } catch (RuntimeException e) {
+                log.error("Unhandled error in update dispatcher", e);
+            }
+            release();
+        }
+
+        private void resume() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                // Диспетчер остановлен: release() попробует перезапуститься и сообщит о потерянных апдейтах
+                release();
+            }
+        }
+
+        private void release() {
+            scheduled.set(false);
+            // Пустую очередь убираем атомарно относительно dispatch(), иначе перезапускаем разбор
+            lanes.computeIfPresent(chatId, (key, lane) ->
+                    lane == this && tasks.isEmpty() && !scheduled.get() ? null : lane);
+            if (!tasks.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+}
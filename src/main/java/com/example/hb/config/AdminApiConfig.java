@@ -0,0 +1,34 @@
+package com.example.hb.config;
+
+import com.example.hb.controller.AdminTokenInterceptor;
+import com.example.hb.controller.BroadcastController;
+import com.example.hb.controller.DeliveryController;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Токены административных endpoint'ов: у рассылок (BroadcastController) и отложенных доставок
+ * (DeliveryController) свои заголовок и токен, проверка одна — AdminTokenInterceptor
+ */
+@Configuration
+public class AdminApiConfig implements WebMvcConfigurer {
+
+    private final String broadcastToken;
+    private final String deliveryToken;
+
+    public AdminApiConfig(@Value("${telegram.broadcast.token:}") String broadcastToken,
+                          @Value("${telegram.delivery.token:}") String deliveryToken) {
+        this.broadcastToken = broadcastToken;
+        this.deliveryToken = deliveryToken;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new AdminTokenInterceptor(BroadcastController.TOKEN_HEADER, broadcastToken))
+                .addPathPatterns("/broadcast", "/broadcast/**");
+        registry.addInterceptor(new AdminTokenInterceptor(DeliveryController.TOKEN_HEADER, deliveryToken))
+                .addPathPatterns("/deliveries", "/deliveries/**");
+    }
+}
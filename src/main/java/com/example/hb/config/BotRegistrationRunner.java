@@ -1,31 +1,54 @@
 package com.example.hb.config;
 
+import com.example.hb.bot.BotReadiness;
 import com.example.hb.bot.EvgenBot;
+import com.example.hb.bot.Route;
+import com.example.hb.bot.RouteTable;
+import com.example.hb.service.BotEvents;
 import com.example.hb.service.FileIdCacheService;
-import com.example.hb.service.VideoService;
+import com.example.hb.service.LeaderElection;
+import com.example.hb.service.MediaStore;
+import com.example.hb.service.PriorityTaskExecutor;
+import com.example.hb.service.TaskPriority;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.generics.BotSession;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.Executor;
-import org.springframework.beans.factory.annotation.Qualifier;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Регистрирует бота при старте. Webhook ставит каждая реплика (Telegram шлёт апдейты на общий адрес),
+ * а long polling и предзагрузку ведёт только лидер (см. LeaderElection): два getUpdates с одним токеном
+ * Telegram отклоняет с 409 Conflict, а параллельные предзагрузки загрузили бы одни и те же файлы дважды.
+ */
 @Slf4j
 @Component
-public class BotRegistrationRunner implements ApplicationRunner {
+public class BotRegistrationRunner implements ApplicationRunner, LeaderElection.Listener {
 
     private final EvgenBot evgenBot;
-    private final VideoService videoService;
+    private final TelegramBotConfig config;
+    private final RouteTable routeTable;
     private final FileIdCacheService fileIdCacheService;
-    private final Executor mediaPreloadExecutor;
+    private final MediaStore mediaStore;
+    private final PriorityTaskExecutor taskExecutor;
+    private final LeaderElection leaderElection;
+    private final BotReadiness readiness;
+    private final Timer preloadTimer;
+
+    private TelegramBotsApi telegramBotsApi;
+    private BotSession botSession;
 
     @Value("${telegram.preload.chatId:}")
     private String preloadChatId;
@@ -36,36 +59,103 @@ public class BotRegistrationRunner implements ApplicationRunner {
     @Value("${telegram.preload.delay:1000}")
     private long preloadDelay;
 
-    public BotRegistrationRunner(EvgenBot evgenBot, VideoService videoService, 
-                                FileIdCacheService fileIdCacheService,
-                                @Qualifier("mediaPreloadExecutor") Executor mediaPreloadExecutor) {
+    public BotRegistrationRunner(EvgenBot evgenBot, TelegramBotConfig config, RouteTable routeTable,
+                                FileIdCacheService fileIdCacheService, MediaStore mediaStore,
+                                PriorityTaskExecutor taskExecutor,
+                                LeaderElection leaderElection, BotReadiness readiness,
+                                MeterRegistry meterRegistry) {
         this.evgenBot = evgenBot;
-        this.videoService = videoService;
+        this.config = config;
+        this.routeTable = routeTable;
         this.fileIdCacheService = fileIdCacheService;
-        this.mediaPreloadExecutor = mediaPreloadExecutor;
+        this.mediaStore = mediaStore;
+        this.taskExecutor = taskExecutor;
+        this.leaderElection = leaderElection;
+        this.readiness = readiness;
+        this.preloadTimer = Timer.builder("telegram.preload.duration")
+                .description("Длительность предзагрузки медиафайлов при старте")
+                .register(meterRegistry);
     }
 
     @Override
     public void run(ApplicationArguments args) {
         try {
-            TelegramBotsApi telegramBotsApi = new TelegramBotsApi(DefaultBotSession.class);
-            telegramBotsApi.registerBot(evgenBot);
-            log.info("Telegram bot successfully registered");
-            if (preloadEnabled) {
-                preloadMediaFiles();
+            if (config.isWebhookMode()) {
+                if (!registerWebhook()) {
+                    return;
+                }
+                readiness.registered();
+            } else {
+                telegramBotsApi = new TelegramBotsApi(DefaultBotSession.class);
             }
+            leaderElection.start(this);
         } catch (TelegramApiException e) {
-            log.error("Failed to register Telegram bot (app will keep running, set TELEGRAM_BOT_TOKEN if deploying): {}", e.getMessage());
-            // Не падаем — чтобы веб-сервер поднялся и healthcheck прошёл
+            logRegistrationFailure(e);
         }
     }
 
+    @Override
+    public synchronized void onElected() {
+        if (telegramBotsApi != null && botSession == null) {
+            try {
+                botSession = telegramBotsApi.registerBot(evgenBot);
+                readiness.registered();
+                log.info("Telegram bot successfully registered (long polling)");
+            } catch (TelegramApiException e) {
+                logRegistrationFailure(e);
+                return;
+            }
+        }
+        if (preloadEnabled) {
+            preloadMediaFiles();
+        } else {
+            readiness.preloadSkipped();
+        }
+    }
+
+    @Override
+    public synchronized void onRevoked() {
+        if (botSession != null) {
+            botSession.stop();
+            botSession = null;
+            log.info("Stopped long polling: another replica holds the leader lease");
+        }
+    }
+
+    private void logRegistrationFailure(TelegramApiException e) {
+        readiness.registrationFailed(e.getMessage());
+        log.error("Failed to register Telegram bot (app will keep running, set TELEGRAM_BOT_TOKEN if deploying): {}", e.getMessage());
+        // Не падаем — чтобы веб-сервер поднялся и healthcheck прошёл
+    }
+
     /**
-     * Предзагрузка медиафайлов в фоновом режиме для получения File ID
-     * Использует параллельную загрузку для ускорения процесса
+     * Регистрирует webhook: Telegram сам присылает апдейты POST-запросом на WebhookController
+     * @return false, если публичный адрес не задан
+     */
+    private boolean registerWebhook() throws TelegramApiException {
+        String baseUrl = config.getWebhookUrl();
+        if (baseUrl == null || baseUrl.isEmpty()) {
+            log.error("telegram.bot.mode=webhook but telegram.webhook.url is not set, bot is not registered");
+            readiness.registrationFailed("telegram.webhook.url is not set");
+            return false;
+        }
+        String url = baseUrl.replaceAll("/+$", "") + config.getWebhookPath();
+        SetWebhook setWebhook = new SetWebhook(url);
+        if (config.getWebhookSecret() != null && !config.getWebhookSecret().isEmpty()) {
+            setWebhook.setSecretToken(config.getWebhookSecret());
+        }
+        evgenBot.execute(setWebhook);
+        log.info("Telegram bot successfully registered (webhook: {})", url);
+        return true;
+    }
+
+    /**
+     * Предзагрузка медиафайлов в фоновом режиме для получения File ID.
+     * Загрузки идут параллельно в фоновом классе PriorityTaskExecutor: места в нём ограничены,
+     * и загрузка, которую ждёт пользователь, получает свободное место раньше.
      */
     private void preloadMediaFiles() {
-        CompletableFuture.runAsync(() -> {
+        Thread.ofVirtual().name("media-preload").start(() -> {
             try {
                 // Небольшая задержка, чтобы бот точно был готов
                 Thread.sleep(preloadDelay);
@@ -74,61 +164,90 @@ public class BotRegistrationRunner implements ApplicationRunner {
                 if (chatId == null || chatId.isEmpty()) {
                     log.warn("telegram.preload.chatId not set, skipping preload. " +
                             "Set it in application.properties to enable preloading.");
+                    readiness.preloadSkipped();
                     return;
                 }
 
                 log.info("Starting parallel media files preload...");
                 long startTime = System.currentTimeMillis();
+                BotEvents.PreloadPhase total = new BotEvents.PreloadPhase();
+                total.begin();
                 
                 Long chatIdLong = Long.parseLong(chatId);
-                List<CompletableFuture<Void>> futures = new ArrayList<>();
-
-                // Параллельная предзагрузка файла поздравления
-                String congratulationsPath = "media/IMG_0128.MOV";
-                if (fileIdCacheService.fileExists(congratulationsPath) && 
-                    !fileIdCacheService.hasFileId(congratulationsPath)) {
-                    CompletableFuture<Void> congratulationsFuture = CompletableFuture.runAsync(() -> {
-                        try {
-                            log.info("Preloading congratulations file (parallel)...");
-                            String fileName = videoService.getCongratulationsMediaFileName();
-                            String fileId = evgenBot.uploadAndCacheMediaSync(chatIdLong, congratulationsPath, fileName);
-                            if (fileId != null) {
-                                log.info("✅ Congratulations file preloaded, File ID: {}", fileId);
-                            }
-                        } catch (Exception e) {
-                            log.warn("Failed to preload congratulations file: {}", e.getMessage());
-                        }
-                    }, mediaPreloadExecutor);
-                    futures.add(congratulationsFuture);
+                BotEvents.PreloadPhase scan = new BotEvents.PreloadPhase();
+                scan.begin();
+                List<Route> pending = new ArrayList<>();
+                for (Route route : routeTable.getMediaRoutes()) {
+                    if (!route.hasConfiguredFileId() && mediaStore.exists(route.mediaPath())
+                            && !fileIdCacheService.hasFileId(route.mediaPath())) {
+                        pending.add(route);
+                    }
                 }
+                commitPhase(scan, "scan", chatIdLong, null, pending.size());
+                readiness.preloadStarted(pending.size());
 
-                // Параллельная предзагрузка файла монополии
-                String monopolyPath = "media/IMG_0451.MP4";
-                if (fileIdCacheService.fileExists(monopolyPath) && 
-                    !fileIdCacheService.hasFileId(monopolyPath)) {
-                    CompletableFuture<Void> monopolyFuture = CompletableFuture.runAsync(() -> {
+                // Параллельная предзагрузка всех медиафайлов из таблицы маршрутов
+                List<CompletableFuture<Object>> futures = new ArrayList<>();
+                for (Route route : pending) {
+                    futures.add(taskExecutor.submit(TaskPriority.BACKGROUND, () -> {
                         try {
-                            log.info("Preloading monopoly file (parallel)...");
-                            String fileName = videoService.getMonopolyMediaFileName();
-                            String fileId = evgenBot.uploadAndCacheMediaSync(chatIdLong, monopolyPath, fileName);
+                            // Пока задача ждала места, файл мог загрузить запрос пользователя
+                            if (fileIdCacheService.hasFileId(route.mediaPath())) {
+                                readiness.preloadUploaded();
+                                return null;
+                            }
+                            log.info("Preloading {} file (parallel)...", route.id());
+                            BotEvents.PreloadPhase upload = new BotEvents.PreloadPhase();
+                            upload.begin();
+                            String fileId;
+                            try {
+                                fileId = evgenBot.uploadAndCacheMediaSync(chatIdLong, route.mediaPath(), route.fileName());
+                            } finally {
+                                commitPhase(upload, "upload", chatIdLong, route.mediaPath(), 1);
+                            }
                             if (fileId != null) {
-                                log.info("✅ Monopoly file preloaded, File ID: {}", fileId);
+                                readiness.preloadUploaded();
+                                log.info("✅ {} file preloaded, File ID: {}", route.id(), fileId);
+                            } else {
+                                readiness.preloadFailed(route);
                             }
                         } catch (Exception e) {
-                            log.warn("Failed to preload monopoly file: {}", e.getMessage());
+                            readiness.preloadFailed(route);
+                            log.warn("Failed to preload {} file: {}", route.id(), e.getMessage());
                         }
-                    }, mediaPreloadExecutor);
-                    futures.add(monopolyFuture);
+                        return null;
+                    }).exceptionally(e -> {
+                        // Очередь фоновых задач переполнена или исполнитель остановлен
+                        readiness.preloadFailed(route);
+                        log.warn("Preload of {} file was shed: {}", route.id(), e.getMessage());
+                        return null;
+                    }));
                 }
 
                 // Ждем завершения всех загрузок
-                CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+                CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
                 
                 long endTime = System.currentTimeMillis();
+                preloadTimer.record(endTime - startTime, TimeUnit.MILLISECONDS);
+                commitPhase(total, "total", chatIdLong, null, pending.size());
+                readiness.preloadFinished();
                 log.info("✅ Media files preload completed in {} ms (parallel loading)", (endTime - startTime));
             } catch (Exception e) {
+                readiness.preloadFinished();
                 log.error("Error during media files preload", e);
             }
         });
     }
+
+    private static void commitPhase(BotEvents.PreloadPhase event, String phase, long chatId, String mediaPath,
+                                    int files) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.chatId = chatId;
+            event.phase = phase;
+            event.mediaPath = mediaPath;
+            event.files = files;
+            event.commit();
+        }
+    }
 }
@@ -0,0 +1,59 @@
+package com.example.hb.config;
+
+import com.example.hb.bot.RouteAction;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Маршруты «триггер → действие» и клавиатура из routes.yml (YAML, потому что тексты на русском,
+ * а .properties Spring читает в ISO-8859-1)
+ */
+@Configuration
+@ConfigurationProperties(prefix = "telegram")
+@Getter
+@Setter
+public class RouteProperties {
+
+    private Map<String, RouteDefinition> routes = new LinkedHashMap<>();
+
+    /**
+     * Ряды кнопок клавиатуры
+     */
+    private List<List<String>> keyboard = new ArrayList<>();
+
+    @Getter
+    @Setter
+    public static class RouteDefinition {
+
+        private RouteAction action = RouteAction.TEXT;
+
+        /**
+         * Тексты сообщений и команды, на которые срабатывает маршрут
+         */
+        private List<String> triggers = new ArrayList<>();
+
+        private String text;
+
+        /**
+         * Путь к файлу в resources для action=media
+         */
+        private String mediaPath;
+
+        /**
+         * File ID из конфигурации; если задан, файл не загружается
+         */
+        private String fileId;
+
+        /**
+         * Ответ, если для action=media нет ни File ID, ни файла
+         */
+        private String missingText;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.hb.config;
+
+import com.example.hb.service.DeliveryStore;
+import com.example.hb.service.FileIdStore;
+import com.example.hb.service.InMemoryLeaseStore;
+import com.example.hb.service.JdbcDeliveryStore;
+import com.example.hb.service.JdbcFileIdStore;
+import com.example.hb.service.JdbcLeaseStore;
+import com.example.hb.service.JdbcSubscriberStore;
+import com.example.hb.service.JournalDeliveryStore;
+import com.example.hb.service.JournalFileIdStore;
+import com.example.hb.service.JournalSubscriberStore;
+import com.example.hb.service.LeaseStore;
+import com.example.hb.service.RedisClient;
+import com.example.hb.service.RedisDeliveryStore;
+import com.example.hb.service.RedisFileIdStore;
+import com.example.hb.service.RedisLeaseStore;
+import com.example.hb.service.RedisSubscriberStore;
+import com.example.hb.service.SubscriberStore;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.nio.file.Paths;
+
+/**
+ * Выбор общего хранилища по telegram.cache.store: file (по умолчанию), jdbc или redis.
+ * В нём лежат File ID, аренда лидера, подписчики для рассылок и отложенные доставки. Для нескольких реплик или эфемерного диска
+ * (Railway, Render) нужен jdbc или redis; с file экземпляр считается единственным.
+ * Хранилище выбирается при старте, а не через @ConditionalOnProperty: в AOT-сборке (профиль fast-start)
+ * условия вычисляются при сборке, и переменная окружения на деплое уже ничего бы не меняла.
+ * Пул соединений и клиент Redis ленивые — создаются, только если выбранное хранилище их запросило.
+ */
+@Configuration
+public class SharedStoreConfig {
+
+    private static final String FILE = "file";
+    private static final String JDBC = "jdbc";
+    private static final String REDIS = "redis";
+
+    @Value("${telegram.cache.store:file}")
+    private String store;
+
+    @Bean
+    public FileIdStore fileIdStore(
+            @Value("${telegram.cache.file:file-id-cache.properties}") String cacheFileName,
+            @Value("${telegram.cache.flush-interval-ms:200}") long flushIntervalMs,
+            @Value("${telegram.cache.compact-threshold:100}") int compactThreshold,
+            @Value("${telegram.cache.jdbc.table:file_id_cache}") String table,
+            @Value("${telegram.cache.redis.key:telegram:file-ids}") String hashKey,
+            ObjectProvider<DataSource> dataSource, ObjectProvider<RedisClient> redisClient) {
+        return switch (store) {
+            case FILE -> new JournalFileIdStore(Paths.get(cacheFileName), flushIntervalMs, compactThreshold);
+            case JDBC -> new JdbcFileIdStore(dataSource.getObject(), table);
+            case REDIS -> new RedisFileIdStore(redisClient.getObject(), hashKey);
+            default -> throw unknownStore();
+        };
+    }
+
+    @Bean
+    public LeaseStore leaseStore(
+            @Value("${telegram.leader.jdbc.table:bot_lease}") String table,
+            @Value("${telegram.leader.redis.key-prefix:telegram:lease:}") String keyPrefix,
+            ObjectProvider<DataSource> dataSource, ObjectProvider<RedisClient> redisClient) {
+        return switch (store) {
+            case FILE -> new InMemoryLeaseStore();
+            case JDBC -> new JdbcLeaseStore(dataSource.getObject(), table);
+            case REDIS -> new RedisLeaseStore(redisClient.getObject(), keyPrefix);
+            default -> throw unknownStore();
+        };
+    }
+
+    @Bean
+    public SubscriberStore subscriberStore(
+            @Value("${telegram.broadcast.file:subscribers.txt}") String subscribersFileName,
+            @Value("${telegram.broadcast.jdbc.table:bot_subscriber}") String table,
+            @Value("${telegram.broadcast.jdbc.checkpoint-table:bot_broadcast}") String checkpointTable,
+            @Value("${telegram.broadcast.redis.key:telegram:subscribers}") String setKey,
+            @Value("${telegram.broadcast.redis.checkpoint-key:telegram:broadcast}") String checkpointKey,
+            ObjectProvider<DataSource> dataSource, ObjectProvider<RedisClient> redisClient) {
+        return switch (store) {
+            case FILE -> new JournalSubscriberStore(Paths.get(subscribersFileName));
+            case JDBC -> new JdbcSubscriberStore(dataSource.getObject(), table, checkpointTable);
+            case REDIS -> new RedisSubscriberStore(redisClient.getObject(), setKey, checkpointKey);
+            default -> throw unknownStore();
+        };
+    }
+
+    @Bean
+    public DeliveryStore deliveryStore(
+            @Value("${telegram.delivery.file:deliveries.txt}") String deliveriesFileName,
+            @Value("${telegram.delivery.jdbc.table:bot_delivery}") String table,
+            @Value("${telegram.delivery.redis.key:telegram:deliveries}") String hashKey,
+            ObjectProvider<DataSource> dataSource, ObjectProvider<RedisClient> redisClient) {
+        return switch (store) {
+            case FILE -> new JournalDeliveryStore(Paths.get(deliveriesFileName));
+            case JDBC -> new JdbcDeliveryStore(dataSource.getObject(), table);
+            case REDIS -> new RedisDeliveryStore(redisClient.getObject(), hashKey);
+            default -> throw unknownStore();
+        };
+    }
+
+    @Bean
+    @Lazy
+    public HikariDataSource sharedStoreDataSource(
+            @Value("${telegram.cache.jdbc.url:jdbc:h2:file:./data/file-id-cache}") String url,
+            @Value("${telegram.cache.jdbc.username:}") String username,
+            @Value("${telegram.cache.jdbc.password:}") String password) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(4); // Запросы редкие: почти всё отвечает near-cache
+        dataSource.setPoolName("shared-store");
+        return dataSource;
+    }
+
+    @Bean
+    @Lazy
+    public RedisClient sharedStoreRedisClient(
+            @Value("${telegram.cache.redis.url:redis://localhost:6379}") String url,
+            @Value("${telegram.cache.redis.timeout-ms:2000}") int timeoutMs) {
+        return new RedisClient(URI.create(url), timeoutMs);
+    }
+
+    private IllegalStateException unknownStore() {
+        return new IllegalStateException("Unknown telegram.cache.store '" + store + "', expected file, jdbc or redis");
+    }
+}
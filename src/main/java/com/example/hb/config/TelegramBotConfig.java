@@ -3,6 +3,8 @@ package com.example.hb.config;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.ApiConstants;
 
 @Configuration
 @Getter
@@ -13,4 +15,64 @@ public class TelegramBotConfig {
 
     @Value("${telegram.bot.username}")
     private String botUsername;
+
+    /**
+     * Способ получения апдейтов: polling (getUpdates) или webhook (POST на наш endpoint)
+     */
+    @Value("${telegram.bot.mode:polling}")
+    private String mode;
+
+    /**
+     * Публичный адрес приложения, например https://my-bot.up.railway.app
+     */
+    @Value("${telegram.webhook.url:}")
+    private String webhookUrl;
+
+    @Value("${telegram.webhook.path:/telegram/webhook}")
+    private String webhookPath;
+
+    /**
+     * Секрет, который Telegram передаёт в заголовке X-Telegram-Bot-Api-Secret-Token
+     */
+    @Value("${telegram.webhook.secret:}")
+    private String webhookSecret;
+
+    /**
+     * Адрес своего Bot API сервера (telegram-bot-api --local), например http://localhost:8081.
+     * Пусто — публичный https://api.telegram.org
+     */
+    @Value("${telegram.bot.api-url:}")
+    private String apiUrl;
+
+    /**
+     * Для своего сервера: отправлять медиа как file:// путь, который сервер читает сам,
+     * вместо multipart-загрузки. Требует общей с сервером файловой системы (см. telegram.media.store-dir)
+     */
+    @Value("${telegram.bot.local-files:true}")
+    private boolean localFiles;
+
+    public boolean isWebhookMode() {
+        return "webhook".equalsIgnoreCase(mode);
+    }
+
+    public boolean isLocalApiServer() {
+        return apiUrl != null && !apiUrl.isEmpty();
+    }
+
+    public boolean isLocalFileUploads() {
+        return isLocalApiServer() && localFiles;
+    }
+
+    /**
+     * Настройки клиента Bot API: базовый адрес вида &lt;сервер&gt;/bot, к которому библиотека дописывает токен
+     */
+    public DefaultBotOptions createBotOptions() {
+        DefaultBotOptions options = new DefaultBotOptions();
+        if (isLocalApiServer()) {
+            options.setBaseUrl(apiUrl.replaceAll("/+$", "") + "/bot");
+        } else {
+            options.setBaseUrl(ApiConstants.BASE_URL);
+        }
+        return options;
+    }
 }
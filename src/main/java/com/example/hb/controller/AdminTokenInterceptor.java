@@ -0,0 +1,39 @@
+package com.example.hb.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Проверка токена административных endpoint'ов (рассылки, отложенные доставки): запрос проходит,
+ * только если заголовок равен настроенному токену. Пока токен не задан, endpoint'ы отвечают 404,
+ * неверный или отсутствующий заголовок — 403. Сравнение — за постоянное время.
+ */
+public class AdminTokenInterceptor implements HandlerInterceptor {
+
+    private final String header;
+    private final byte[] token;
+
+    public AdminTokenInterceptor(String header, String token) {
+        this.header = header;
+        this.token = token == null ? new byte[0] : token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (token.length == 0) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+            return false;
+        }
+        String value = request.getHeader(header);
+        if (value == null || !MessageDigest.isEqual(token, value.getBytes(StandardCharsets.UTF_8))) {
+            response.setStatus(HttpStatus.FORBIDDEN.value());
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.hb.controller;
+
+import com.example.hb.bot.BroadcastService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * Управление рассылками (см. BroadcastService).
+ * POST /broadcast/{route} — разослать медиа маршрута всем подписчикам, GET /broadcast — прогресс,
+ * DELETE /broadcast — отменить. Каждый запрос — с заголовком X-Broadcast-Token, равным telegram.broadcast.token;
+ * пока токен не задан, endpoint'ы отвечают 404.
+ */
+@RestController
+public class BroadcastController {
+
+    /** Заголовок с токеном; проверяет его AdminTokenInterceptor (см. AdminApiConfig) */
+    public static final String TOKEN_HEADER = "X-Broadcast-Token";
+
+    private final BroadcastService broadcastService;
+
+    public BroadcastController(BroadcastService broadcastService) {
+        this.broadcastService = broadcastService;
+    }
+
+    @PostMapping("/broadcast/{route}")
+    public ResponseEntity<Map<String, Object>> start(@PathVariable("route") String route) {
+        try {
+            broadcastService.start(route);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(broadcastService.status());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/broadcast")
+    public ResponseEntity<Map<String, Object>> status() {
+        return ResponseEntity.ok(broadcastService.status());
+    }
+
+    @DeleteMapping("/broadcast")
+    public ResponseEntity<Map<String, Object>> cancel() {
+        if (broadcastService.cancel() == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", "No running broadcast"));
+        }
+        return ResponseEntity.ok(broadcastService.status());
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.hb.controller;
+
+import com.example.hb.bot.DeliveryScheduler;
+import com.example.hb.service.ScheduledDelivery;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Отложенные доставки (см. DeliveryScheduler).
+ * POST /deliveries?chatId=…&amp;route=…&amp;at=2026-10-20T09:00&amp;zone=Europe/Moscow — запланировать (202),
+ * GET /deliveries/{id} — посмотреть, DELETE /deliveries/{id} — отменить.
+ * Каждый запрос — с заголовком X-Delivery-Token, равным telegram.delivery.token;
+ * пока токен не задан, endpoint'ы отвечают 404.
+ */
+@RestController
+public class DeliveryController {
+
+    /** Заголовок с токеном; проверяет его AdminTokenInterceptor (см. AdminApiConfig) */
+    public static final String TOKEN_HEADER = "X-Delivery-Token";
+
+    private final DeliveryScheduler deliveryScheduler;
+
+    public DeliveryController(DeliveryScheduler deliveryScheduler) {
+        this.deliveryScheduler = deliveryScheduler;
+    }
+
+    @PostMapping("/deliveries")
+    public ResponseEntity<Map<String, Object>> schedule(
+            @RequestParam("chatId") long chatId, @RequestParam("route") String route,
+            @RequestParam("at") String at, @RequestParam(value = "zone", defaultValue = "UTC") String zone) {
+        try {
+            ScheduledDelivery delivery = deliveryScheduler.schedule(chatId, route, LocalDateTime.parse(at),
+                    ZoneId.of(zone));
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(details(delivery));
+        } catch (IllegalArgumentException | DateTimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/deliveries/{id}")
+    public ResponseEntity<Map<String, Object>> get(@PathVariable("id") String id) {
+        ScheduledDelivery delivery = deliveryScheduler.get(id);
+        return delivery != null ? ResponseEntity.ok(details(delivery)) : ResponseEntity.notFound().build();
+    }
+
+    @DeleteMapping("/deliveries/{id}")
+    public ResponseEntity<Map<String, Object>> cancel(@PathVariable("id") String id) {
+        return deliveryScheduler.cancel(id) ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    }
+
+    private static Map<String, Object> details(ScheduledDelivery delivery) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("id", delivery.id());
+        details.put("chatId", delivery.chatId());
+        details.put("route", delivery.routeId());
+        details.put("at", Instant.ofEpochMilli(delivery.fireAt()).atZone(ZoneId.of(delivery.zone()))
+                .toOffsetDateTime().toString());
+        return details;
+    }
+}
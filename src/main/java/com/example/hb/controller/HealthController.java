@@ -1,20 +1,40 @@
 package com.example.hb.controller;
 
+import com.example.hb.bot.BotReadiness;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
- * Простой endpoint для healthcheck при деплое.
- * Платформа проверяет GET / или GET /health — возвращаем 200 OK.
+ * Endpoint'ы для healthcheck при деплое.
+ * GET /, /health и /health/live — liveness: процесс жив, 200 OK всегда.
+ * GET /health/ready — readiness: 200, когда бот зарегистрирован и медиа прогреты (см. BotReadiness),
+ * иначе 503 с подробностями — платформа не пустит трафик на экземпляр, пока он не готов.
  */
 @RestController
 public class HealthController {
 
-    @GetMapping({"/", "/health"})
+    private final BotReadiness readiness;
+
+    public HealthController(BotReadiness readiness) {
+        this.readiness = readiness;
+    }
+
+    @GetMapping({"/", "/health", "/health/live"})
     public ResponseEntity<Map<String, String>> health() {
         return ResponseEntity.ok(Map.of("status", "UP"));
     }
+
+    @GetMapping("/health/ready")
+    public ResponseEntity<Map<String, Object>> ready() {
+        BotReadiness.Report report = readiness.report();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("status", report.ready() ? "UP" : "OUT_OF_SERVICE");
+        body.putAll(report.details());
+        return ResponseEntity.status(report.ready() ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(body);
+    }
 }
@@ -0,0 +1,55 @@
+package com.example.hb.controller;
+
+import com.example.hb.service.FlightRecorder;
+import org.springframework.boot.actuate.endpoint.Access;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Дамп непрерывной записи JFR (см. FlightRecorder).
+ * POST /actuator/jfr — сбросить запись в файл, в ответе имя и размер;
+ * GET /actuator/jfr/{name} — скачать дамп, чтобы открыть в JDK Mission Control.
+ * По умолчанию выключен: нужны management.endpoint.jfr.access=unrestricted и jfr
+ * в management.endpoints.web.exposure.include.
+ */
+@Component
+@Endpoint(id = "jfr", defaultAccess = Access.NONE)
+public class JfrEndpoint {
+
+    private final FlightRecorder flightRecorder;
+
+    public JfrEndpoint(FlightRecorder flightRecorder) {
+        this.flightRecorder = flightRecorder;
+    }
+
+    @WriteOperation
+    public Map<String, Object> dump() throws IOException {
+        Map<String, Object> details = new LinkedHashMap<>();
+        if (!flightRecorder.isRecording()) {
+            details.put("error", "JFR recording is not running");
+            return details;
+        }
+        Path file = flightRecorder.dump();
+        details.put("name", file.getFileName().toString());
+        details.put("path", file.toString());
+        details.put("size", Files.size(file));
+        return details;
+    }
+
+    @ReadOperation(produces = "application/octet-stream")
+    public Resource download(@Selector String name) {
+        Path file = flightRecorder.findDump(name);
+        return file != null ? new FileSystemResource(file) : null;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.hb.controller;
+
+import com.example.hb.bot.EvgenBot;
+import com.example.hb.config.TelegramBotConfig;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Приём апдейтов в webhook-режиме (telegram.bot.mode=webhook).
+ * Отвечаем сразу: простой ответ кладём в тело HTTP-ответа, остальное обрабатывается асинхронно.
+ * Апдейты разбираем тем же Jackson 2, что и библиотека Telegram, а не Jackson из Spring MVC.
+ * Контроллер есть всегда (режим не выбирается через @ConditionalOnProperty, чтобы его можно было
+ * переключить и в AOT-сборке), но в режиме long polling отвечает 404.
+ */
+@Slf4j
+@RestController
+public class WebhookController {
+
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final EvgenBot evgenBot;
+    private final TelegramBotConfig config;
+
+    public WebhookController(EvgenBot evgenBot, TelegramBotConfig config) {
+        this.evgenBot = evgenBot;
+        this.config = config;
+    }
+
+    @PostMapping(path = "${telegram.webhook.path:/telegram/webhook}", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> onUpdate(@RequestBody byte[] body,
+                                           @RequestHeader(name = SECRET_HEADER, required = false) String secret) {
+        if (!config.isWebhookMode()) {
+            return ResponseEntity.notFound().build();
+        }
+        String expectedSecret = config.getWebhookSecret();
+        if (expectedSecret != null && !expectedSecret.isEmpty() && (secret == null
+                || !MessageDigest.isEqual(expectedSecret.getBytes(StandardCharsets.UTF_8),
+                        secret.getBytes(StandardCharsets.UTF_8)))) {
+            log.warn("Rejected webhook call with invalid secret token");
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        Update update;
+        try {
+            update = objectMapper.readValue(body, Update.class);
+        } catch (IOException e) {
+            // 200, чтобы Telegram не повторял заведомо битый апдейт
+            log.warn("Failed to parse webhook update: {}", e.getMessage());
+            return ResponseEntity.ok().build();
+        }
+
+        BotApiMethod<?> reply = evgenBot.onWebhookUpdateReceived(update);
+        if (reply == null) {
+            return ResponseEntity.ok().build();
+        }
+        try {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(objectMapper.writeValueAsBytes(reply));
+        } catch (IOException e) {
+            log.error("Failed to serialize webhook reply: {}", e.getMessage(), e);
+            return ResponseEntity.ok().build();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.hb.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * События Java Flight Recorder на пути апдейта: получение, маршрут, кэш File ID, вызов Bot API, загрузка,
+ * фазы предзагрузки. У каждого события есть chatId и updateId (см. UpdateTrace) — в JDK Mission Control
+ * по ним видно, как один апдейт прошёл через очереди и потоки, а рядом — GC и I/O за то же время.
+ * Пока запись не идёт, commit почти ничего не стоит; стек не пишем, чтобы событие оставалось дешёвым.
+ */
+public final class BotEvents {
+
+    private static final String CATEGORY = "Telegram Bot";
+
+    private BotEvents() {
+    }
+
+    @Name("com.example.hb.UpdateReceived")
+    @Label("Update Received")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class UpdateReceived extends Event {
+        @Label("Chat Id")
+        public long chatId;
+        @Label("Update Id")
+        public long updateId;
+        @Label("Kind")
+        @Description("text, video или other")
+        public String kind;
+    }
+
+    @Name("com.example.hb.RouteResolved")
+    @Label("Route Resolved")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class RouteResolved extends Event {
+        @Label("Chat Id")
+        public long chatId;
+        @Label("Update Id")
+        public long updateId;
+        @Label("Route")
+        public String route;
+        @Label("Action")
+        public String action;
+    }
+
+    @Name("com.example.hb.CacheLookup")
+    @Label("File ID Cache Lookup")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class CacheLookup extends Event {
+        @Label("Chat Id")
+        public long chatId;
+        @Label("Update Id")
+        public long updateId;
+        @Label("Key")
+        public String key;
+        @Label("Result")
+        @Description("hit — из памяти, store — из хранилища, miss — нет нигде, error — хранилище недоступно")
+        public String result;
+    }
+
+    @Name("com.example.hb.ApiCall")
+    @Label("Telegram API Call")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class ApiCall extends Event {
+        @Label("Chat Id")
+        public long chatId;
+        @Label("Update Id")
+        public long updateId;
+        @Label("Method")
+        public String method;
+        @Label("Request Size")
+        @DataAmount
+        public long bytes;
+        @Label("Outcome")
+        @Description("success, throttled или error")
+        public String outcome;
+        @Label("Error Code")
+        @Description("error_code ответа Bot API, 0 — ошибки не было или ответа нет")
+        public int errorCode;
+        @Label("Attempt")
+        public int attempt;
+    }
+
+    @Name("com.example.hb.Upload")
+    @Label("Media Upload")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class Upload extends Event {
+        @Label("Chat Id")
+        public long chatId;
+        @Label("Update Id")
+        public long updateId;
+        @Label("Media Path")
+        public String mediaPath;
+        @Label("Kind")
+        public String kind;
+        @Label("Size")
+        @DataAmount
+        public long bytes;
+        @Label("Succeeded")
+        public boolean succeeded;
+    }
+
+    @Name("com.example.hb.PreloadPhase")
+    @Label("Preload Phase")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    public static class PreloadPhase extends Event {
+        @Label("Chat Id")
+        public long chatId;
+        @Label("Update Id")
+        public long updateId;
+        @Label("Phase")
+        @Description("scan — выбор файлов без File ID, upload — загрузка одного файла, total — вся предзагрузка")
+        public String phase;
+        @Label("Media Path")
+        public String mediaPath;
+        @Label("Files")
+        public int files;
+    }
+}
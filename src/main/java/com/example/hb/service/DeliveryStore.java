@@ -0,0 +1,35 @@
+package com.example.hb.service;
+
+import java.util.List;
+
+/**
+ * Отложенные доставки, переживающие рестарт и редеплой (см. DeliveryScheduler).
+ * Реализация выбирается тем же telegram.cache.store: file — журнал одного экземпляра,
+ * jdbc и redis — общий список для всех реплик. Ошибки доступа реализации бросают как unchecked-исключения.
+ */
+public interface DeliveryStore extends AutoCloseable {
+
+    /**
+     * Добавить доставку или заменить доставку с тем же id
+     */
+    void put(ScheduledDelivery delivery);
+
+    void remove(String id);
+
+    /**
+     * @return доставка или null, если её уже отменили или выполнили
+     */
+    ScheduledDelivery get(String id);
+
+    List<ScheduledDelivery> loadAll();
+
+    /**
+     * Доставки, добавленные или изменённые не раньше since (мс с эпохи по часам записавшей реплики), —
+     * лидер подхватывает доставки других реплик, не перечитывая всё хранилище
+     */
+    List<ScheduledDelivery> updatedSince(long since);
+
+    @Override
+    default void close() {
+    }
+}
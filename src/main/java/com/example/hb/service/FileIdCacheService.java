@@ -1,112 +1,291 @@
 package com.example.hb.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.ResourceLoader;
 import org.springframework.stereotype.Service;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.Properties;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Кэш File ID: near-cache в памяти перед хранилищем FileIdStore (файл, SQL или Redis).
+ * Ключ — отпечаток содержимого файла (см. MediaDigestService), а не путь: переименование
+ * не требует новой загрузки, а замена содержимого под тем же именем даёт промах кэша.
+ * Запись near-cache живёт telegram.cache.near-ttl-ms, после чего перечитывается из хранилища —
+ * так реплика со временем видит File ID, заменённые или удалённые другими репликами.
+ * Промах near-cache всегда идёт в хранилище, поэтому загрузку, уже сделанную другой репликой,
+ * мы не повторяем. Сбой хранилища не роняет обработку: чтение считается промахом,
+ * а записанный File ID остаётся хотя бы в памяти.
+ */
 @Slf4j
 @Service
 public class FileIdCacheService {
 
-    private final ResourceLoader resourceLoader;
-    private final Properties cache;
-    private final Path cacheFilePath;
+    private record Entry(String fileId, long expiresAt) {
+    }
+
+    private final MediaDigestService mediaDigestService;
+    private final FileIdStore store;
+    private final Map<String, Entry> nearCache = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxSize;
+    private final Counter hitCounter;
+    private final Counter storeHitCounter;
+    private final Counter missCounter;
+    private final Counter invalidationCounter;
+    private final Counter storeErrorCounter;
 
-    public FileIdCacheService(ResourceLoader resourceLoader,
-                             @Value("${telegram.cache.file:file-id-cache.properties}") String cacheFileName) {
-        this.resourceLoader = resourceLoader;
-        this.cache = new Properties();
-        this.cacheFilePath = Paths.get(cacheFileName != null ? cacheFileName : "file-id-cache.properties");
-        loadCache();
+    public FileIdCacheService(MeterRegistry meterRegistry, MediaDigestService mediaDigestService, FileIdStore store,
+                              @Value("${telegram.cache.near-ttl-ms:600000}") long ttlMs,
+                              @Value("${telegram.cache.near-max-size:1000}") int maxSize) {
+        this.mediaDigestService = mediaDigestService;
+        this.store = store;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        this.maxSize = maxSize;
+        this.hitCounter = lookupCounter(meterRegistry, "hit");
+        this.storeHitCounter = lookupCounter(meterRegistry, "store");
+        this.missCounter = lookupCounter(meterRegistry, "miss");
+        this.invalidationCounter = Counter.builder("telegram.fileid.cache.invalidations")
+                .description("File ID, удалённые из кэша как недействительные")
+                .register(meterRegistry);
+        this.storeErrorCounter = Counter.builder("telegram.fileid.store.errors")
+                .description("Ошибки обращения к хранилищу File ID")
+                .register(meterRegistry);
+        Gauge.builder("telegram.fileid.cache.size", nearCache, Map::size)
+                .description("Записей в near-cache File ID")
+                .register(meterRegistry);
+        warmUp();
     }
 
     /**
      * Получить File ID из кэша для указанного файла
      */
     public String getFileId(String filePath) {
-        return cache.getProperty(filePath);
+        BotEvents.CacheLookup event = new BotEvents.CacheLookup();
+        event.begin();
+        String key = cacheKey(filePath);
+        String fileId = lookup(key, event);
+        event.end();
+        if (event.shouldCommit()) {
+            UpdateTrace trace = UpdateTrace.current();
+            event.chatId = trace.chatId();
+            event.updateId = trace.updateId();
+            event.key = key;
+            event.commit();
+        }
+        return fileId;
     }
 
     /**
      * Сохранить File ID в кэш
      */
     public void saveFileId(String filePath, String fileId) {
-        cache.setProperty(filePath, fileId);
-        saveCache();
-        log.info("Saved File ID for {}: {}", filePath, fileId);
+        save(cacheKey(filePath), fileId, filePath);
+    }
+
+    /**
+     * Сохранить File ID по ключу содержимого (MediaFile.contentKey) — для файла, ещё не опубликованного в MediaStore
+     */
+    public void saveContentFileId(String contentKey, String fileId) {
+        save(contentKey, fileId, contentKey);
+    }
+
+    /**
+     * File ID по ключу содержимого без учёта в метриках обращений
+     */
+    public String peekContentFileId(String contentKey) {
+        return lookup(contentKey, null);
     }
 
     /**
      * Удалить File ID из кэша (например, если идентификатор устарел)
      */
     public void removeFileId(String filePath) {
-        if (cache.remove(filePath) != null) {
-            saveCache();
-            log.info("Removed invalid File ID from cache for: {}", filePath);
+        String key = cacheKey(filePath);
+        nearCache.remove(key);
+        try {
+            store.remove(key);
+        } catch (RuntimeException e) {
+            storeErrorCounter.increment();
+            log.warn("Failed to remove File ID for {} from the shared store: {}", filePath, e.getMessage());
         }
+        invalidationCounter.increment();
+        log.info("Removed invalid File ID from cache for: {}", filePath);
     }
 
     /**
      * Проверить, есть ли File ID в кэше
      */
     public boolean hasFileId(String filePath) {
-        return cache.containsKey(filePath) && cache.getProperty(filePath) != null && !cache.getProperty(filePath).isEmpty();
+        String fileId = lookup(cacheKey(filePath), null);
+        return fileId != null && !fileId.isEmpty();
     }
 
     /**
-     * Получить полный путь к файлу из resources
+     * File ID без учёта в метриках обращений — для фоновой проверки кэша
      */
-    public Resource getResource(String path) {
-        return resourceLoader.getResource("classpath:" + path);
+    public String peekFileId(String filePath) {
+        return lookup(cacheKey(filePath), null);
     }
 
     /**
-     * Проверить, существует ли файл
+     * Записать отложенные изменения хранилища (для файлового хранилища — сбросить журнал)
      */
-    public boolean fileExists(String path) {
+    public void flush() throws IOException {
+        store.flush();
+    }
+
+    private void save(String key, String fileId, String label) {
+        remember(key, fileId);
         try {
-            Resource resource = resourceLoader.getResource("classpath:" + path);
-            return resource.exists() && resource.isReadable();
-        } catch (Exception e) {
-            return false;
+            store.put(key, fileId);
+        } catch (RuntimeException e) {
+            storeErrorCounter.increment();
+            log.warn("Failed to save File ID for {} to the shared store, kept in memory: {}", label, e.getMessage());
         }
+        log.info("Saved File ID for {}: {}", label, fileId);
     }
 
-    private void loadCache() {
+    /**
+     * @param counted событие обращения пользователя — такие обращения идут в метрики; null для служебных проверок
+     */
+    private String lookup(String key, BotEvents.CacheLookup counted) {
+        Entry entry = nearCache.get(key);
+        if (entry != null && entry.expiresAt() - System.nanoTime() > 0) {
+            if (counted != null) {
+                hitCounter.increment();
+                counted.result = "hit";
+            }
+            return entry.fileId();
+        }
+        String fileId;
         try {
-            if (Files.exists(cacheFilePath)) {
-                try (FileInputStream fis = new FileInputStream(cacheFilePath.toFile())) {
-                    cache.load(fis);
-                    log.info("Loaded {} file IDs from cache", cache.size());
-                }
+            fileId = store.get(key);
+        } catch (RuntimeException e) {
+            storeErrorCounter.increment();
+            if (counted != null) {
+                counted.result = "error";
+            }
+            log.warn("File ID store lookup failed, treating as a miss: {}", e.getMessage());
+            // Просроченная запись лучше, чем повторная загрузка
+            return entry != null ? entry.fileId() : null;
+        }
+        if (fileId != null) {
+            remember(key, fileId);
+            if (counted != null) {
+                storeHitCounter.increment();
+                counted.result = "store";
+            }
+        } else {
+            nearCache.remove(key);
+            if (counted != null) {
+                missCounter.increment();
+                counted.result = "miss";
+            }
+        }
+        return fileId;
+    }
+
+    private void remember(String key, String fileId) {
+        long now = System.nanoTime();
+        if (nearCache.size() >= maxSize && !nearCache.containsKey(key)) {
+            evict(now);
+        }
+        nearCache.put(key, new Entry(fileId, now + ttlNanos));
+    }
+
+    /**
+     * Освободить место: сначала убрать просроченные записи, если их нет — ту, что истекает раньше всех
+     */
+    private void evict(long now) {
+        nearCache.values().removeIf(entry -> entry.expiresAt() - now <= 0);
+        if (nearCache.size() < maxSize) {
+            return;
+        }
+        String oldestKey = null;
+        long oldestExpiry = Long.MAX_VALUE;
+        for (Map.Entry<String, Entry> candidate : nearCache.entrySet()) {
+            if (oldestKey == null || candidate.getValue().expiresAt() - oldestExpiry < 0) {
+                oldestKey = candidate.getKey();
+                oldestExpiry = candidate.getValue().expiresAt();
             }
-        } catch (IOException e) {
-            log.warn("Failed to load cache file: {}", e.getMessage());
+        }
+        if (oldestKey != null) {
+            nearCache.remove(oldestKey);
         }
     }
 
-    private void saveCache() {
+    /**
+     * Загрузить записи хранилища в near-cache и заодно перенести старые ключи по пути на ключи по содержимому
+     */
+    private void warmUp() {
+        Map<String, String> entries;
         try {
-            // Создаём директорию только если parent не null
-            Path parent = cacheFilePath.getParent();
-            if (parent != null) {
-                Files.createDirectories(parent);
+            entries = store.loadAll();
+        } catch (RuntimeException e) {
+            storeErrorCounter.increment();
+            log.warn("Failed to load File IDs from the store, starting with an empty cache: {}", e.getMessage());
+            return;
+        }
+        int migrated = 0;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            String key = entry.getKey();
+            if (key.startsWith(MediaDigestService.CONTENT_KEY_PREFIX)) {
+                if (nearCache.size() < maxSize) {
+                    remember(key, entry.getValue());
+                }
+            } else if (migrateLegacyEntry(key, entry.getValue(), entries)) {
+                migrated++;
             }
-            try (FileOutputStream fos = new FileOutputStream(cacheFilePath.toFile())) {
-                cache.store(fos, "Telegram File ID Cache");
+        }
+        if (migrated > 0) {
+            log.info("Migrated {} path-keyed File IDs to content-keyed entries", migrated);
+        }
+        log.info("File ID cache warmed up with {} entries", nearCache.size());
+    }
+
+    /**
+     * Старый кэш хранил File ID по пути. Переносим такую запись на отпечаток текущего файла
+     * с тем же путём — один раз, дальше кэш живёт только на ключах по содержимому.
+     */
+    private boolean migrateLegacyEntry(String path, String fileId, Map<String, String> entries) {
+        String contentKey = mediaDigestService.getContentKey(path);
+        if (contentKey == null) {
+            return false;
+        }
+        try {
+            String current = entries.get(contentKey);
+            if (current == null) {
+                store.put(contentKey, fileId);
+                current = fileId;
             }
-        } catch (IOException e) {
-            log.error("Failed to save cache file: {}", e.getMessage(), e);
+            store.remove(path);
+            remember(contentKey, current);
+            return true;
+        } catch (RuntimeException e) {
+            storeErrorCounter.increment();
+            log.warn("Failed to migrate File ID for {}: {}", path, e.getMessage());
+            return false;
         }
     }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("telegram.fileid.cache.lookups")
+                .description("Обращения к кэшу File ID: hit — из памяти, store — из хранилища, miss — нет нигде")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ключ по содержимому файла; для файлов, которых нет в resources, — сам путь
+     */
+    private String cacheKey(String filePath) {
+        String contentKey = mediaDigestService.getContentKey(filePath);
+        return contentKey != null ? contentKey : filePath;
+    }
 }
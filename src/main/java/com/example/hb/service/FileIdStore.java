@@ -0,0 +1,37 @@
+package com.example.hb.service;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Хранилище File ID: ключ кэша (отпечаток содержимого файла) → File ID в Telegram.
+ * Реализация выбирается через telegram.cache.store: file — локальный журнал,
+ * jdbc и redis — общее хранилище, через которое реплики и перезапуски видят загрузки друг друга.
+ * Ошибки доступа реализации бросают как unchecked-исключения; FileIdCacheService их переживает.
+ */
+public interface FileIdStore extends AutoCloseable {
+
+    /**
+     * File ID по ключу или null
+     */
+    String get(String key);
+
+    void put(String key, String fileId);
+
+    void remove(String key);
+
+    /**
+     * Все записи — для прогрева кэша и переноса старых ключей при старте
+     */
+    Map<String, String> loadAll();
+
+    /**
+     * Записать отложенные изменения, если хранилище пишет не сразу
+     */
+    default void flush() throws IOException {
+    }
+
+    @Override
+    default void close() {
+    }
+}
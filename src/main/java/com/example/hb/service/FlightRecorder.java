@@ -0,0 +1,144 @@
+package com.example.hb.service;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Непрерывная запись JFR: с профилем default (накладные расходы около 1%) и событиями BotEvents.
+ * На диске держится последние telegram.jfr.max-age-ms — по дампу видно, что было с апдейтами
+ * за минуты до жалобы, без перезапуска с флагами JVM. Дамп пишется в telegram.jfr.dump-dir,
+ * старые дампы сверх telegram.jfr.max-dumps удаляются, чтобы не забить диск контейнера.
+ */
+@Slf4j
+@Service
+public class FlightRecorder implements InitializingBean, DisposableBean {
+
+    static final String DUMP_PREFIX = "hb-";
+    static final String DUMP_SUFFIX = ".jfr";
+    private static final DateTimeFormatter DUMP_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final boolean enabled;
+    private final long maxAgeMs;
+    private final long maxSizeBytes;
+    private final Path dumpDir;
+    private final int maxDumps;
+
+    private Recording recording;
+
+    public FlightRecorder(@Value("${telegram.jfr.enabled:true}") boolean enabled,
+                          @Value("${telegram.jfr.max-age-ms:600000}") long maxAgeMs,
+                          @Value("${telegram.jfr.max-size-mb:64}") long maxSizeMb,
+                          @Value("${telegram.jfr.dump-dir:}") String dumpDir,
+                          @Value("${telegram.jfr.max-dumps:3}") int maxDumps) {
+        this.enabled = enabled;
+        this.maxAgeMs = maxAgeMs;
+        this.maxSizeBytes = maxSizeMb * 1024 * 1024;
+        this.dumpDir = dumpDir == null || dumpDir.isEmpty()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "re-hb-jfr")
+                : Paths.get(dumpDir);
+        this.maxDumps = Math.max(1, maxDumps);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            recording = new Recording(Configuration.getConfiguration("default"));
+        } catch (IOException | ParseException e) {
+            log.warn("JFR configuration 'default' is unavailable, recording bot events only: {}", e.getMessage());
+            recording = new Recording();
+        }
+        recording.setName("re-hb");
+        recording.setToDisk(true);
+        recording.setMaxAge(Duration.ofMillis(maxAgeMs));
+        recording.setMaxSize(maxSizeBytes);
+        try {
+            recording.start();
+            log.info("JFR recording started, keeping the last {} s", Duration.ofMillis(maxAgeMs).toSeconds());
+        } catch (IllegalStateException | SecurityException e) {
+            // Например, JVM без поддержки JFR — бот работает и без записи
+            log.warn("Failed to start JFR recording: {}", e.getMessage());
+            recording.close();
+            recording = null;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    public boolean isRecording() {
+        return recording != null;
+    }
+
+    /**
+     * Сбросить текущую запись в файл и вернуть путь к нему
+     *
+     * @throws IllegalStateException если запись не идёт
+     */
+    public synchronized Path dump() throws IOException {
+        if (recording == null) {
+            throw new IllegalStateException("JFR recording is not running");
+        }
+        Files.createDirectories(dumpDir);
+        Path file = dumpDir.resolve(DUMP_PREFIX + LocalDateTime.now().format(DUMP_TIME) + DUMP_SUFFIX);
+        recording.dump(file);
+        log.info("JFR recording dumped to {} ({} bytes)", file, Files.size(file));
+        removeOldDumps();
+        return file;
+    }
+
+    /**
+     * Ранее записанный дамп по имени файла; null, если такого нет (и для имён вне каталога дампов)
+     */
+    public Path findDump(String name) {
+        if (name == null || !name.startsWith(DUMP_PREFIX) || !name.endsWith(DUMP_SUFFIX)
+                || name.contains("/") || name.contains("\\")) {
+            return null;
+        }
+        Path file = dumpDir.resolve(name);
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    private void removeOldDumps() {
+        List<Path> dumps = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dumpDir, DUMP_PREFIX + "*" + DUMP_SUFFIX)) {
+            files.forEach(dumps::add);
+        } catch (IOException e) {
+            log.warn("Failed to list JFR dumps in {}: {}", dumpDir, e.getMessage());
+            return;
+        }
+        // Имена содержат время дампа — по имени они и упорядочены
+        dumps.sort(Comparator.comparing(Path::getFileName));
+        for (int i = 0; i < dumps.size() - maxDumps; i++) {
+            try {
+                Files.deleteIfExists(dumps.get(i));
+            } catch (IOException e) {
+                log.warn("Failed to remove old JFR dump {}: {}", dumps.get(i), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.hb.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Аренда в памяти процесса (telegram.cache.store=file): без общего хранилища экземпляр один
+ * и всегда становится лидером. Заодно — локальная замена общего хранилища в тестах.
+ */
+public class InMemoryLeaseStore implements LeaseStore {
+
+    private record Lease(String owner, long expiresAt) {
+    }
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean tryAcquire(String name, String owner, Duration ttl) {
+        long now = System.currentTimeMillis();
+        Lease lease = leases.compute(name, (key, current) ->
+                current == null || current.owner().equals(owner) || current.expiresAt() <= now
+                        ? new Lease(owner, now + ttl.toMillis())
+                        : current);
+        return lease.owner().equals(owner);
+    }
+
+    @Override
+    public void release(String name, String owner) {
+        leases.computeIfPresent(name, (key, current) -> current.owner().equals(owner) ? null : current);
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.hb.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Отложенные доставки в таблице SQL-базы (telegram.cache.store=jdbc) — общие для всех реплик.
+ * updated_at (с индексом) — время записи по часам реплики, по нему лидер выбирает новые доставки.
+ */
+@Slf4j
+public class JdbcDeliveryStore implements DeliveryStore {
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String selectOne;
+    private final String selectAll;
+    private final String selectUpdated;
+    private final String update;
+    private final String insert;
+    private final String delete;
+
+    public JdbcDeliveryStore(DataSource dataSource, String table) {
+        if (!TABLE_NAME.matcher(table).matches()) {
+            throw new IllegalArgumentException("Invalid table name: " + table);
+        }
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.selectAll = "SELECT id, chat_id, route_id, fire_at, zone FROM " + table;
+        this.selectOne = selectAll + " WHERE id = ?";
+        this.selectUpdated = selectAll + " WHERE updated_at >= ?";
+        this.update = "UPDATE " + table + " SET chat_id = ?, route_id = ?, fire_at = ?, zone = ?, updated_at = ?"
+                + " WHERE id = ?";
+        this.insert = "INSERT INTO " + table + " (id, chat_id, route_id, fire_at, zone, updated_at)"
+                + " VALUES (?, ?, ?, ?, ?, ?)";
+        this.delete = "DELETE FROM " + table + " WHERE id = ?";
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table + " ("
+                + "id VARCHAR(64) PRIMARY KEY, "
+                + "chat_id BIGINT NOT NULL, "
+                + "route_id VARCHAR(255) NOT NULL, "
+                + "fire_at BIGINT NOT NULL, "
+                + "zone VARCHAR(64) NOT NULL, "
+                + "updated_at BIGINT NOT NULL)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + table + "_updated_at ON " + table + " (updated_at)");
+        log.info("Using JDBC delivery store (table {})", table);
+    }
+
+    @Override
+    public void put(ScheduledDelivery delivery) {
+        long now = System.currentTimeMillis();
+        if (jdbcTemplate.update(update, delivery.chatId(), delivery.routeId(), delivery.fireAt(), delivery.zone(),
+                now, delivery.id()) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(insert, delivery.id(), delivery.chatId(), delivery.routeId(), delivery.fireAt(),
+                    delivery.zone(), now);
+        } catch (DuplicateKeyException e) {
+            jdbcTemplate.update(update, delivery.chatId(), delivery.routeId(), delivery.fireAt(), delivery.zone(),
+                    now, delivery.id());
+        }
+    }
+
+    @Override
+    public void remove(String id) {
+        jdbcTemplate.update(delete, id);
+    }
+
+    @Override
+    public ScheduledDelivery get(String id) {
+        List<ScheduledDelivery> deliveries = jdbcTemplate.query(selectOne, JdbcDeliveryStore::mapRow, id);
+        return deliveries.isEmpty() ? null : deliveries.get(0);
+    }
+
+    @Override
+    public List<ScheduledDelivery> loadAll() {
+        return jdbcTemplate.query(selectAll, JdbcDeliveryStore::mapRow);
+    }
+
+    @Override
+    public List<ScheduledDelivery> updatedSince(long since) {
+        return jdbcTemplate.query(selectUpdated, JdbcDeliveryStore::mapRow, since);
+    }
+
+    private static ScheduledDelivery mapRow(ResultSet row, int rowNum) throws SQLException {
+        return new ScheduledDelivery(row.getString(1), row.getLong(2), row.getString(3), row.getLong(4),
+                row.getString(5));
+    }
+}
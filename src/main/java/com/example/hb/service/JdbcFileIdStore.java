@@ -0,0 +1,78 @@
+package com.example.hb.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * File ID в таблице SQL-базы (telegram.cache.store=jdbc) — общая для всех реплик.
+ * SQL без диалектных расширений: работает и на H2 (локально), и на PostgreSQL.
+ */
+@Slf4j
+public class JdbcFileIdStore implements FileIdStore {
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String selectOne;
+    private final String selectAll;
+    private final String update;
+    private final String insert;
+    private final String delete;
+
+    public JdbcFileIdStore(DataSource dataSource, String table) {
+        if (!TABLE_NAME.matcher(table).matches()) {
+            throw new IllegalArgumentException("Invalid table name: " + table);
+        }
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.selectOne = "SELECT file_id FROM " + table + " WHERE cache_key = ?";
+        this.selectAll = "SELECT cache_key, file_id FROM " + table;
+        this.update = "UPDATE " + table + " SET file_id = ?, updated_at = CURRENT_TIMESTAMP WHERE cache_key = ?";
+        this.insert = "INSERT INTO " + table + " (cache_key, file_id, updated_at) VALUES (?, ?, CURRENT_TIMESTAMP)";
+        this.delete = "DELETE FROM " + table + " WHERE cache_key = ?";
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table + " ("
+                + "cache_key VARCHAR(255) PRIMARY KEY, "
+                + "file_id VARCHAR(512) NOT NULL, "
+                + "updated_at TIMESTAMP NOT NULL)");
+        log.info("Using JDBC File ID store (table {})", table);
+    }
+
+    @Override
+    public String get(String key) {
+        List<String> fileIds = jdbcTemplate.queryForList(selectOne, String.class, key);
+        return fileIds.isEmpty() ? null : fileIds.get(0);
+    }
+
+    @Override
+    public void put(String key, String fileId) {
+        if (jdbcTemplate.update(update, fileId, key) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(insert, key, fileId);
+        } catch (DuplicateKeyException e) {
+            // Другая реплика вставила ключ между нашими UPDATE и INSERT
+            jdbcTemplate.update(update, fileId, key);
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        jdbcTemplate.update(delete, key);
+    }
+
+    @Override
+    public Map<String, String> loadAll() {
+        Map<String, String> entries = new HashMap<>();
+        jdbcTemplate.query(selectAll, row -> {
+            entries.put(row.getString(1), row.getString(2));
+        });
+        return entries;
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.hb.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+/**
+ * Аренда в таблице SQL-базы (telegram.cache.store=jdbc). Захват — один условный UPDATE
+ * (строка наша или просрочена), для первой аренды — INSERT, который проигрывает гонку
+ * через нарушение первичного ключа. Срок хранится в миллисекундах по часам реплик,
+ * поэтому расхождение часов между ними должно быть заметно меньше срока аренды.
+ */
+@Slf4j
+public class JdbcLeaseStore implements LeaseStore {
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String acquire;
+    private final String insert;
+    private final String release;
+
+    public JdbcLeaseStore(DataSource dataSource, String table) {
+        if (!TABLE_NAME.matcher(table).matches()) {
+            throw new IllegalArgumentException("Invalid table name: " + table);
+        }
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.acquire = "UPDATE " + table + " SET owner = ?, expires_at = ? "
+                + "WHERE lease_name = ? AND (owner = ? OR expires_at <= ?)";
+        this.insert = "INSERT INTO " + table + " (lease_name, owner, expires_at) VALUES (?, ?, ?)";
+        this.release = "UPDATE " + table + " SET expires_at = 0 WHERE lease_name = ? AND owner = ?";
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table + " ("
+                + "lease_name VARCHAR(128) PRIMARY KEY, "
+                + "owner VARCHAR(255) NOT NULL, "
+                + "expires_at BIGINT NOT NULL)");
+        log.info("Using JDBC leader lease (table {})", table);
+    }
+
+    @Override
+    public boolean tryAcquire(String name, String owner, Duration ttl) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + ttl.toMillis();
+        if (jdbcTemplate.update(acquire, owner, expiresAt, name, owner, now) > 0) {
+            return true;
+        }
+        try {
+            return jdbcTemplate.update(insert, name, owner, expiresAt) > 0;
+        } catch (DuplicateKeyException e) {
+            // Аренда существует и занята другим владельцем
+            return false;
+        }
+    }
+
+    @Override
+    public void release(String name, String owner) {
+        jdbcTemplate.update(release, name, owner);
+    }
+}
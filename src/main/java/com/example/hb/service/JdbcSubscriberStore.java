@@ -0,0 +1,100 @@
+package com.example.hb.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Подписчики в таблице SQL-базы (telegram.cache.store=jdbc) — общие для всех реплик.
+ * Страницы выбираются по первичному ключу (chat_id > ? ORDER BY chat_id), без OFFSET:
+ * стоимость страницы не растёт к концу списка. Состояние рассылки — строка во второй таблице.
+ */
+@Slf4j
+public class JdbcSubscriberStore implements SubscriberStore {
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+    private static final String CHECKPOINT_NAME = "broadcast";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String insert;
+    private final String delete;
+    private final String selectPage;
+    private final String selectCount;
+    private final String selectCheckpoint;
+    private final String updateCheckpoint;
+    private final String insertCheckpoint;
+
+    /**
+     * @param table           таблица подписчиков
+     * @param checkpointTable таблица состояния рассылки
+     */
+    public JdbcSubscriberStore(DataSource dataSource, String table, String checkpointTable) {
+        for (String name : new String[]{table, checkpointTable}) {
+            if (!TABLE_NAME.matcher(name).matches()) {
+                throw new IllegalArgumentException("Invalid table name: " + name);
+            }
+        }
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.insert = "INSERT INTO " + table + " (chat_id, subscribed_at) VALUES (?, CURRENT_TIMESTAMP)";
+        this.delete = "DELETE FROM " + table + " WHERE chat_id = ?";
+        this.selectPage = "SELECT chat_id FROM " + table + " WHERE chat_id > ? ORDER BY chat_id LIMIT ?";
+        this.selectCount = "SELECT COUNT(*) FROM " + table;
+        this.selectCheckpoint = "SELECT state FROM " + checkpointTable + " WHERE name = ?";
+        this.updateCheckpoint = "UPDATE " + checkpointTable + " SET state = ? WHERE name = ?";
+        this.insertCheckpoint = "INSERT INTO " + checkpointTable + " (name, state) VALUES (?, ?)";
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table + " ("
+                + "chat_id BIGINT PRIMARY KEY, "
+                + "subscribed_at TIMESTAMP NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + checkpointTable + " ("
+                + "name VARCHAR(64) PRIMARY KEY, "
+                + "state VARCHAR(2048) NOT NULL)");
+        log.info("Using JDBC subscriber store (table {})", table);
+    }
+
+    @Override
+    public boolean add(long chatId) {
+        try {
+            return jdbcTemplate.update(insert, chatId) > 0;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void remove(long chatId) {
+        jdbcTemplate.update(delete, chatId);
+    }
+
+    @Override
+    public List<Long> page(long afterChatId, int limit) {
+        return jdbcTemplate.queryForList(selectPage, Long.class, afterChatId, limit);
+    }
+
+    @Override
+    public long count() {
+        Long count = jdbcTemplate.queryForObject(selectCount, Long.class);
+        return count != null ? count : 0;
+    }
+
+    @Override
+    public String loadCheckpoint() {
+        List<String> states = jdbcTemplate.queryForList(selectCheckpoint, String.class, CHECKPOINT_NAME);
+        return states.isEmpty() ? null : states.get(0);
+    }
+
+    @Override
+    public void saveCheckpoint(String checkpoint) {
+        if (jdbcTemplate.update(updateCheckpoint, checkpoint, CHECKPOINT_NAME) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(insertCheckpoint, CHECKPOINT_NAME, checkpoint);
+        } catch (DuplicateKeyException e) {
+            jdbcTemplate.update(updateCheckpoint, checkpoint, CHECKPOINT_NAME);
+        }
+    }
+}
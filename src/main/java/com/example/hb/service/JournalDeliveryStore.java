@@ -0,0 +1,141 @@
+package com.example.hb.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отложенные доставки в памяти с журналом на диске — хранилище одного экземпляра (telegram.cache.store=file).
+ * Журнал только дописывается (+id доставка / -id) и сворачивается при старте, когда выполненных записей
+ * в нём больше, чем ожидающих.
+ */
+@Slf4j
+public class JournalDeliveryStore implements DeliveryStore {
+
+    private static final char PUT = '+';
+    private static final char REMOVE = '-';
+    private static final char SEPARATOR = ' ';
+
+    private final Map<String, ScheduledDelivery> deliveries = new ConcurrentHashMap<>();
+    /** Когда доставку добавили в этом процессе; загруженных из журнала здесь нет — их отдаёт loadAll */
+    private final Map<String, Long> updatedAt = new ConcurrentHashMap<>();
+    private final Path journalPath;
+
+    public JournalDeliveryStore(Path journalPath) {
+        this.journalPath = journalPath;
+        load();
+    }
+
+    @Override
+    public void put(ScheduledDelivery delivery) {
+        deliveries.put(delivery.id(), delivery);
+        updatedAt.put(delivery.id(), System.currentTimeMillis());
+        append(PUT + delivery.id() + SEPARATOR + delivery.encode());
+    }
+
+    @Override
+    public void remove(String id) {
+        updatedAt.remove(id);
+        if (deliveries.remove(id) != null) {
+            append(REMOVE + id);
+        }
+    }
+
+    @Override
+    public ScheduledDelivery get(String id) {
+        return deliveries.get(id);
+    }
+
+    @Override
+    public List<ScheduledDelivery> loadAll() {
+        return new ArrayList<>(deliveries.values());
+    }
+
+    @Override
+    public List<ScheduledDelivery> updatedSince(long since) {
+        List<ScheduledDelivery> updated = new ArrayList<>();
+        updatedAt.forEach((id, at) -> {
+            ScheduledDelivery delivery = deliveries.get(id);
+            if (at >= since && delivery != null) {
+                updated.add(delivery);
+            }
+        });
+        return updated;
+    }
+
+    private synchronized void append(String record) {
+        try {
+            Path parent = journalPath.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel channel = FileChannel.open(journalPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap((record + '\n').getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(journalPath)) {
+            return;
+        }
+        try {
+            int records = 0;
+            for (String line : Files.readAllLines(journalPath, StandardCharsets.UTF_8)) {
+                if (line.length() < 2) {
+                    continue;
+                }
+                try {
+                    if (line.charAt(0) == PUT) {
+                        int separator = line.indexOf(SEPARATOR);
+                        String id = line.substring(1, separator);
+                        deliveries.put(id, ScheduledDelivery.decode(id, line.substring(separator + 1)));
+                    } else if (line.charAt(0) == REMOVE) {
+                        deliveries.remove(line.substring(1));
+                    }
+                    records++;
+                } catch (RuntimeException e) {
+                    log.warn("Ignored malformed record in {}: {}", journalPath, line);
+                }
+            }
+            if (records > 2 * deliveries.size() + 1000) {
+                compact();
+            }
+            log.info("Loaded {} scheduled deliveries from {}", deliveries.size(), journalPath);
+        } catch (IOException e) {
+            log.warn("Failed to load scheduled deliveries: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Переписать журнал одними ожидающими доставками: временный файл + атомарный rename
+     */
+    private void compact() throws IOException {
+        StringBuilder snapshot = new StringBuilder(deliveries.size() * 64);
+        for (ScheduledDelivery delivery : deliveries.values()) {
+            snapshot.append(PUT).append(delivery.id()).append(SEPARATOR).append(delivery.encode()).append('\n');
+        }
+        Path tempPath = Paths.get(journalPath + ".tmp");
+        Files.writeString(tempPath, snapshot, StandardCharsets.UTF_8);
+        Files.move(tempPath, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.hb.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * File ID в памяти с журналом на диске — хранилище одного экземпляра (telegram.cache.store=file).
+ * Запись меняет карту и ставит запись в очередь атомарно для ключа (внутри compute), так что порядок
+ * записей в журнале совпадает с порядком изменений; отдельный поток дописывает очередь в журнал
+ * (write-behind). Когда журнал разрастается, он сворачивается в снимок: временный файл + атомарный
+ * rename, так что падение в любой момент оставляет на диске целый снимок и журнал,
+ * который можно проиграть поверх него.
+ */
+@Slf4j
+public class JournalFileIdStore implements FileIdStore {
+
+    private static final char PUT = '+';
+    private static final char REMOVE = '-';
+
+    private final Map<String, String> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> pendingRecords = new ConcurrentLinkedQueue<>();
+    private final Path cacheFilePath;
+    private final Path journalPath;
+    private final int compactThreshold;
+    private final ScheduledExecutorService flusher;
+
+    /** Записей в журнале с момента последнего снимка; меняется только под монитором flush() */
+    private int journalRecords;
+
+    public JournalFileIdStore(Path cacheFilePath, long flushIntervalMs, int compactThreshold) {
+        this.cacheFilePath = cacheFilePath;
+        this.journalPath = Paths.get(cacheFilePath + ".journal");
+        this.compactThreshold = compactThreshold;
+        load();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "file-id-cache-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String get(String key) {
+        return entries.get(key);
+    }
+
+    @Override
+    public void put(String key, String fileId) {
+        entries.compute(key, (k, previous) -> {
+            pendingRecords.add(PUT + escape(key) + '\t' + escape(fileId) + '\n');
+            return fileId;
+        });
+    }
+
+    @Override
+    public void remove(String key) {
+        entries.computeIfPresent(key, (k, previous) -> {
+            pendingRecords.add(REMOVE + escape(key) + '\n');
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, String> loadAll() {
+        return Map.copyOf(entries);
+    }
+
+    /**
+     * Дописать накопленные изменения в журнал и, если он разросся, свернуть его в снимок
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        List<String> records = new ArrayList<>();
+        String record;
+        while ((record = pendingRecords.poll()) != null) {
+            records.add(record);
+        }
+        if (!records.isEmpty()) {
+            appendToJournal(records);
+            journalRecords += records.size();
+        }
+        if (journalRecords >= compactThreshold) {
+            compact();
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flusher.shutdown();
+        try {
+            flush();
+            if (journalRecords > 0) {
+                compact();
+            }
+        } catch (IOException e) {
+            log.error("Failed to flush File ID cache on shutdown: {}", e.getMessage(), e);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to flush File ID cache: {}", e.getMessage(), e);
+        }
+    }
+
+    private void appendToJournal(List<String> records) throws IOException {
+        createParentDirectories(journalPath);
+        StringBuilder batch = new StringBuilder();
+        records.forEach(batch::append);
+        try (FileChannel channel = FileChannel.open(journalPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Записать снимок во временный файл и атомарно подменить им старый, затем обнулить журнал.
+     * Если упадём между rename и удалением журнала, при старте журнал просто проиграется повторно.
+     * Каталог синхронизируется до удаления журнала: иначе после сбоя питания мог бы остаться старый снимок без журнала.
+     */
+    private void compact() throws IOException {
+        Properties snapshot = new Properties();
+        snapshot.putAll(entries);
+        createParentDirectories(cacheFilePath);
+        Path tempPath = Paths.get(cacheFilePath + ".tmp");
+        try (FileChannel channel = FileChannel.open(tempPath,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             OutputStream out = Channels.newOutputStream(channel)) {
+            snapshot.store(out, "Telegram File ID Cache");
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(tempPath, cacheFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(cacheFilePath.toAbsolutePath().getParent());
+        Files.deleteIfExists(journalPath);
+        journalRecords = 0;
+        log.debug("Compacted File ID cache journal into snapshot ({} entries)", snapshot.size());
+    }
+
+    private void load() {
+        try {
+            if (Files.exists(cacheFilePath)) {
+                Properties snapshot = new Properties();
+                try (InputStream in = Files.newInputStream(cacheFilePath)) {
+                    snapshot.load(in);
+                }
+                snapshot.forEach((key, value) -> entries.put((String) key, (String) value));
+            }
+            if (Files.exists(journalPath)) {
+                journalRecords = replayJournal();
+            }
+            log.info("Loaded {} file IDs from {} ({} journal records replayed)",
+                    entries.size(), cacheFilePath, journalRecords);
+        } catch (IOException e) {
+            log.warn("Failed to load cache file: {}", e.getMessage());
+        }
+    }
+
+    private int replayJournal() throws IOException {
+        byte[] bytes = Files.readAllBytes(journalPath);
+        // Учитываем только строки с завершающим \n: хвост, оборванный при падении, пропускаем
+        int complete = bytes.length;
+        while (complete > 0 && bytes[complete - 1] != '\n') {
+            complete--;
+        }
+        String content = new String(bytes, 0, complete, StandardCharsets.UTF_8);
+        int replayed = 0;
+        int start = 0;
+        int end;
+        while ((end = content.indexOf('\n', start)) >= 0) {
+            String line = content.substring(start, end);
+            start = end + 1;
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.charAt(0) == PUT) {
+                int separator = line.indexOf('\t');
+                if (separator > 0) {
+                    entries.put(unescape(line.substring(1, separator)), unescape(line.substring(separator + 1)));
+                    replayed++;
+                }
+            } else if (line.charAt(0) == REMOVE) {
+                entries.remove(unescape(line.substring(1)));
+                replayed++;
+            }
+        }
+        if (complete < bytes.length) {
+            // Обрезаем хвост, иначе следующая запись допишется прямо к оборванной строке и испортит обе
+            try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+                channel.truncate(complete);
+                channel.force(false);
+            }
+            log.warn("Truncated incomplete record at the end of {}", journalPath);
+        }
+        return replayed;
+    }
+
+    private static void createParentDirectories(Path path) throws IOException {
+        // Создаём директорию только если parent не null
+        Path parent = path.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+
+    /**
+     * fsync каталога, чтобы rename пережил сбой питания. Не везде поддерживается (Windows не открывает каталог
+     * как файл) — тогда полагаемся на файловую систему.
+     */
+    private static void syncDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Failed to sync directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf('\\') < 0 && value.indexOf('\t') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n");
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                result.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.hb.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Подписчики в памяти с журналом на диске — хранилище одного экземпляра (telegram.cache.store=file).
+ * Журнал только дописывается (+chatId / -chatId) и сворачивается при старте, если в нём много отписок.
+ * Состояние рассылки лежит рядом, в файле .checkpoint, и подменяется атомарным rename.
+ */
+@Slf4j
+public class JournalSubscriberStore implements SubscriberStore {
+
+    private static final char ADD = '+';
+    private static final char REMOVE = '-';
+
+    private final NavigableSet<Long> chats = new ConcurrentSkipListSet<>();
+    private final Path journalPath;
+    private final Path checkpointPath;
+
+    public JournalSubscriberStore(Path journalPath) {
+        this.journalPath = journalPath;
+        this.checkpointPath = Paths.get(journalPath + ".checkpoint");
+        load();
+    }
+
+    @Override
+    public boolean add(long chatId) {
+        if (!chats.add(chatId)) {
+            return false;
+        }
+        append(ADD, chatId);
+        return true;
+    }
+
+    @Override
+    public void remove(long chatId) {
+        if (chats.remove(chatId)) {
+            append(REMOVE, chatId);
+        }
+    }
+
+    @Override
+    public List<Long> page(long afterChatId, int limit) {
+        List<Long> page = new ArrayList<>(Math.min(limit, 1024));
+        for (Long chatId : chats.tailSet(afterChatId, false)) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(chatId);
+        }
+        return page;
+    }
+
+    @Override
+    public long count() {
+        return chats.size();
+    }
+
+    @Override
+    public String loadCheckpoint() {
+        try {
+            return Files.exists(checkpointPath) ? Files.readString(checkpointPath, StandardCharsets.UTF_8) : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void saveCheckpoint(String checkpoint) {
+        try {
+            write(checkpointPath, checkpoint);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private synchronized void append(char operation, long chatId) {
+        try {
+            createParentDirectories(journalPath);
+            try (FileChannel channel = FileChannel.open(journalPath,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap((operation + Long.toString(chatId) + '\n')
+                        .getBytes(StandardCharsets.US_ASCII));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void load() {
+        if (!Files.exists(journalPath)) {
+            return;
+        }
+        try {
+            int records = 0;
+            for (String line : Files.readAllLines(journalPath, StandardCharsets.US_ASCII)) {
+                if (line.length() < 2) {
+                    continue;
+                }
+                try {
+                    long chatId = Long.parseLong(line.substring(1));
+                    if (line.charAt(0) == ADD) {
+                        chats.add(chatId);
+                    } else if (line.charAt(0) == REMOVE) {
+                        chats.remove(chatId);
+                    }
+                    records++;
+                } catch (NumberFormatException e) {
+                    log.warn("Ignored malformed record in {}: {}", journalPath, line);
+                }
+            }
+            if (records > 2 * chats.size() + 1000) {
+                compact();
+            }
+            log.info("Loaded {} subscribers from {}", chats.size(), journalPath);
+        } catch (IOException e) {
+            log.warn("Failed to load subscribers: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Переписать журнал одними добавлениями: временный файл + атомарный rename
+     */
+    private void compact() throws IOException {
+        StringBuilder snapshot = new StringBuilder(chats.size() * 12);
+        for (Long chatId : chats) {
+            snapshot.append(ADD).append(chatId).append('\n');
+        }
+        write(journalPath, snapshot.toString());
+    }
+
+    private static void write(Path path, String content) throws IOException {
+        createParentDirectories(path);
+        Path tempPath = Paths.get(path + ".tmp");
+        Files.writeString(tempPath, content, StandardCharsets.UTF_8);
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void createParentDirectories(Path path) throws IOException {
+        Path parent = path.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.hb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Выбор лидера среди реплик через аренду в общем хранилище (LeaseStore).
+ * Лидер продлевает аренду каждые telegram.leader.renew-ms; если он умер, аренда истекает
+ * через telegram.leader.lease-ms и её забирает следующая реплика. Если продлить аренду
+ * не удаётся (хранилище недоступно), лидер слагает полномочия заранее — за renew-ms до истечения,
+ * чтобы два лидера не работали одновременно. Тот же срок ограничивает и зависший вызов хранилища
+ * (Hikari ждёт соединение 30 с, Redis делит сокет с кэшем File ID): обращение идёт на отдельном потоке,
+ * и лидерство снимается по сроку, не дожидаясь ответа.
+ * Слушатель вызывается на отдельном потоке, по порядку, чтобы долгий onElected не задерживал продление.
+ */
+@Slf4j
+@Service
+public class LeaderElection implements DisposableBean {
+
+    /**
+     * Реакция на смену лидерства
+     */
+    public interface Listener {
+
+        void onElected();
+
+        void onRevoked();
+    }
+
+    private final LeaseStore leaseStore;
+    private final String leaseName;
+    private final String owner;
+    private final Duration leaseDuration;
+    private final long renewIntervalMs;
+    private final Counter transitionCounter;
+    private final ExecutorService callbacks;
+    private final ExecutorService storeCalls;
+
+    private ScheduledExecutorService ticker;
+    private Listener listener;
+    private volatile boolean leader;
+    private long lastRenewedAt;
+    /** Обращение к хранилищу, ещё не вернувшееся к прошлому тику, и когда оно началось */
+    private Future<Boolean> pendingAcquire;
+    private long pendingSince;
+
+    public LeaderElection(LeaseStore leaseStore, MeterRegistry meterRegistry,
+                          @Value("${telegram.leader.name:telegram-bot}") String leaseName,
+                          @Value("${telegram.leader.lease-ms:10000}") long leaseMs,
+                          @Value("${telegram.leader.renew-ms:3000}") long renewIntervalMs) {
+        this.leaseStore = leaseStore;
+        this.leaseName = leaseName;
+        this.owner = hostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        this.leaseDuration = Duration.ofMillis(leaseMs);
+        this.renewIntervalMs = renewIntervalMs;
+        this.transitionCounter = Counter.builder("bot.leader.transitions")
+                .description("Сколько раз эта реплика становилась лидером или переставала им быть")
+                .register(meterRegistry);
+        Gauge.builder("bot.leader", this, election -> election.leader ? 1 : 0)
+                .description("1, если эта реплика — лидер (опрашивает getUpdates и предзагружает медиа)")
+                .register(meterRegistry);
+        this.callbacks = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "leader-election-callbacks");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.storeCalls = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "leader-election-store");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Начать борьбу за аренду; первая попытка — сразу
+     */
+    public synchronized void start(Listener listener) {
+        if (ticker != null) {
+            throw new IllegalStateException("Leader election already started");
+        }
+        this.listener = listener;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "leader-election");
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("Starting leader election for '{}' as {}", leaseName, owner);
+        ticker.scheduleWithFixedDelay(this::tick, 0, renewIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isLeader() {
+        return leader;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    /**
+     * Одна попытка взять или продлить аренду. Лидер ждёт ответа хранилища не дольше,
+     * чем аренда гарантированно его: дальше он слагает полномочия, даже если вызов ещё висит.
+     */
+    synchronized void tick() {
+        long now = System.currentTimeMillis();
+        if (pendingAcquire != null && pendingAcquire.isDone()) {
+            // Ответ пришёл после того, как прошлый тик перестал его ждать, — он устарел, спросим заново
+            pendingAcquire = null;
+        }
+        if (pendingAcquire == null) {
+            pendingAcquire = storeCalls.submit(() -> leaseStore.tryAcquire(leaseName, owner, leaseDuration));
+            pendingSince = now;
+        }
+        long timeoutMs = leader ? Math.max(0, safeUntil() - now) : leaseDuration.toMillis();
+        boolean acquired;
+        try {
+            acquired = pendingAcquire.get(timeoutMs, TimeUnit.MILLISECONDS);
+            pendingAcquire = null;
+            // Аренда отсчитывается не раньше, чем вызов ушёл в хранилище
+            lastRenewedAt = acquired ? pendingSince : lastRenewedAt;
+            acquired = acquired && System.currentTimeMillis() < safeUntil();
+        } catch (TimeoutException e) {
+            // Вызов остаётся висеть: следующий тик дождётся его, а не поставит второй в очередь за ним
+            log.warn("Leader lease store did not answer in {} ms", timeoutMs);
+            acquired = false;
+        } catch (ExecutionException e) {
+            pendingAcquire = null;
+            log.warn("Failed to renew leader lease: {}", e.getCause().getMessage());
+            // Держим лидерство, пока аренда гарантированно наша
+            acquired = leader && System.currentTimeMillis() < safeUntil();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        if (acquired && !leader) {
+            changeLeadership(true);
+        } else if (!acquired && leader) {
+            changeLeadership(false);
+        }
+    }
+
+    /**
+     * До какого момента аренда точно наша: за renew-ms до истечения, с запасом на расхождение часов и тиков
+     */
+    private long safeUntil() {
+        return lastRenewedAt + leaseDuration.toMillis() - renewIntervalMs;
+    }
+
+    @Override
+    public synchronized void destroy() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+        storeCalls.shutdownNow();
+        if (leader) {
+            changeLeadership(false);
+            try {
+                leaseStore.release(leaseName, owner);
+            } catch (RuntimeException e) {
+                log.warn("Failed to release leader lease: {}", e.getMessage());
+            }
+        }
+        callbacks.shutdown();
+        try {
+            callbacks.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void changeLeadership(boolean elected) {
+        leader = elected;
+        transitionCounter.increment();
+        log.info(elected ? "This replica ({}) is now the leader" : "This replica ({}) is no longer the leader", owner);
+        Listener current = listener;
+        if (current == null) {
+            return;
+        }
+        callbacks.execute(() -> {
+            try {
+                if (elected) {
+                    current.onElected();
+                } else {
+                    current.onRevoked();
+                }
+            } catch (RuntimeException e) {
+                log.error("Leadership listener failed", e);
+            }
+        });
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "replica";
+        }
+    }
+}
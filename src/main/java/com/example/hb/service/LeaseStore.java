@@ -0,0 +1,23 @@
+package com.example.hb.service;
+
+import java.time.Duration;
+
+/**
+ * Аренда (lease) с ограниченным сроком — основа выбора лидера между репликами.
+ * Аренду держит не больше одного владельца; если он перестал её продлевать,
+ * по истечении срока её может забрать другой.
+ * Реализация выбирается вместе с хранилищем File ID (telegram.cache.store).
+ */
+public interface LeaseStore {
+
+    /**
+     * Взять свободную или просроченную аренду либо продлить свою
+     * @return true, если аренда теперь принадлежит owner
+     */
+    boolean tryAcquire(String name, String owner, Duration ttl);
+
+    /**
+     * Отпустить аренду, если она принадлежит owner, — чтобы другая реплика не ждала истечения срока
+     */
+    void release(String name, String owner);
+}
@@ -0,0 +1,76 @@
+package com.example.hb.service;
+
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Отпечатки содержимого медиафайлов (SHA-256), по ним FileIdCacheService хранит File ID:
+ * переименованный файл попадает в кэш, а изменённый под тем же именем — нет и будет загружен заново.
+ * Отпечаток считается MediaStore в том же проходе, что извлекает файл, и берётся из манифеста —
+ * отдельного чтения всех файлов при старте нет.
+ */
+@Service
+public class MediaDigestService {
+
+    /**
+     * Префикс ключа кэша, построенного по содержимому файла
+     */
+    public static final String CONTENT_KEY_PREFIX = "sha256:";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MediaStore mediaStore;
+
+    public MediaDigestService(MediaStore mediaStore) {
+        this.mediaStore = mediaStore;
+    }
+
+    /**
+     * Ключ кэша по содержимому ("sha256:&lt;hex&gt;") или null, если файла нет.
+     * Файлы вне сканируемой папки MediaStore извлекает (и считает отпечаток) при первом обращении.
+     */
+    public String getContentKey(String path) {
+        MediaFile mediaFile = mediaStore.getMediaFile(path);
+        return mediaFile != null ? mediaFile.contentKey() : null;
+    }
+
+    /**
+     * Ключ кэша по содержимому файла на диске — для файла, который не извлекается из jar
+     */
+    public static String computeContentKey(Path file) throws IOException {
+        MessageDigest sha256 = newDigest();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                sha256.update(buffer, 0, read);
+            }
+        }
+        return contentKey(sha256);
+    }
+
+    /**
+     * Новый SHA-256 для подсчёта отпечатка на лету (например, через DigestInputStream при копировании)
+     */
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Ключ кэша по досчитанному digest
+     */
+    static String contentKey(MessageDigest sha256) {
+        return CONTENT_KEY_PREFIX + HexFormat.of().formatHex(sha256.digest());
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.hb.service;
+
+import java.nio.file.Path;
+
+/**
+ * Запись манифеста MediaStore: всё, что обработчикам нужно знать о медиафайле, без обращения к диску
+ *
+ * @param path       путь в resources, например media/IMG_0128.MOV
+ * @param kind       как отправлять; null — расширение Telegram так не отправить
+ * @param contentKey отпечаток содержимого (см. MediaDigestService), может быть null
+ * @param file       файл на диске, из которого идёт загрузка
+ */
+public record MediaFile(String path,
+                        String fileName,
+                        MediaKind kind,
+                        String mimeType,
+                        long size,
+                        String contentKey,
+                        Path file) {
+}
@@ -0,0 +1,52 @@
+package com.example.hb.service;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Как медиафайл отправляется в Telegram: sendPhoto или sendVideo. Определяется по расширению один раз —
+ * при сборке манифеста MediaStore и таблицы маршрутов.
+ */
+public enum MediaKind {
+
+    PHOTO(Map.of("jpg", "image/jpeg", "jpeg", "image/jpeg", "png", "image/png", "gif", "image/gif")),
+    VIDEO(Map.of("mp4", "video/mp4", "mov", "video/quicktime", "avi", "video/x-msvideo", "mkv", "video/x-matroska"));
+
+    private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+
+    /** Расширение → MIME-тип */
+    private final Map<String, String> mimeTypes;
+
+    MediaKind(Map<String, String> mimeTypes) {
+        this.mimeTypes = mimeTypes;
+    }
+
+    /**
+     * @return тип по расширению имени файла или null, если Telegram его так не отправить
+     */
+    public static MediaKind of(String fileName) {
+        String extension = extension(fileName);
+        for (MediaKind kind : values()) {
+            if (kind.mimeTypes.containsKey(extension)) {
+                return kind;
+            }
+        }
+        return null;
+    }
+
+    public static String mimeType(String fileName) {
+        String extension = extension(fileName);
+        for (MediaKind kind : values()) {
+            String mimeType = kind.mimeTypes.get(extension);
+            if (mimeType != null) {
+                return mimeType;
+            }
+        }
+        return DEFAULT_MIME_TYPE;
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot >= 0 ? fileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.hb.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Медиафайлы на файловой системе. Внутри fat jar ресурс — сжатая запись вложенного архива,
+ * и каждое чтение заново её распаковывает. Поэтому при старте файлы один раз извлекаются
+ * в telegram.media.store-dir (при запуске из IDE берутся прямо из target/classes),
+ * а загрузка в Telegram идёт из обычного файла.
+ * Заодно собирается неизменяемый манифест (MediaFile): тип, MIME, размер и отпечаток каждого файла —
+ * отпечаток считается в том же проходе, что извлекает файл, так что каждый файл читается при старте один раз.
+ * Проверки существования и типа в обработчиках — поиск в памяти, без обращения к диску и classpath.
+ * Манифест не меняется на месте: новое содержимое (см. MediaWatcher) публикуется заменой всего манифеста.
+ */
+@Slf4j
+@Service
+public class MediaStore {
+
+    private static final String DEFAULT_STORE_DIR = "re-hb-media";
+
+    private final ResourcePatternResolver resourceResolver;
+    private final Path storeDir;
+    /** Путь в resources → файл; неизменяемая карта, подменяется целиком при публикации */
+    private volatile Map<String, MediaFile> manifest;
+    /** Пути вне сканируемой папки (например, из конфигурации маршрута); Optional.empty() — ресурса нет */
+    private final Map<String, Optional<MediaFile>> extraFiles = new ConcurrentHashMap<>();
+
+    public MediaStore(ResourcePatternResolver resourceResolver,
+                      @Value("${telegram.media.scan-dir:media}") String mediaDir,
+                      @Value("${telegram.media.store-dir:}") String storeDir) {
+        this.resourceResolver = resourceResolver;
+        this.storeDir = storeDir == null || storeDir.isEmpty()
+                ? Paths.get(System.getProperty("java.io.tmpdir"), DEFAULT_STORE_DIR)
+                : Paths.get(storeDir);
+        this.manifest = extractAll(mediaDir);
+    }
+
+    /**
+     * Запись манифеста для пути в resources (например media/IMG_0128.MOV) или null, если такого ресурса нет.
+     * Файлы вне сканируемой папки извлекаются при первом обращении.
+     */
+    public MediaFile getMediaFile(String mediaPath) {
+        MediaFile mediaFile = manifest.get(mediaPath);
+        if (mediaFile != null || mediaPath == null) {
+            return mediaFile;
+        }
+        return extraFiles.computeIfAbsent(mediaPath, this::locate).orElse(null);
+    }
+
+    /**
+     * Файлы сканируемой папки
+     */
+    public Collection<MediaFile> getMediaFiles() {
+        return manifest.values();
+    }
+
+    /**
+     * Снять копию внешнего файла в storeDir по его отпечатку и собрать для неё запись манифеста.
+     * Текущую запись пути это не меняет — до publish обработчики видят прежнее содержимое.
+     * Копия не меняется, даже если исходный файл перезапишут во время загрузки в Telegram.
+     */
+    public MediaFile prepare(String mediaPath, Path source) throws IOException {
+        try (InputStream in = Files.newInputStream(source)) {
+            return store(mediaPath, source.getFileName().toString(), in);
+        }
+    }
+
+    /**
+     * Атомарно заменить запись манифеста (а с ней и отпечаток пути, по которому FileIdCacheService ищет File ID)
+     */
+    public synchronized void publish(MediaFile mediaFile) {
+        Map<String, MediaFile> updated = new HashMap<>(manifest);
+        updated.put(mediaFile.path(), mediaFile);
+        manifest = Map.copyOf(updated);
+        extraFiles.remove(mediaFile.path());
+    }
+
+    /**
+     * Внешний файл удалён: вернуть версию из resources или убрать запись, если её там нет
+     * @return текущая запись пути или null
+     */
+    public synchronized MediaFile revert(String mediaPath) {
+        MediaFile original = locate(mediaPath).orElse(null);
+        Map<String, MediaFile> updated = new HashMap<>(manifest);
+        if (original != null) {
+            updated.put(mediaPath, original);
+        } else {
+            updated.remove(mediaPath);
+        }
+        manifest = Map.copyOf(updated);
+        extraFiles.remove(mediaPath);
+        return original;
+    }
+
+    /**
+     * Файл на диске для пути в resources или null, если такого ресурса нет
+     */
+    public Path getPath(String mediaPath) {
+        MediaFile mediaFile = getMediaFile(mediaPath);
+        return mediaFile != null ? mediaFile.file() : null;
+    }
+
+    /**
+     * Проверить, есть ли медиафайл (без открытия потоков)
+     */
+    public boolean exists(String mediaPath) {
+        return getPath(mediaPath) != null;
+    }
+
+    private Map<String, MediaFile> extractAll(String mediaDir) {
+        long startTime = System.currentTimeMillis();
+        Map<String, MediaFile> scanned = new LinkedHashMap<>();
+        try {
+            for (Resource resource : resourceResolver.getResources("classpath*:" + mediaDir + "/*")) {
+                if (resource.isReadable() && resource.getFilename() != null) {
+                    String path = mediaDir + "/" + resource.getFilename();
+                    locate(path, resource).ifPresent(mediaFile -> scanned.putIfAbsent(path, mediaFile));
+                }
+            }
+            log.info("Media store ready: {} files in {} ms (dir: {})",
+                    scanned.size(), System.currentTimeMillis() - startTime, storeDir);
+        } catch (IOException e) {
+            log.warn("Failed to scan media directory {}: {}", mediaDir, e.getMessage());
+        }
+        return Map.copyOf(scanned);
+    }
+
+    private Optional<MediaFile> locate(String mediaPath) {
+        return locate(mediaPath, resourceResolver.getResource("classpath:" + mediaPath));
+    }
+
+    private Optional<MediaFile> locate(String mediaPath, Resource resource) {
+        if (!resource.exists() || !resource.isReadable()) {
+            return Optional.empty();
+        }
+        try {
+            if (resource.isFile()) {
+                Path file = resource.getFile().toPath();
+                String fileName = file.getFileName().toString();
+                return Optional.of(new MediaFile(mediaPath, fileName, MediaKind.of(fileName),
+                        MediaKind.mimeType(fileName), Files.size(file), MediaDigestService.computeContentKey(file), file));
+            }
+            try (InputStream in = resource.getInputStream()) {
+                MediaFile mediaFile = store(mediaPath, Paths.get(mediaPath).getFileName().toString(), in);
+                log.debug("Extracted {} ({} bytes) to {}", mediaPath, mediaFile.size(), mediaFile.file());
+                return Optional.of(mediaFile);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to extract media file {}: {}", mediaPath, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Скопировать поток в storeDir/&lt;sha256&gt;/&lt;имя файла&gt;, считая отпечаток по ходу копирования —
+     * содержимое читается один раз. Каталог по отпечатку позволяет не путать разные версии файла;
+     * если такая версия уже лежит там с прошлого запуска, копия просто отбрасывается.
+     * Копирование — во временный файл и атомарный rename, чтобы не оставить недописанный файл.
+     */
+    private MediaFile store(String mediaPath, String fileName, InputStream source) throws IOException {
+        Files.createDirectories(storeDir);
+        Path tmp = Files.createTempFile(storeDir, "incoming", ".tmp");
+        try {
+            MessageDigest sha256 = MediaDigestService.newDigest();
+            try (InputStream in = new DigestInputStream(source, sha256)) {
+                Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String contentKey = MediaDigestService.contentKey(sha256);
+            Path target = storeDir.resolve(contentKey.substring(MediaDigestService.CONTENT_KEY_PREFIX.length()))
+                    .resolve(fileName);
+            if (!Files.isRegularFile(target) || Files.size(target) != Files.size(tmp)) {
+                Files.createDirectories(target.getParent());
+                Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return new MediaFile(mediaPath, fileName, MediaKind.of(fileName), MediaKind.mimeType(fileName),
+                    Files.size(target), contentKey, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+}
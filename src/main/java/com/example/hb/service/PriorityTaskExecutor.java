@@ -0,0 +1,232 @@
+package com.example.hb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Общий исполнитель блокирующей работы бота (загрузки, предзагрузка, обновление кэша) на виртуальных потоках.
+ * У каждого класса приоритета своя ограниченная очередь и свой потолок одновременных задач;
+ * освободившееся место всегда получает самый приоритетный класс, так что загрузка, которую ждёт пользователь,
+ * не стоит за фоновым прогревом, а фоновая работа не может занять все места.
+ * Переполненная очередь не растёт, а отбрасывает задачу (load shedding) — future завершается
+ * RejectedExecutionException, отказ виден в метрике bot.executor.rejected.
+ */
+@Slf4j
+@Service
+public class PriorityTaskExecutor implements DisposableBean {
+
+    /**
+     * Блокирующая работа: загрузка файла, запрос к API, чтение с диска
+     */
+    @FunctionalInterface
+    public interface Task<T> {
+        T call() throws Exception;
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<TaskPriority, ArrayDeque<QueuedTask<?>>> queues = new EnumMap<>(TaskPriority.class);
+    private final Map<TaskPriority, Integer> concurrencyLimits = new EnumMap<>(TaskPriority.class);
+    private final Map<TaskPriority, AtomicInteger> queued = new EnumMap<>(TaskPriority.class);
+    private final Map<TaskPriority, AtomicInteger> active = new EnumMap<>(TaskPriority.class);
+    private final Map<TaskPriority, Timer> queueWaitTimers = new EnumMap<>(TaskPriority.class);
+    private final Map<TaskPriority, Counter> rejectedCounters = new EnumMap<>(TaskPriority.class);
+    private final int maxConcurrency;
+    private final int queueCapacity;
+
+    private int running;
+    private boolean shutdown;
+
+    public PriorityTaskExecutor(MeterRegistry meterRegistry,
+                                @Value("${telegram.executor.max-concurrency:8}") int maxConcurrency,
+                                @Value("${telegram.executor.upload.max-concurrency:4}") int uploadConcurrency,
+                                @Value("${telegram.executor.background.max-concurrency:2}") int backgroundConcurrency,
+                                @Value("${telegram.executor.queue-capacity:100}") int queueCapacity) {
+        this.maxConcurrency = maxConcurrency;
+        this.queueCapacity = queueCapacity;
+        concurrencyLimits.put(TaskPriority.INTERACTIVE, maxConcurrency);
+        concurrencyLimits.put(TaskPriority.UPLOAD, Math.min(uploadConcurrency, maxConcurrency));
+        concurrencyLimits.put(TaskPriority.BACKGROUND, Math.min(backgroundConcurrency, maxConcurrency));
+        for (TaskPriority priority : TaskPriority.values()) {
+            String tag = priority.name().toLowerCase(Locale.ROOT);
+            queues.put(priority, new ArrayDeque<>());
+            AtomicInteger queuedCount = new AtomicInteger();
+            AtomicInteger activeCount = new AtomicInteger();
+            queued.put(priority, queuedCount);
+            active.put(priority, activeCount);
+            Gauge.builder("bot.executor.queued", queuedCount, AtomicInteger::get)
+                    .description("Задачи, ожидающие свободного места в исполнителе")
+                    .tag("priority", tag)
+                    .register(meterRegistry);
+            Gauge.builder("bot.executor.active", activeCount, AtomicInteger::get)
+                    .description("Задачи, выполняющиеся прямо сейчас")
+                    .tag("priority", tag)
+                    .register(meterRegistry);
+            queueWaitTimers.put(priority, Timer.builder("bot.executor.queue.wait")
+                    .description("Время ожидания задачи в очереди исполнителя")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+            rejectedCounters.put(priority, Counter.builder("bot.executor.rejected")
+                    .description("Задачи, отброшенные из-за переполненной очереди")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Поставить задачу в очередь своего класса
+     * @return future задачи; при переполнении очереди или остановке — завершён с RejectedExecutionException
+     */
+    public <T> CompletableFuture<T> submit(TaskPriority priority, Task<T> task) {
+        QueuedTask<T> queuedTask = new QueuedTask<>(priority, task, System.nanoTime());
+        lock.lock();
+        try {
+            if (shutdown) {
+                queuedTask.future.completeExceptionally(new RejectedExecutionException("Executor is shut down"));
+                return queuedTask.future;
+            }
+            ArrayDeque<QueuedTask<?>> queue = queues.get(priority);
+            if (queue.size() >= queueCapacity) {
+                rejectedCounters.get(priority).increment();
+                log.warn("{} queue is full ({}), shedding task", priority, queueCapacity);
+                queuedTask.future.completeExceptionally(
+                        new RejectedExecutionException(priority + " queue is full"));
+                return queuedTask.future;
+            }
+            queue.add(queuedTask);
+            queued.get(priority).incrementAndGet();
+            drain();
+        } finally {
+            lock.unlock();
+        }
+        return queuedTask.future;
+    }
+
+    /**
+     * Поставить задачу в очередь и дождаться результата
+     */
+    public <T> T execute(TaskPriority priority, Task<T> task) throws TelegramApiException {
+        try {
+            return submit(priority, task).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TelegramApiException telegramApiException) {
+                throw telegramApiException;
+            }
+            throw new TelegramApiException("Failed to execute " + priority + " task", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TelegramApiException("Interrupted while waiting for " + priority + " task", e);
+        }
+    }
+
+    /**
+     * Задачи класса, ожидающие места (без выполняющихся)
+     */
+    public int getQueued(TaskPriority priority) {
+        return queued.get(priority).get();
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        lock.lock();
+        try {
+            shutdown = true;
+            for (ArrayDeque<QueuedTask<?>> queue : queues.values()) {
+                QueuedTask<?> task;
+                while ((task = queue.poll()) != null) {
+                    queued.get(task.priority).decrementAndGet();
+                    task.future.completeExceptionally(new CancellationException("Executor is shut down"));
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            log.warn("Task executor did not finish running tasks in time");
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Запустить ожидающие задачи, пока есть свободные места: сначала старшие классы. Вызывается под lock.
+     */
+    private void drain() {
+        while (running < maxConcurrency && !shutdown) {
+            QueuedTask<?> next = null;
+            for (TaskPriority priority : TaskPriority.values()) {
+                ArrayDeque<QueuedTask<?>> queue = queues.get(priority);
+                if (!queue.isEmpty() && active.get(priority).get() < concurrencyLimits.get(priority)) {
+                    next = queue.poll();
+                    break;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            queued.get(next.priority).decrementAndGet();
+            active.get(next.priority).incrementAndGet();
+            running++;
+            QueuedTask<?> task = next;
+            executor.execute(() -> UpdateTrace.with(task.trace, () -> {
+                run(task);
+                return null;
+            }));
+        }
+    }
+
+    private <T> void run(QueuedTask<T> task) {
+        queueWaitTimers.get(task.priority).record(System.nanoTime() - task.enqueuedAt, TimeUnit.NANOSECONDS);
+        try {
+            task.future.complete(task.task.call());
+        } catch (Throwable e) {
+            task.future.completeExceptionally(e);
+        } finally {
+            lock.lock();
+            try {
+                active.get(task.priority).decrementAndGet();
+                running--;
+                drain();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class QueuedTask<T> {
+
+        private final TaskPriority priority;
+        private final Task<T> task;
+        private final long enqueuedAt;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        /** Апдейт, от имени которого задачу поставили, — восстанавливается на потоке выполнения */
+        private final UpdateTrace trace = UpdateTrace.current();
+
+        private QueuedTask(TaskPriority priority, Task<T> task, long enqueuedAt) {
+            this.priority = priority;
+            this.task = task;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
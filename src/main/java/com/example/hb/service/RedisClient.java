@@ -0,0 +1,214 @@
+package com.example.hb.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Небольшой клиент протокола RESP на одном соединении — общий для хранилища File ID и аренды лидера.
+ * Запросов мало (перед хранилищем near-cache, аренда продлевается раз в несколько секунд),
+ * поэтому пул и сторонняя библиотека не нужны. Подходит любой сервер с протоколом Redis
+ * (Redis, Valkey, KeyDB, Dragonfly). Оборванное соединение переоткрывается при следующем запросе.
+ * Соединение защищено ReentrantLock, а не synchronized: вызовы идут и с виртуальных потоков очередей чатов,
+ * и ожидающий ответа Redis не должен держать за собой поток-носитель.
+ */
+@Slf4j
+public class RedisClient implements AutoCloseable {
+
+    private final String host;
+    private final int port;
+    private final String password;
+    private final int database;
+    private final int timeoutMs;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+
+    /**
+     * @param uri redis://[:password@]host[:port][/database]
+     */
+    public RedisClient(URI uri, int timeoutMs) {
+        this.host = uri.getHost() != null ? uri.getHost() : "localhost";
+        this.port = uri.getPort() > 0 ? uri.getPort() : 6379;
+        String userInfo = uri.getUserInfo();
+        this.password = userInfo == null || userInfo.isEmpty() ? null
+                : userInfo.substring(userInfo.indexOf(':') + 1);
+        String path = uri.getPath();
+        this.database = path == null || path.length() <= 1 ? 0 : Integer.parseInt(path.substring(1));
+        this.timeoutMs = timeoutMs;
+        log.info("Using Redis at {}:{}/{}", host, port, database);
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            disconnect();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Выполнить команду; при сетевой ошибке — одна попытка на новом соединении
+     */
+    public Object command(String... args) {
+        lock.lock();
+        try {
+            return send(args);
+        } catch (IOException first) {
+            disconnect();
+            try {
+                return send(args);
+            } catch (IOException e) {
+                disconnect();
+                throw new UncheckedIOException("Redis " + args[0] + " failed", e);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Object send(String... args) throws IOException {
+        if (socket == null) {
+            connect();
+        }
+        write(args);
+        return read();
+    }
+
+    private void connect() throws IOException {
+        Socket newSocket = new Socket();
+        try {
+            newSocket.connect(new InetSocketAddress(host, port), timeoutMs);
+            newSocket.setSoTimeout(timeoutMs);
+            newSocket.setTcpNoDelay(true);
+        } catch (IOException e) {
+            newSocket.close();
+            throw e;
+        }
+        socket = newSocket;
+        in = new BufferedInputStream(newSocket.getInputStream());
+        out = new BufferedOutputStream(newSocket.getOutputStream());
+        try {
+            if (password != null) {
+                write("AUTH", password);
+                read();
+            }
+            if (database != 0) {
+                write("SELECT", Integer.toString(database));
+                read();
+            }
+        } catch (IOException | RuntimeException e) {
+            disconnect();
+            throw e;
+        }
+    }
+
+    private void disconnect() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("Failed to close Redis connection: {}", e.getMessage());
+            }
+        }
+        socket = null;
+        in = null;
+        out = null;
+    }
+
+    private void write(String... args) throws IOException {
+        writeLine('*', args.length);
+        for (String arg : args) {
+            byte[] bytes = arg.getBytes(StandardCharsets.UTF_8);
+            writeLine('$', bytes.length);
+            out.write(bytes);
+            out.write('\r');
+            out.write('\n');
+        }
+        out.flush();
+    }
+
+    private void writeLine(char type, int value) throws IOException {
+        out.write(type);
+        out.write(Integer.toString(value).getBytes(StandardCharsets.US_ASCII));
+        out.write('\r');
+        out.write('\n');
+    }
+
+    /**
+     * Ответ RESP: строка, число, null или список. Ошибка сервера (-ERR ...) — исключение,
+     * соединение при этом остаётся рабочим.
+     */
+    private Object read() throws IOException {
+        int type = in.read();
+        if (type < 0) {
+            throw new EOFException("Redis closed the connection");
+        }
+        String line = readLine();
+        switch (type) {
+            case '+':
+                return line;
+            case '-':
+                throw new IllegalStateException("Redis error: " + line);
+            case ':':
+                return Long.parseLong(line);
+            case '$': {
+                int length = Integer.parseInt(line);
+                if (length < 0) {
+                    return null;
+                }
+                byte[] bytes = in.readNBytes(length + 2);
+                if (bytes.length < length + 2) {
+                    throw new EOFException("Truncated Redis reply");
+                }
+                return new String(bytes, 0, length, StandardCharsets.UTF_8);
+            }
+            case '*': {
+                int count = Integer.parseInt(line);
+                if (count < 0) {
+                    return null;
+                }
+                List<Object> items = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    items.add(read());
+                }
+                return items;
+            }
+            default:
+                throw new IOException("Unexpected Redis reply type: " + (char) type);
+        }
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b < 0) {
+                throw new EOFException("Redis closed the connection");
+            }
+            line.write(b);
+        }
+        if (in.read() != '\n') {
+            throw new IOException("Malformed Redis reply");
+        }
+        return line.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.hb.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Отложенные доставки в хэше Redis (telegram.cache.store=redis) — общие для всех реплик.
+ * Рядом — sorted set &lt;hashKey&gt;:updated: id → время записи, по нему лидер выбирает новые доставки.
+ * Выполненные и отменённые доставки уходят из обоих, так что размер set'а не больше числа ожидающих.
+ */
+public class RedisDeliveryStore implements DeliveryStore {
+
+    private final RedisClient redis;
+    private final String hashKey;
+    private final String updatedKey;
+
+    /**
+     * @param hashKey ключ хэша id → доставка
+     */
+    public RedisDeliveryStore(RedisClient redis, String hashKey) {
+        this.redis = redis;
+        this.hashKey = hashKey;
+        this.updatedKey = hashKey + ":updated";
+    }
+
+    @Override
+    public void put(ScheduledDelivery delivery) {
+        redis.command("HSET", hashKey, delivery.id(), delivery.encode());
+        redis.command("ZADD", updatedKey, Long.toString(System.currentTimeMillis()), delivery.id());
+    }
+
+    @Override
+    public void remove(String id) {
+        redis.command("HDEL", hashKey, id);
+        redis.command("ZREM", updatedKey, id);
+    }
+
+    @Override
+    public ScheduledDelivery get(String id) {
+        String encoded = (String) redis.command("HGET", hashKey, id);
+        return encoded != null ? ScheduledDelivery.decode(id, encoded) : null;
+    }
+
+    @Override
+    public List<ScheduledDelivery> loadAll() {
+        List<?> reply = (List<?>) redis.command("HGETALL", hashKey);
+        List<ScheduledDelivery> deliveries = new ArrayList<>(reply.size() / 2);
+        for (int i = 0; i + 1 < reply.size(); i += 2) {
+            deliveries.add(ScheduledDelivery.decode((String) reply.get(i), (String) reply.get(i + 1)));
+        }
+        return deliveries;
+    }
+
+    @Override
+    public List<ScheduledDelivery> updatedSince(long since) {
+        List<?> ids = (List<?>) redis.command("ZRANGEBYSCORE", updatedKey, Long.toString(since), "+inf");
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String[] args = new String[ids.size() + 2];
+        args[0] = "HMGET";
+        args[1] = hashKey;
+        for (int i = 0; i < ids.size(); i++) {
+            args[i + 2] = (String) ids.get(i);
+        }
+        List<?> values = (List<?>) redis.command(args);
+        List<ScheduledDelivery> deliveries = new ArrayList<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            // Доставку могли выполнить между двумя запросами
+            if (values.get(i) != null) {
+                deliveries.add(ScheduledDelivery.decode((String) ids.get(i), (String) values.get(i)));
+            }
+        }
+        return deliveries;
+    }
+}
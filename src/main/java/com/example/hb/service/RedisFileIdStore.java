@@ -0,0 +1,47 @@
+package com.example.hb.service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * File ID в хэше Redis (telegram.cache.store=redis) — общий для всех реплик
+ */
+public class RedisFileIdStore implements FileIdStore {
+
+    private final RedisClient redis;
+    private final String hashKey;
+
+    /**
+     * @param hashKey ключ хэша, в котором лежат записи
+     */
+    public RedisFileIdStore(RedisClient redis, String hashKey) {
+        this.redis = redis;
+        this.hashKey = hashKey;
+    }
+
+    @Override
+    public String get(String key) {
+        return (String) redis.command("HGET", hashKey, key);
+    }
+
+    @Override
+    public void put(String key, String fileId) {
+        redis.command("HSET", hashKey, key, fileId);
+    }
+
+    @Override
+    public void remove(String key) {
+        redis.command("HDEL", hashKey, key);
+    }
+
+    @Override
+    public Map<String, String> loadAll() {
+        List<?> reply = (List<?>) redis.command("HGETALL", hashKey);
+        Map<String, String> entries = new HashMap<>();
+        for (int i = 0; i + 1 < reply.size(); i += 2) {
+            entries.put((String) reply.get(i), (String) reply.get(i + 1));
+        }
+        return entries;
+    }
+}
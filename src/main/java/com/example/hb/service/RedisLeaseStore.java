@@ -0,0 +1,54 @@
+package com.example.hb.service;
+
+import java.time.Duration;
+
+/**
+ * Аренда в Redis (telegram.cache.store=redis): ключ с владельцем и сроком PX.
+ * Проверка владельца и продление выполняются скриптом атомарно; срок считают часы сервера Redis,
+ * так что расхождение часов реплик не важно.
+ */
+public class RedisLeaseStore implements LeaseStore {
+
+    static final String ACQUIRE_SCRIPT = """
+            local current = redis.call('GET', KEYS[1])
+            if current == false then
+                redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+                return 1
+            end
+            if current == ARGV[1] then
+                redis.call('PEXPIRE', KEYS[1], ARGV[2])
+                return 1
+            end
+            return 0
+            """;
+
+    static final String RELEASE_SCRIPT = """
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """;
+
+    private final RedisClient redis;
+    private final String keyPrefix;
+
+    /**
+     * @param keyPrefix префикс ключей аренды, к нему добавляется имя аренды
+     */
+    public RedisLeaseStore(RedisClient redis, String keyPrefix) {
+        this.redis = redis;
+        this.keyPrefix = keyPrefix;
+    }
+
+    @Override
+    public boolean tryAcquire(String name, String owner, Duration ttl) {
+        Object reply = redis.command("EVAL", ACQUIRE_SCRIPT, "1", keyPrefix + name, owner,
+                Long.toString(ttl.toMillis()));
+        return Long.valueOf(1).equals(reply);
+    }
+
+    @Override
+    public void release(String name, String owner) {
+        redis.command("EVAL", RELEASE_SCRIPT, "1", keyPrefix + name, owner);
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.hb.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Подписчики в sorted set Redis (telegram.cache.store=redis) — общие для всех реплик.
+ * Оценка элемента — сам chatId (id чатов Telegram укладываются в 52 бита и точно представимы в double),
+ * так что страница — это ZRANGEBYSCORE от последнего обработанного чата.
+ */
+public class RedisSubscriberStore implements SubscriberStore {
+
+    private final RedisClient redis;
+    private final String setKey;
+    private final String checkpointKey;
+
+    /**
+     * @param setKey        ключ sorted set с подписчиками
+     * @param checkpointKey ключ строки с состоянием рассылки
+     */
+    public RedisSubscriberStore(RedisClient redis, String setKey, String checkpointKey) {
+        this.redis = redis;
+        this.setKey = setKey;
+        this.checkpointKey = checkpointKey;
+    }
+
+    @Override
+    public boolean add(long chatId) {
+        String member = Long.toString(chatId);
+        return ((Long) redis.command("ZADD", setKey, member, member)) > 0;
+    }
+
+    @Override
+    public void remove(long chatId) {
+        redis.command("ZREM", setKey, Long.toString(chatId));
+    }
+
+    @Override
+    public List<Long> page(long afterChatId, int limit) {
+        List<?> reply = (List<?>) redis.command("ZRANGEBYSCORE", setKey, "(" + afterChatId, "+inf",
+                "LIMIT", "0", Integer.toString(limit));
+        List<Long> page = new ArrayList<>(reply.size());
+        for (Object member : reply) {
+            page.add(Long.parseLong((String) member));
+        }
+        return page;
+    }
+
+    @Override
+    public long count() {
+        return (Long) redis.command("ZCARD", setKey);
+    }
+
+    @Override
+    public String loadCheckpoint() {
+        return (String) redis.command("GET", checkpointKey);
+    }
+
+    @Override
+    public void saveCheckpoint(String checkpoint) {
+        redis.command("SET", checkpointKey, checkpoint);
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.hb.service;
+
+/**
+ * Отложенная доставка ответа маршрута в чат к заданному моменту
+ *
+ * @param fireAt момент отправки, мс с эпохи (локальное время получателя уже пересчитано по zone)
+ * @param zone   часовой пояс получателя — для отображения и логов
+ */
+public record ScheduledDelivery(String id, long chatId, String routeId, long fireAt, String zone) {
+
+    private static final char SEPARATOR = '\t';
+
+    /**
+     * Всё, кроме id, одной строкой — для журнала и хэша Redis
+     */
+    String encode() {
+        return Long.toString(chatId) + SEPARATOR + routeId + SEPARATOR + fireAt + SEPARATOR + zone;
+    }
+
+    static ScheduledDelivery decode(String id, String encoded) {
+        String[] parts = encoded.split(String.valueOf(SEPARATOR), 4);
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Malformed delivery " + id + ": " + encoded);
+        }
+        return new ScheduledDelivery(id, Long.parseLong(parts[0]), parts[1], Long.parseLong(parts[2]), parts[3]);
+    }
+}
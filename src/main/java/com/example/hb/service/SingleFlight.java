@@ -0,0 +1,119 @@
+package com.example.hb.service;
+
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Схлопывает одинаковые одновременные вызовы: первый вызов по ключу выполняет работу,
+ * остальные ждут его результат вместо того, чтобы повторять ту же работу.
+ */
+public class SingleFlight<K, V> {
+
+    @FunctionalInterface
+    public interface Call<V> {
+        V call() throws TelegramApiException;
+    }
+
+    /**
+     * @param value  результат вызова
+     * @param leader true, если работу выполнил именно этот вызов
+     */
+    public record Result<V>(V value, boolean leader) {
+    }
+
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Выполнить call, если по ключу ничего не выполняется, иначе дождаться текущего выполнения.
+     * Если текущее выполнение упало, ожидающий пробует один раз выполнить работу сам.
+     */
+    public Result<V> execute(K key, Call<V> call) throws TelegramApiException {
+        CompletableFuture<V> existing = inFlight.get(key);
+        if (existing != null) {
+            try {
+                return new Result<>(await(existing), false);
+            } catch (TelegramApiException e) {
+                // Лидер не справился — пробуем сами (или присоединяемся к новому лидеру)
+            }
+        }
+        CompletableFuture<V> own = new CompletableFuture<>();
+        existing = inFlight.putIfAbsent(key, own);
+        if (existing != null) {
+            return new Result<>(await(existing), false);
+        }
+        try {
+            V value = call.call();
+            own.complete(value);
+            return new Result<>(value, true);
+        } catch (TelegramApiException | RuntimeException e) {
+            own.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * То же, что execute, без блокировки: call запускает работу и возвращает её future,
+     * ожидающие присоединяются к future лидера. Синхронные и асинхронные вызовы по одному ключу видят друг друга.
+     */
+    public CompletableFuture<Result<V>> executeAsync(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> existing = inFlight.get(key);
+        if (existing == null) {
+            return lead(key, call);
+        }
+        // Лидер не справился — пробуем сами (или присоединяемся к новому лидеру)
+        return existing.handle((value, error) -> error == null
+                        ? CompletableFuture.completedFuture(new Result<>(value, false))
+                        : lead(key, call))
+                .thenCompose(Function.identity());
+    }
+
+    public boolean isInFlight(K key) {
+        return inFlight.containsKey(key);
+    }
+
+    private CompletableFuture<Result<V>> lead(K key, Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, own);
+        if (existing != null) {
+            return existing.thenApply(value -> new Result<>(value, false));
+        }
+        CompletableFuture<V> work;
+        try {
+            work = call.get();
+        } catch (RuntimeException e) {
+            work = CompletableFuture.failedFuture(e);
+        }
+        return work.whenComplete((value, error) -> {
+            // Сначала убираем из inFlight: ожидающий, увидевший ошибку, должен стать новым лидером
+            inFlight.remove(key, own);
+            if (error != null) {
+                own.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+            } else {
+                own.complete(value);
+            }
+        }).thenApply(value -> new Result<>(value, true));
+    }
+
+    private V await(CompletableFuture<V> future) throws TelegramApiException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TelegramApiException telegramApiException) {
+                throw telegramApiException;
+            }
+            throw new TelegramApiException("In-flight call failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TelegramApiException("Interrupted while waiting for in-flight call", e);
+        }
+    }
+}
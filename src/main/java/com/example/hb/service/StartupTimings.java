@@ -0,0 +1,64 @@
+package com.example.hb.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.aot.AotDetector;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Время старта, отсчитанное от запуска процесса: до готовности приложения и до первого апдейта.
+ * Первый апдейт — то, что на деле видит пользователь после деплоя: пока его нет, бот не отвечает,
+ * даже если healthcheck уже прошёл. Значения пишутся в лог и в метрики bot.startup.*.
+ */
+@Slf4j
+@Service
+public class StartupTimings implements ApplicationListener<ApplicationReadyEvent> {
+
+    private final long processStartMillis = processStartMillis();
+    private final AtomicBoolean firstUpdateSeen = new AtomicBoolean();
+    private volatile double readyMillis = Double.NaN;
+    private volatile double firstUpdateMillis = Double.NaN;
+
+    public StartupTimings(MeterRegistry meterRegistry) {
+        TimeGauge.builder("bot.startup.ready", this, TimeUnit.MILLISECONDS, timings -> timings.readyMillis)
+                .description("Время от запуска процесса до готовности приложения")
+                .register(meterRegistry);
+        TimeGauge.builder("bot.startup.first.update", this, TimeUnit.MILLISECONDS, timings -> timings.firstUpdateMillis)
+                .description("Время от запуска процесса до первого полученного апдейта")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationReadyEvent event) {
+        readyMillis = System.currentTimeMillis() - processStartMillis;
+        log.info("Application ready {} ms after process start (context {} ms, AOT {})",
+                (long) readyMillis, event.getTimeTaken().toMillis(),
+                AotDetector.useGeneratedArtifacts() ? "on" : "off");
+    }
+
+    /**
+     * Отметить получение апдейта; после первого вызова — одно чтение флага
+     */
+    public void onUpdateReceived() {
+        if (firstUpdateSeen.get() || !firstUpdateSeen.compareAndSet(false, true)) {
+            return;
+        }
+        firstUpdateMillis = System.currentTimeMillis() - processStartMillis;
+        log.info("First update received {} ms after process start", (long) firstUpdateMillis);
+    }
+
+    private static long processStartMillis() {
+        // Старт процесса, а не JVM: учитывает и запуск самой JVM
+        return ProcessHandle.current().info().startInstant()
+                .map(Instant::toEpochMilli)
+                .orElseGet(() -> ManagementFactory.getRuntimeMXBean().getStartTime());
+    }
+}
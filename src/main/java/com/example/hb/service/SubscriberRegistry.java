@@ -0,0 +1,93 @@
+package com.example.hb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Реестр подписчиков для рассылок: чат попадает сюда по /start и уходит, когда заблокировал бота.
+ * Повторный /start того же чата в хранилище не ходит — известные чаты помнятся в памяти
+ * (до telegram.broadcast.known-chats-max). Ошибка хранилища ответ пользователю не ломает.
+ */
+@Slf4j
+@Service
+public class SubscriberRegistry {
+
+    private final SubscriberStore store;
+    private final int knownChatsMax;
+    private final Set<Long> knownChats = ConcurrentHashMap.newKeySet();
+    private final Counter subscribedCounter;
+    private final Counter unsubscribedCounter;
+    private final Counter errorCounter;
+
+    public SubscriberRegistry(SubscriberStore store, MeterRegistry meterRegistry,
+                              @Value("${telegram.broadcast.known-chats-max:100000}") int knownChatsMax) {
+        this.store = store;
+        this.knownChatsMax = knownChatsMax;
+        this.subscribedCounter = Counter.builder("bot.subscribers.changes")
+                .description("Изменения списка подписчиков")
+                .tag("change", "subscribed")
+                .register(meterRegistry);
+        this.unsubscribedCounter = Counter.builder("bot.subscribers.changes")
+                .description("Изменения списка подписчиков")
+                .tag("change", "unsubscribed")
+                .register(meterRegistry);
+        this.errorCounter = Counter.builder("bot.subscribers.errors")
+                .description("Ошибки хранилища подписчиков")
+                .register(meterRegistry);
+    }
+
+    public void subscribe(Long chatId) {
+        if (chatId == null || knownChats.contains(chatId)) {
+            return;
+        }
+        try {
+            if (store.add(chatId)) {
+                subscribedCounter.increment();
+                log.debug("Chat {} subscribed", chatId);
+            }
+            if (knownChats.size() < knownChatsMax) {
+                knownChats.add(chatId);
+            }
+        } catch (RuntimeException e) {
+            errorCounter.increment();
+            log.warn("Failed to store subscriber {}: {}", chatId, e.getMessage());
+        }
+    }
+
+    /**
+     * Убрать чат, который больше не принимает сообщения (бот заблокирован, чат удалён)
+     */
+    public void unsubscribe(long chatId) {
+        knownChats.remove(chatId);
+        try {
+            store.remove(chatId);
+            unsubscribedCounter.increment();
+        } catch (RuntimeException e) {
+            errorCounter.increment();
+            log.warn("Failed to remove subscriber {}: {}", chatId, e.getMessage());
+        }
+    }
+
+    public List<Long> page(long afterChatId, int limit) {
+        return store.page(afterChatId, limit);
+    }
+
+    public long count() {
+        return store.count();
+    }
+
+    public String loadCheckpoint() {
+        return store.loadCheckpoint();
+    }
+
+    public void saveCheckpoint(String checkpoint) {
+        store.saveCheckpoint(checkpoint);
+    }
+}
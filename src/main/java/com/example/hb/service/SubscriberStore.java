@@ -0,0 +1,38 @@
+package com.example.hb.service;
+
+import java.util.List;
+
+/**
+ * Подписчики бота (чаты, нажавшие /start) и состояние рассылки по ним.
+ * Реализация выбирается тем же telegram.cache.store, что и для File ID: file — файл одного экземпляра,
+ * jdbc и redis — общий список для всех реплик. Чаты обходятся страницами по возрастанию chatId,
+ * поэтому рассылку можно продолжить с последнего обработанного чата.
+ * Ошибки доступа реализации бросают как unchecked-исключения.
+ */
+public interface SubscriberStore extends AutoCloseable {
+
+    /**
+     * @return true, если чат добавлен впервые
+     */
+    boolean add(long chatId);
+
+    void remove(long chatId);
+
+    /**
+     * До limit чатов с chatId больше afterChatId, по возрастанию
+     */
+    List<Long> page(long afterChatId, int limit);
+
+    long count();
+
+    /**
+     * Сохранённое состояние рассылки (см. BroadcastService) или null
+     */
+    String loadCheckpoint();
+
+    void saveCheckpoint(String checkpoint);
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.hb.service;
+
+/**
+ * Классы приоритета работы бота: чем меньше ordinal, тем раньше выполняется
+ */
+public enum TaskPriority {
+
+    /**
+     * Ответ пользователю на его сообщение
+     */
+    INTERACTIVE,
+
+    /**
+     * Загрузка медиафайла, которую ждёт пользователь
+     */
+    UPLOAD,
+
+    /**
+     * Фоновая работа: предзагрузка, обновление кэша, рассылки
+     */
+    BACKGROUND
+}
@@ -0,0 +1,474 @@
+package com.example.hb.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Единая точка отправки запросов в Telegram с учётом лимитов Bot API:
+ * общий token bucket (~30 сообщений/с), bucket на каждый чат (~1 сообщение/с, группы — 20 в минуту)
+ * и очередь с приоритетами, в которой ответы пользователю обгоняют фоновую работу.
+ * Ответ 429 не теряет сообщение: чат блокируется на retry_after, запрос повторяется.
+ * Одновременно в HTTP-клиенте не больше telegram.send.max-in-flight вызовов: пул соединений telegrambots
+ * (EvgenBot расширяет его до того же размера) ждёт свободного соединения внутри synchronized, прикалывая
+ * виртуальный поток к носителю — лишние вызовы ждут здесь, на семафоре, не занимая носитель.
+ * Загрузки файлов (вызовы с известным размером тела) занимают не больше max-in-flight − 1 мест:
+ * одно всегда остаётся за короткими вызовами, и ответ пользователю не ждёт конца чужой многомегабайтной загрузки.
+ */
+@Slf4j
+@Service
+public class TelegramSendScheduler implements InitializingBean, DisposableBean {
+
+    /**
+     * Вызов Telegram API, который выполнится, когда освободятся токены
+     */
+    @FunctionalInterface
+    public interface ApiCall<T> {
+        T call() throws TelegramApiException;
+    }
+
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final long BUCKET_EVICTION_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private static final Comparator<SendTask<?>> READY_ORDER = Comparator
+            .<SendTask<?>>comparingInt(task -> task.priority.ordinal())
+            .thenComparingLong(task -> task.sequence);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final PriorityQueue<SendTask<?>> ready = new PriorityQueue<>(READY_ORDER);
+    private final PriorityQueue<SendTask<?>> delayed = new PriorityQueue<>(
+            Comparator.<SendTask<?>>comparingLong(task -> task.notBefore).thenComparing(READY_ORDER));
+    private final Map<Long, TokenBucket> chatBuckets = new HashMap<>();
+    private final TokenBucket globalBucket;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final int maxInFlight;
+    private final Semaphore inFlight;
+    private final Semaphore uploadSlots;
+
+    private final double chatPerSecond;
+    private final int chatBurst;
+    private final double groupPerMinute;
+    private final int groupBurst;
+    private final int maxRetries;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter throttledCounter;
+    private final Map<TaskPriority, Timer> queueWaitTimers = new EnumMap<>(TaskPriority.class);
+    /** Таймеры вызовов API по "метод:исход" — методов немного, создаются при первом вызове */
+    private final Map<String, Timer> apiTimers = new ConcurrentHashMap<>();
+
+    private Thread loopThread;
+    private volatile boolean running = true;
+    private long sequence;
+    private long lastEviction = System.nanoTime();
+
+    public TelegramSendScheduler(MeterRegistry meterRegistry,
+                                 @Value("${telegram.send.global-per-second:30}") double globalPerSecond,
+                                 @Value("${telegram.send.chat-per-second:1}") double chatPerSecond,
+                                 @Value("${telegram.send.chat-burst:1}") int chatBurst,
+                                 @Value("${telegram.send.group-per-minute:20}") double groupPerMinute,
+                                 @Value("${telegram.send.group-burst:3}") int groupBurst,
+                                 @Value("${telegram.send.max-retries:3}") int maxRetries,
+                                 @Value("${telegram.send.max-in-flight:8}") int maxInFlight) {
+        this.globalBucket = new TokenBucket(globalPerSecond, globalPerSecond / TimeUnit.SECONDS.toNanos(1));
+        this.chatPerSecond = chatPerSecond;
+        this.chatBurst = chatBurst;
+        this.groupPerMinute = groupPerMinute;
+        this.groupBurst = groupBurst;
+        this.maxRetries = maxRetries;
+        this.maxInFlight = Math.max(1, maxInFlight);
+        this.inFlight = new Semaphore(this.maxInFlight);
+        this.uploadSlots = new Semaphore(Math.max(1, this.maxInFlight - 1));
+        this.meterRegistry = meterRegistry;
+        this.throttledCounter = Counter.builder("telegram.send.throttled")
+                .description("Ответы 429 Too Many Requests от Telegram")
+                .register(meterRegistry);
+        Gauge.builder("telegram.send.queue.size", pending, AtomicInteger::get)
+                .description("Запросы, ожидающие свободного токена")
+                .register(meterRegistry);
+        for (TaskPriority priority : TaskPriority.values()) {
+            queueWaitTimers.put(priority, Timer.builder("telegram.send.queue.wait")
+                    .description("Время от постановки запроса в очередь до вызова API")
+                    .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                    .register(meterRegistry));
+        }
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        loopThread = Thread.ofPlatform()
+                .name("telegram-send-scheduler")
+                .daemon(true)
+                .start(this::runLoop);
+    }
+
+    /**
+     * Сколько вызовов API может идти одновременно — столько соединений нужно пулу HTTP-клиента
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Поставить вызов в очередь. chatId == null — запрос не привязан к чату, учитывается только общий лимит.
+     */
+    public <T> CompletableFuture<T> submit(Long chatId, TaskPriority priority, String method, ApiCall<T> call) {
+        return submit(chatId, priority, method, 0, call);
+    }
+
+    /**
+     * Поставить в очередь вызов с телом известного размера (загрузка файла) — размер попадёт в событие JFR
+     */
+    public <T> CompletableFuture<T> submit(Long chatId, TaskPriority priority, String method, long bytes,
+                                           ApiCall<T> call) {
+        SendTask<T> task = new SendTask<>(chatId, priority, method, bytes, call);
+        lock.lock();
+        try {
+            if (!running) {
+                task.future.completeExceptionally(new CancellationException("Send scheduler is shut down"));
+                return task.future;
+            }
+            task.sequence = sequence++;
+            ready.add(task);
+            pending.incrementAndGet();
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        return task.future;
+    }
+
+    /**
+     * Поставить вызов в очередь и дождаться результата
+     */
+    public <T> T execute(Long chatId, TaskPriority priority, String method, ApiCall<T> call)
+            throws TelegramApiException {
+        return execute(chatId, priority, method, 0, call);
+    }
+
+    /**
+     * Поставить вызов с телом известного размера в очередь и дождаться результата
+     */
+    public <T> T execute(Long chatId, TaskPriority priority, String method, long bytes, ApiCall<T> call)
+            throws TelegramApiException {
+        try {
+            return submit(chatId, priority, method, bytes, call).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TelegramApiException telegramApiException) {
+                throw telegramApiException;
+            }
+            throw new TelegramApiException("Failed to execute " + method, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TelegramApiException("Interrupted while waiting to execute " + method, e);
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        lock.lock();
+        try {
+            running = false;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (loopThread != null) {
+            loopThread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        executor.shutdown();
+        lock.lock();
+        try {
+            cancelAll(ready);
+            cancelAll(delayed);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runLoop() {
+        lock.lock();
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                promoteDelayed(now);
+                evictIdleBuckets(now);
+
+                long waitNanos = delayed.isEmpty() ? Long.MAX_VALUE : delayed.peek().notBefore - now;
+                SendTask<?> task = ready.peek();
+                if (task != null) {
+                    TokenBucket chatBucket = task.chatId != null ? chatBucket(task.chatId) : null;
+                    long chatWait = chatBucket != null ? chatBucket.waitNanos(now) : 0;
+                    if (chatWait > 0) {
+                        // Чат исчерпал свой лимит — откладываем, не задерживая остальные чаты
+                        ready.poll();
+                        task.notBefore = now + chatWait;
+                        delayed.add(task);
+                        continue;
+                    }
+                    long globalWait = globalBucket.waitNanos(now);
+                    if (globalWait == 0) {
+                        ready.poll();
+                        if (chatBucket != null) {
+                            chatBucket.take();
+                        }
+                        globalBucket.take();
+                        pending.decrementAndGet();
+                        executor.execute(() -> UpdateTrace.with(task.trace, () -> {
+                            run(task);
+                            return null;
+                        }));
+                        continue;
+                    }
+                    waitNanos = Math.min(waitNanos, globalWait);
+                }
+
+                if (waitNanos == Long.MAX_VALUE) {
+                    changed.await();
+                } else {
+                    changed.awaitNanos(waitNanos);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private <T> void run(SendTask<T> task) {
+        boolean upload = task.bytes > 0;
+        try {
+            if (upload) {
+                uploadSlots.acquire();
+            }
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                if (upload) {
+                    uploadSlots.release();
+                }
+                throw e;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.future.completeExceptionally(new CancellationException("Send scheduler is shut down"));
+            return;
+        }
+        long start = System.nanoTime();
+        queueWaitTimers.get(task.priority).record(start - task.enqueuedAt, TimeUnit.NANOSECONDS);
+        String outcome = "error";
+        BotEvents.ApiCall event = new BotEvents.ApiCall();
+        event.attempt = task.attempts + 1;
+        event.begin();
+        try {
+            T result = task.call.call();
+            outcome = "success";
+            task.future.complete(result);
+        } catch (TelegramApiRequestException e) {
+            event.errorCode = e.getErrorCode() != null ? e.getErrorCode() : 0;
+            boolean throttled = e.getErrorCode() != null && e.getErrorCode() == TOO_MANY_REQUESTS;
+            if (throttled) {
+                outcome = "throttled";
+            }
+            if (throttled && task.attempts < maxRetries) {
+                int retryAfter = e.getParameters() != null && e.getParameters().getRetryAfter() != null
+                        ? e.getParameters().getRetryAfter() : 1;
+                throttledCounter.increment();
+                log.warn("Telegram throttled {} for chat {}, retrying in {} s", task.method, task.chatId, retryAfter);
+                retryLater(task, TimeUnit.SECONDS.toNanos(retryAfter));
+            } else {
+                task.future.completeExceptionally(e);
+            }
+        } catch (Exception e) {
+            task.future.completeExceptionally(e);
+        } finally {
+            inFlight.release();
+            if (upload) {
+                uploadSlots.release();
+            }
+            apiTimer(task.method, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            event.end();
+            if (event.shouldCommit()) {
+                event.chatId = task.chatId != null ? task.chatId : 0;
+                event.updateId = task.trace.updateId();
+                event.method = task.method;
+                event.bytes = task.bytes;
+                event.outcome = outcome;
+                event.commit();
+            }
+        }
+    }
+
+    private Timer apiTimer(String method, String outcome) {
+        return apiTimers.computeIfAbsent(method + ':' + outcome, key -> Timer.builder("telegram.api.latency")
+                .description("Длительность вызова Telegram Bot API")
+                .tag("method", method)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    private void retryLater(SendTask<?> task, long delayNanos) {
+        lock.lock();
+        try {
+            long until = System.nanoTime() + delayNanos;
+            // retry_after относится к чату, для запросов без чата — ко всему боту
+            TokenBucket bucket = task.chatId != null ? chatBucket(task.chatId) : globalBucket;
+            bucket.blockUntil(until);
+            task.attempts++;
+            task.notBefore = until;
+            task.enqueuedAt = System.nanoTime();
+            delayed.add(task);
+            pending.incrementAndGet();
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void promoteDelayed(long now) {
+        while (!delayed.isEmpty() && delayed.peek().notBefore - now <= 0) {
+            ready.add(delayed.poll());
+        }
+    }
+
+    private TokenBucket chatBucket(Long chatId) {
+        return chatBuckets.computeIfAbsent(chatId, id -> id < 0
+                // Отрицательный chat_id — группа или канал
+                ? new TokenBucket(groupBurst, groupPerMinute / TimeUnit.MINUTES.toNanos(1))
+                : new TokenBucket(chatBurst, chatPerSecond / TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    private void evictIdleBuckets(long now) {
+        if (now - lastEviction < BUCKET_EVICTION_INTERVAL_NANOS) {
+            return;
+        }
+        lastEviction = now;
+        Iterator<TokenBucket> iterator = chatBuckets.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isFull(now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void cancelAll(PriorityQueue<SendTask<?>> queue) {
+        SendTask<?> task;
+        while ((task = queue.poll()) != null) {
+            pending.decrementAndGet();
+            task.future.completeExceptionally(new CancellationException("Send scheduler is shut down"));
+        }
+    }
+
+    private static final class SendTask<T> {
+
+        private final Long chatId;
+        private final TaskPriority priority;
+        private final String method;
+        private final ApiCall<T> call;
+        private final long bytes;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        /** Апдейт, от имени которого вызов поставили, — восстанавливается на потоке выполнения */
+        private final UpdateTrace trace = UpdateTrace.current();
+        private long enqueuedAt = System.nanoTime();
+        private long sequence;
+        private long notBefore;
+        private int attempts;
+
+        private SendTask(Long chatId, TaskPriority priority, String method, long bytes, ApiCall<T> call) {
+            this.chatId = chatId;
+            this.priority = priority;
+            this.method = method;
+            this.bytes = bytes;
+            this.call = call;
+        }
+    }
+
+    /**
+     * Token bucket на System.nanoTime(). Не потокобезопасен — используется только под lock.
+     */
+    private static final class TokenBucket {
+
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefill;
+        private long blockedUntil;
+        private boolean blocked;
+
+        private TokenBucket(double capacity, double tokensPerNano) {
+            this.capacity = capacity;
+            this.tokensPerNano = tokensPerNano;
+            this.tokens = capacity;
+            this.lastRefill = System.nanoTime();
+        }
+
+        long waitNanos(long now) {
+            refill(now);
+            if (blocked) {
+                if (blockedUntil - now > 0) {
+                    return blockedUntil - now;
+                }
+                blocked = false;
+            }
+            if (tokens >= 1) {
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+
+        void take() {
+            tokens -= 1;
+        }
+
+        void blockUntil(long until) {
+            if (!blocked || until - blockedUntil > 0) {
+                blockedUntil = until;
+            }
+            blocked = true;
+            tokens = 0;
+        }
+
+        boolean isFull(long now) {
+            refill(now);
+            return !blocked && tokens >= capacity;
+        }
+
+        private void refill(long now) {
+            long elapsed = now - lastRefill;
+            if (elapsed > 0) {
+                tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+                lastRefill = now;
+            }
+        }
+    }
+}
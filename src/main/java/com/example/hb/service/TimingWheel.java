@@ -0,0 +1,160 @@
+package com.example.hb.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Иерархическое колесо таймеров: LEVELS уровней по SLOTS ячеек, ячейка уровня l покрывает tickMs * SLOTS^l.
+ * Запись кладётся на самый нижний уровень, где до её срока меньше SLOTS ячеек, и при повороте старшего уровня
+ * спускается ниже, пока не окажется в ячейке нулевого уровня. Добавление и отмена — O(1), тик разбирает
+ * одну ячейку на уровень, поэтому стоимость тика не зависит от того, сколько записей ждёт.
+ * Не потокобезопасно: вызывающий держит колесо под своей блокировкой.
+ *
+ * @param <E> полезная нагрузка записи
+ */
+public class TimingWheel<E> {
+
+    static final int SLOTS = 64;
+    static final int LEVELS = 6;
+
+    private record Entry<E>(String id, long deadline, E value, int level, int slot) {
+    }
+
+    private final long tickMs;
+    private final long[] slotSpans = new long[LEVELS];
+    /** wheels.get(level).get(slot) — записи ячейки по id */
+    private final List<List<Map<String, Entry<E>>>> wheels = new ArrayList<>(LEVELS);
+    private final Map<String, Entry<E>> index = new HashMap<>();
+    private long currentTime;
+
+    /**
+     * @param tickMs  точность: запись срабатывает на первом тике не раньше своего срока
+     * @param startMs текущее время; ход колеса задаёт advance
+     */
+    public TimingWheel(long tickMs, long startMs) {
+        this.tickMs = tickMs;
+        long span = tickMs;
+        for (int level = 0; level < LEVELS; level++) {
+            slotSpans[level] = span;
+            span = Math.multiplyExact(span, SLOTS);
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            List<Map<String, Entry<E>>> slots = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                slots.add(new LinkedHashMap<>());
+            }
+            wheels.add(slots);
+        }
+        this.currentTime = startMs - Math.floorMod(startMs, tickMs);
+    }
+
+    /**
+     * Запланировать запись; запись с тем же id заменяется
+     *
+     * @return false, если срок уже наступил — запись не добавлена, её нужно выполнить сразу
+     * @throws IllegalArgumentException срок дальше, чем покрывает колесо
+     */
+    public boolean schedule(String id, long deadline, E value) {
+        cancel(id);
+        return insert(id, deadline, value);
+    }
+
+    /**
+     * @return отменённая запись или null
+     */
+    public E cancel(String id) {
+        Entry<E> entry = index.remove(id);
+        if (entry == null) {
+            return null;
+        }
+        bucket(entry.level(), entry.slot()).remove(id);
+        return entry.value();
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * На сколько вперёд от текущего момента колесо с таким тиком гарантированно примет запись
+     */
+    public static long range(long tickMs) {
+        long topSlotSpan = tickMs;
+        for (int level = 1; level < LEVELS; level++) {
+            topSlotSpan = Math.multiplyExact(topSlotSpan, SLOTS);
+        }
+        return topSlotSpan * (SLOTS - 1);
+    }
+
+    /**
+     * Прокрутить колесо до nowMs, отдавая записи с наступившим сроком в порядке тиков
+     */
+    public void advance(long nowMs, Consumer<E> expired) {
+        while (currentTime + tickMs <= nowMs) {
+            currentTime += tickMs;
+            // Сначала старшие уровни: спущенные записи могут попасть в ячейку младшего, которую разбираем следом
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if (currentTime % slotSpans[level] == 0) {
+                    cascade(level, slot(level, currentTime));
+                }
+            }
+            Map<String, Entry<E>> bucket = bucket(0, slot(0, currentTime));
+            if (!bucket.isEmpty()) {
+                for (Entry<E> entry : bucket.values()) {
+                    index.remove(entry.id());
+                    expired.accept(entry.value());
+                }
+                bucket.clear();
+            }
+        }
+    }
+
+    private void cascade(int level, int slot) {
+        Map<String, Entry<E>> bucket = bucket(level, slot);
+        if (bucket.isEmpty()) {
+            return;
+        }
+        List<Entry<E>> entries = new ArrayList<>(bucket.values());
+        bucket.clear();
+        for (Entry<E> entry : entries) {
+            index.remove(entry.id());
+            // Срок внутри этой ячейки, то есть не раньше currentTime — запись ляжет на младший уровень
+            if (!insert(entry.id(), entry.deadline(), entry.value())) {
+                // Срок ровно сейчас: в текущую ячейку нулевого уровня, её advance разберёт в этом же тике
+                Entry<E> due = new Entry<>(entry.id(), entry.deadline(), entry.value(), 0, slot(0, currentTime));
+                bucket(0, due.slot()).put(due.id(), due);
+                index.put(due.id(), due);
+            }
+        }
+    }
+
+    private boolean insert(String id, long deadline, E value) {
+        // Ячейка срабатывает в начале своего интервала, поэтому срок округляем вверх до тика
+        long due = Math.ceilDiv(deadline, tickMs) * tickMs;
+        if (due <= currentTime) {
+            return false;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            // Номера ячеек, а не разница во времени: текущая ячейка уровня могла пройти наполовину
+            if (due / slotSpans[level] - currentTime / slotSpans[level] < SLOTS) {
+                Entry<E> entry = new Entry<>(id, deadline, value, level, slot(level, due));
+                bucket(level, entry.slot()).put(id, entry);
+                index.put(id, entry);
+                return true;
+            }
+        }
+        throw new IllegalArgumentException("Deadline " + deadline + " is beyond the timing wheel horizon");
+    }
+
+    private Map<String, Entry<E>> bucket(int level, int slot) {
+        return wheels.get(level).get(slot);
+    }
+
+    private int slot(int level, long time) {
+        return (int) Math.floorMod(time / slotSpans[level], (long) SLOTS);
+    }
+}
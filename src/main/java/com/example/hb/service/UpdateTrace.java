@@ -0,0 +1,34 @@
+package com.example.hb.service;
+
+import java.util.function.Supplier;
+
+/**
+ * Апдейт, который сейчас обрабатывается: chatId и updateId для событий JFR (см. BotEvents).
+ * Хранится в ThreadLocal; очереди бота (TelegramSendScheduler, PriorityTaskExecutor) запоминают его
+ * при постановке задачи и восстанавливают при выполнении, так что один апдейт виден от получения
+ * до последнего вызова API, на каком бы потоке тот ни выполнялся.
+ */
+public record UpdateTrace(long chatId, long updateId) {
+
+    /** Работа не по апдейту: рассылка, отложенная доставка, предзагрузка */
+    public static final UpdateTrace NONE = new UpdateTrace(0, 0);
+
+    private static final ThreadLocal<UpdateTrace> CURRENT = ThreadLocal.withInitial(() -> NONE);
+
+    public static UpdateTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Выполнить действие от имени апдейта и вернуть потоку прежний контекст
+     */
+    public static <T> T with(UpdateTrace trace, Supplier<T> action) {
+        UpdateTrace previous = CURRENT.get();
+        CURRENT.set(trace);
+        try {
+            return action.get();
+        } finally {
+            CURRENT.set(previous);
+        }
+    }
+}
@@ -1,13 +1,35 @@
 package com.example.hb;
 
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"telegram.cache.file=target/test-file-id-cache.properties",
+        "telegram.broadcast.file=target/test-subscribers.txt",
+        "telegram.delivery.file=target/test-deliveries.txt"})
 class ReHbApplicationTests {
 
+    @Autowired
+    private PrometheusMeterRegistry prometheusMeterRegistry;
+
     @Test
     void contextLoads() {
     }
 
+    @Test
+    void exposesBotMetricsInPrometheusFormat() {
+        String scrape = prometheusMeterRegistry.scrape();
+
+        assertTrue(scrape.contains("bot_route_latency_seconds_bucket{route=\"joke\""), scrape);
+        assertTrue(scrape.contains("bot_updates_queue_depth"));
+        assertTrue(scrape.contains("telegram_fileid_cache_lookups_total{result=\"miss\"}"));
+        assertTrue(scrape.contains("telegram_upload_size_bytes_count{kind=\"video\"}"));
+        assertTrue(scrape.contains("telegram_preload_duration_seconds_count"));
+        assertTrue(scrape.contains("bot_startup_ready_seconds"));
+        assertTrue(scrape.contains("bot_executor_queued{priority=\"background\"}"));
+    }
+
 }
@@ -0,0 +1,133 @@
+package com.example.hb.bot;
+
+import com.example.hb.config.RouteProperties;
+import com.example.hb.config.TelegramBotConfig;
+import com.example.hb.service.FileIdCacheService;
+import com.example.hb.service.InMemoryLeaseStore;
+import com.example.hb.service.JournalFileIdStore;
+import com.example.hb.service.LeaderElection;
+import com.example.hb.service.MediaDigestService;
+import com.example.hb.service.MediaStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BotReadinessTest {
+
+    private static final String MEDIA_PATH = "media/IMG_0128.MOV";
+
+    @TempDir
+    Path tempDir;
+
+    private FileIdCacheService cache;
+    private MediaStore mediaStore;
+    private RouteTable routeTable;
+
+    @BeforeEach
+    void setUp() {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        mediaStore = new MediaStore(resolver, "media", tempDir.resolve("media").toString());
+        cache = new FileIdCacheService(new SimpleMeterRegistry(), new MediaDigestService(mediaStore),
+                new JournalFileIdStore(tempDir.resolve("cache.properties"), 60_000, 100), 600_000, 1000);
+
+        RouteProperties properties = new RouteProperties();
+        properties.getRoutes().put("video", mediaRoute(MEDIA_PATH));
+        properties.getRoutes().put("gone", mediaRoute("media/deleted.mp4"));
+        routeTable = new RouteTable(properties);
+    }
+
+    @Test
+    void readyOnlyAfterRegistrationAndWarmCache() {
+        BotReadiness readiness = readiness(true, 300_000);
+        assertFalse(readiness.isReady());
+
+        readiness.registered();
+        readiness.preloadStarted(1);
+        BotReadiness.Report report = readiness.report();
+        assertFalse(report.ready());
+        assertEquals(Map.of("video", "cold", "gone", "missing"), report.details().get("media"));
+        assertEquals("0/1", report.details().get("preloadProgress"));
+
+        cache.saveFileId(MEDIA_PATH, "FILE_ID");
+        readiness.preloadUploaded();
+        readiness.preloadFinished();
+        assertTrue(readiness.isReady());
+
+        // Инвалидация File ID уже готовую реплику из балансировки не выводит
+        cache.removeFileId(MEDIA_PATH);
+        assertTrue(readiness.isReady());
+    }
+
+    @Test
+    void failedRegistrationIsNeverReady() {
+        BotReadiness readiness = readiness(true, 0);
+        cache.saveFileId(MEDIA_PATH, "FILE_ID");
+        readiness.registrationFailed("Unauthorized");
+
+        BotReadiness.Report report = readiness.report();
+        assertFalse(report.ready());
+        assertEquals("failed", report.details().get("registration"));
+        assertEquals("Unauthorized", report.details().get("registrationError"));
+    }
+
+    @Test
+    void doesNotWaitForMediaNobodyWillUpload() {
+        BotReadiness readiness = readiness(true, 300_000);
+        readiness.registered();
+        readiness.preloadStarted(1);
+        readiness.preloadFailed(routeTable.getMediaRoutes().get(0));
+        readiness.preloadFinished();
+        assertTrue(readiness.isReady());
+
+        BotReadiness skipped = readiness(true, 300_000);
+        skipped.registered();
+        skipped.preloadSkipped();
+        assertTrue(skipped.isReady());
+    }
+
+    @Test
+    void warmupTimeoutLetsColdReplicaServe() {
+        BotReadiness readiness = readiness(true, 0);
+        readiness.registered();
+        BotReadiness.Report report = readiness.report();
+        assertTrue(report.ready());
+        assertEquals("timed out", report.details().get("warmup"));
+    }
+
+    @Test
+    void pollingFollowerIsStandby() {
+        BotReadiness readiness = readiness(false, 300_000);
+        cache.saveFileId(MEDIA_PATH, "FILE_ID");
+
+        BotReadiness.Report report = readiness.report();
+        assertTrue(report.ready());
+        assertEquals("standby", report.details().get("registration"));
+    }
+
+    private BotReadiness readiness(boolean webhook, long warmupTimeoutMs) {
+        TelegramBotConfig config = new TelegramBotConfig();
+        ReflectionTestUtils.setField(config, "mode", webhook ? "webhook" : "polling");
+        LeaderElection election = new LeaderElection(new InMemoryLeaseStore(), new SimpleMeterRegistry(),
+                "test", 10_000, 3_000);
+        return new BotReadiness(config, routeTable, cache, mediaStore, election, warmupTimeoutMs);
+    }
+
+    private static RouteProperties.RouteDefinition mediaRoute(String mediaPath) {
+        RouteProperties.RouteDefinition definition = new RouteProperties.RouteDefinition();
+        definition.setAction(RouteAction.MEDIA);
+        definition.setTriggers(List.of(mediaPath.substring(mediaPath.indexOf('/') + 1)));
+        definition.setMediaPath(mediaPath);
+        return definition;
+    }
+}
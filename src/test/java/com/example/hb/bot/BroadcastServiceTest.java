@@ -0,0 +1,188 @@
+package com.example.hb.bot;
+
+import com.example.hb.config.RouteProperties;
+import com.example.hb.config.TelegramBotConfig;
+import com.example.hb.service.FileIdCacheService;
+import com.example.hb.service.InMemoryLeaseStore;
+import com.example.hb.service.JournalFileIdStore;
+import com.example.hb.service.JournalSubscriberStore;
+import com.example.hb.service.LeaderElection;
+import com.example.hb.service.MediaDigestService;
+import com.example.hb.service.MediaStore;
+import com.example.hb.service.PriorityTaskExecutor;
+import com.example.hb.service.StartupTimings;
+import com.example.hb.service.SubscriberRegistry;
+import com.example.hb.service.TelegramSendScheduler;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Рассылка против заглушки Bot API: один чат заблокировал бота, остальные получают видео по File ID
+ */
+class BroadcastServiceTest {
+
+    private static final String TOKEN = "123:broadcast";
+    private static final long BLOCKED_CHAT = 13;
+    private static final Pattern CHAT_ID = Pattern.compile("name=\"chat_id\"\r\n(?:.+\r\n)*\r\n(-?\\d+)");
+
+    @TempDir
+    Path tempDir;
+
+    private final List<Long> recipients = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private UpdateDispatcher dispatcher;
+    private TelegramSendScheduler scheduler;
+    private LeaderElection election;
+    private SubscriberRegistry subscribers;
+    private MeterRegistry meterRegistry;
+    private BroadcastService broadcast;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        startServer();
+        meterRegistry = new SimpleMeterRegistry();
+        subscribers = new SubscriberRegistry(new JournalSubscriberStore(tempDir.resolve("subscribers.txt")),
+                meterRegistry, 100);
+        LongStream.rangeClosed(1, 20).forEach(subscribers::subscribe);
+        election = new LeaderElection(new InMemoryLeaseStore(), meterRegistry, "test", 10_000, 3_000);
+        election.start(new LeaderElection.Listener() {
+            @Override
+            public void onElected() {
+            }
+
+            @Override
+            public void onRevoked() {
+            }
+        });
+        while (!election.isLeader()) {
+            Thread.sleep(10);
+        }
+        broadcast = newBroadcast();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        server.stop(0);
+        dispatcher.destroy();
+        scheduler.destroy();
+        election.destroy();
+    }
+
+    @Test
+    void sendsToEverySubscriberAndDropsBlockedChats() throws Exception {
+        broadcast.start("video");
+        broadcast.tick();
+
+        assertEquals(LongStream.rangeClosed(1, 20).boxed().toList(), recipients.stream().sorted().toList());
+        assertEquals(19, subscribers.count());
+        BroadcastService.Checkpoint checkpoint = BroadcastService.Checkpoint.decode(subscribers.loadCheckpoint());
+        assertEquals(BroadcastService.Status.FINISHED, checkpoint.status());
+        assertEquals(20, checkpoint.total());
+        assertEquals(19, checkpoint.sent());
+        assertEquals(1, checkpoint.blocked());
+        assertEquals(20L, checkpoint.lastChatId());
+        assertEquals(1.0, meterRegistry.get("bot.broadcast.messages").tag("result", "blocked").counter().count());
+    }
+
+    @Test
+    void resumesFromCheckpointAfterRestart() throws Exception {
+        BroadcastService.Checkpoint started = broadcast.start("video");
+        // Прошлый процесс успел обработать чаты 1..10 и сохранить состояние
+        subscribers.saveCheckpoint(new BroadcastService.Checkpoint(started.jobId(), "video", started.fileId(), true,
+                BroadcastService.Status.RUNNING, 10, 20, 9, 0, 1).encode());
+
+        newBroadcast().tick();
+
+        assertEquals(LongStream.rangeClosed(11, 20).boxed().toList(), recipients.stream().sorted().toList());
+        BroadcastService.Checkpoint checkpoint = BroadcastService.Checkpoint.decode(subscribers.loadCheckpoint());
+        assertEquals(BroadcastService.Status.FINISHED, checkpoint.status());
+        assertEquals(20, checkpoint.processed());
+    }
+
+    @Test
+    void rejectsUnknownRouteAndConcurrentBroadcast() {
+        assertThrows(IllegalArgumentException.class, () -> broadcast.start("missing"));
+        broadcast.start("video");
+        assertThrows(IllegalStateException.class, () -> broadcast.start("video"));
+        assertEquals("cancelled", broadcast.cancel().toDetails().get("status"));
+        assertTrue(recipients.isEmpty());
+    }
+
+    private BroadcastService newBroadcast() {
+        TelegramBotConfig config = new TelegramBotConfig();
+        ReflectionTestUtils.setField(config, "botToken", TOKEN);
+        ReflectionTestUtils.setField(config, "botUsername", "broadcast_bot");
+        ReflectionTestUtils.setField(config, "apiUrl", "http://localhost:" + server.getAddress().getPort() + "/");
+
+        RouteProperties.RouteDefinition video = new RouteProperties.RouteDefinition();
+        video.setAction(RouteAction.MEDIA);
+        video.setTriggers(List.of("видео"));
+        video.setMediaPath("media/IMG_0128.MOV");
+        video.setFileId("BROADCAST_FILE_ID");
+        RouteProperties properties = new RouteProperties();
+        properties.getRoutes().put("video", video);
+        RouteTable routeTable = new RouteTable(properties);
+        ReplyTemplates replyTemplates = new ReplyTemplates(routeTable);
+
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        MediaStore mediaStore = new MediaStore(resolver, "media", tempDir.resolve("media").toString());
+        FileIdCacheService cache = new FileIdCacheService(meterRegistry, new MediaDigestService(mediaStore),
+                new JournalFileIdStore(tempDir.resolve("cache.properties"), 60_000, 100), 600_000, 1000);
+        if (dispatcher == null) {
+            dispatcher = new UpdateDispatcher(meterRegistry, 4, 100);
+            scheduler = new TelegramSendScheduler(meterRegistry, 1000, 1000, 1000, 1000, 1000, 0, 2);
+            scheduler.afterPropertiesSet();
+        }
+        EvgenBot bot = new EvgenBot(config, routeTable, replyTemplates, cache, mediaStore, dispatcher,
+                new UpdateCoalescer(meterRegistry, false, 0), scheduler,
+                new PriorityTaskExecutor(meterRegistry, 8, 4, 2, 100), subscribers,
+                new StartupTimings(meterRegistry), meterRegistry);
+        return new BroadcastService(bot, scheduler, subscribers, cache, routeTable, replyTemplates, election,
+                meterRegistry, 4, 3, 0, 60_000);
+    }
+
+    private void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            Matcher matcher = CHAT_ID.matcher(body);
+            long chatId = matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+            recipients.add(chatId);
+            String reply = chatId == BLOCKED_CHAT
+                    ? "{\"ok\":false,\"error_code\":403,\"description\":\"Forbidden: bot was blocked by the user\"}"
+                    : """
+                    {"ok":true,"result":{"message_id":1,"date":0,"chat":{"id":%d,"type":"private"},
+                    "video":{"file_id":"BROADCAST_FILE_ID","file_unique_id":"u1","width":1,"height":1,"duration":1}}}"""
+                    .formatted(chatId);
+            byte[] response = reply.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(chatId == BLOCKED_CHAT ? 403 : 200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.hb.bot;
+
+import com.example.hb.config.RouteProperties;
+import com.example.hb.config.TelegramBotConfig;
+import com.example.hb.service.DeliveryStore;
+import com.example.hb.service.FileIdCacheService;
+import com.example.hb.service.InMemoryLeaseStore;
+import com.example.hb.service.JournalDeliveryStore;
+import com.example.hb.service.JournalFileIdStore;
+import com.example.hb.service.JournalSubscriberStore;
+import com.example.hb.service.LeaderElection;
+import com.example.hb.service.MediaDigestService;
+import com.example.hb.service.MediaStore;
+import com.example.hb.service.PriorityTaskExecutor;
+import com.example.hb.service.ScheduledDelivery;
+import com.example.hb.service.StartupTimings;
+import com.example.hb.service.SubscriberRegistry;
+import com.example.hb.service.TelegramSendScheduler;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Тики DeliveryScheduler вызываются напрямую (без потока-тикера), ответы уходят в заглушку Bot API
+ */
+class DeliverySchedulerTest {
+
+    private static final String TOKEN = "123:delivery";
+    private static final long TICK_MS = 50;
+    private static final long MAX_LATENESS_MS = 60_000;
+    private static final Pattern CHAT_ID = Pattern.compile("\"chat_id\"\\s*:\\s*\"?(-?\\d+)");
+
+    @TempDir
+    Path tempDir;
+
+    private final List<Long> recipients = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private UpdateDispatcher dispatcher;
+    private TelegramSendScheduler sendScheduler;
+    private LeaderElection election;
+    private MeterRegistry meterRegistry;
+    private DeliveryStore store;
+    private DeliveryScheduler deliveries;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        startServer();
+        meterRegistry = new SimpleMeterRegistry();
+        election = new LeaderElection(new InMemoryLeaseStore(), meterRegistry, "test", 10_000, 3_000);
+        election.start(new LeaderElection.Listener() {
+            @Override
+            public void onElected() {
+            }
+
+            @Override
+            public void onRevoked() {
+            }
+        });
+        await(election::isLeader);
+        store = new JournalDeliveryStore(tempDir.resolve("deliveries.txt"));
+        deliveries = newScheduler();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        server.stop(0);
+        dispatcher.destroy();
+        sendScheduler.destroy();
+        election.destroy();
+        store.close();
+    }
+
+    @Test
+    void firesOnTime() throws Exception {
+        long fireAt = System.currentTimeMillis() + 300;
+        ScheduledDelivery delivery = schedule(42, fireAt);
+
+        deliveries.tick();
+        assertTrue(recipients.isEmpty());
+        assertEquals(1.0, pending());
+
+        Thread.sleep(Math.max(0, fireAt - System.currentTimeMillis()) + TICK_MS);
+        deliveries.tick();
+        await(() -> sent() == 1.0);
+        assertEquals(List.of(42L), recipients);
+        assertNull(store.get(delivery.id()));
+        assertEquals(0.0, pending());
+    }
+
+    @Test
+    void dropsDeliveryThatIsTooLate() {
+        // Бот лежал дольше max-lateness: поздравление уже неуместно
+        ScheduledDelivery late = new ScheduledDelivery("late", 42, "greeting",
+                System.currentTimeMillis() - 2 * MAX_LATENESS_MS, "UTC");
+        store.put(late);
+
+        deliveries.tick();
+
+        assertNull(store.get(late.id()));
+        assertEquals(1.0, counter("expired"));
+        assertTrue(recipients.isEmpty());
+    }
+
+    @Test
+    void skipsDeliveryCancelledInTheStore() throws Exception {
+        deliveries.tick();
+        long fireAt = System.currentTimeMillis() + 200;
+        ScheduledDelivery cancelled = schedule(13, fireAt);
+        schedule(42, fireAt);
+        // Отменили на другой реплике: колесо лидера об этом не знает
+        store.remove(cancelled.id());
+
+        Thread.sleep(Math.max(0, fireAt - System.currentTimeMillis()) + TICK_MS);
+        deliveries.tick();
+        await(() -> sent() == 1.0);
+
+        assertEquals(List.of(42L), recipients);
+        assertEquals(0.0, counter("failed"));
+        assertEquals(0.0, pending());
+    }
+
+    @Test
+    void releasesWheelWhenLeadershipIsLost() {
+        ScheduledDelivery delivery = schedule(42, System.currentTimeMillis() + 3_600_000);
+        deliveries.tick();
+        assertEquals(1.0, pending());
+
+        election.destroy();
+        deliveries.tick();
+
+        assertEquals(0.0, pending());
+        // Доставка остаётся в хранилище — её отправит новый лидер
+        assertEquals(delivery, store.get(delivery.id()));
+        assertTrue(recipients.isEmpty());
+    }
+
+    private ScheduledDelivery schedule(long chatId, long fireAt) {
+        return deliveries.schedule(chatId, "greeting",
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(fireAt), ZoneOffset.UTC), ZoneOffset.UTC);
+    }
+
+    private double pending() {
+        return meterRegistry.get("bot.delivery.pending").gauge().value();
+    }
+
+    private double sent() {
+        return counter("sent");
+    }
+
+    private double counter(String result) {
+        return meterRegistry.get("bot.delivery.deliveries").tag("result", result).counter().count();
+    }
+
+    private DeliveryScheduler newScheduler() {
+        TelegramBotConfig config = new TelegramBotConfig();
+        ReflectionTestUtils.setField(config, "botToken", TOKEN);
+        ReflectionTestUtils.setField(config, "botUsername", "delivery_bot");
+        ReflectionTestUtils.setField(config, "apiUrl", "http://localhost:" + server.getAddress().getPort() + "/");
+
+        RouteProperties.RouteDefinition greeting = new RouteProperties.RouteDefinition();
+        greeting.setTriggers(List.of("привет"));
+        greeting.setText("С днём рождения!");
+        RouteProperties properties = new RouteProperties();
+        properties.getRoutes().put("greeting", greeting);
+        RouteTable routeTable = new RouteTable(properties);
+
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        MediaStore mediaStore = new MediaStore(resolver, "media", tempDir.resolve("media").toString());
+        FileIdCacheService cache = new FileIdCacheService(meterRegistry, new MediaDigestService(mediaStore),
+                new JournalFileIdStore(tempDir.resolve("cache.properties"), 60_000, 100), 600_000, 1000);
+        dispatcher = new UpdateDispatcher(meterRegistry, 4, 100);
+        sendScheduler = new TelegramSendScheduler(meterRegistry, 1000, 1000, 1000, 1000, 1000, 0, 2);
+        sendScheduler.afterPropertiesSet();
+        EvgenBot bot = new EvgenBot(config, routeTable, new ReplyTemplates(routeTable), cache, mediaStore,
+                dispatcher, new UpdateCoalescer(meterRegistry, false, 0), sendScheduler,
+                new PriorityTaskExecutor(meterRegistry, 8, 4, 2, 100),
+                new SubscriberRegistry(new JournalSubscriberStore(tempDir.resolve("subscribers.txt")),
+                        meterRegistry, 100),
+                new StartupTimings(meterRegistry), meterRegistry);
+        return new DeliveryScheduler(bot, routeTable, store, election, meterRegistry,
+                TICK_MS, 50, MAX_LATENESS_MS, 0);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in 10 s");
+            Thread.sleep(10);
+        }
+    }
+
+    private void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            Matcher matcher = CHAT_ID.matcher(body);
+            long chatId = matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+            recipients.add(chatId);
+            byte[] response = """
+                    {"ok":true,"result":{"message_id":1,"date":0,"chat":{"id":%d,"type":"private"},"text":"ok"}}"""
+                    .formatted(chatId).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+    }
+}
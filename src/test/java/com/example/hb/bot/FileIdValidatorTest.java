@@ -0,0 +1,187 @@
+package com.example.hb.bot;
+
+import com.example.hb.config.RouteProperties;
+import com.example.hb.config.TelegramBotConfig;
+import com.example.hb.service.FileIdCacheService;
+import com.example.hb.service.InMemoryLeaseStore;
+import com.example.hb.service.JournalFileIdStore;
+import com.example.hb.service.JournalSubscriberStore;
+import com.example.hb.service.LeaderElection;
+import com.example.hb.service.MediaDigestService;
+import com.example.hb.service.MediaStore;
+import com.example.hb.service.PriorityTaskExecutor;
+import com.example.hb.service.StartupTimings;
+import com.example.hb.service.SubscriberRegistry;
+import com.example.hb.service.TelegramSendScheduler;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Проверка кэша против заглушки Bot API: STALE — недействительный File ID, остальные getFile принимает
+ */
+class FileIdValidatorTest {
+
+    private static final String TOKEN = "123:validator";
+    private static final String VIDEO = "media/IMG_0128.MOV";
+    private static final String MONOPOLY = "media/IMG_0451.MP4";
+    private static final Pattern FILE_ID = Pattern.compile("\"file_id\"\\s*:\\s*\"([^\"]+)\"");
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> methods = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private MeterRegistry meterRegistry;
+    private UpdateDispatcher dispatcher;
+    private TelegramSendScheduler scheduler;
+    private PriorityTaskExecutor executor;
+    private LeaderElection election;
+    private FileIdCacheService cache;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        startServer();
+        meterRegistry = new SimpleMeterRegistry();
+        election = new LeaderElection(new InMemoryLeaseStore(), meterRegistry, "test", 10_000, 3_000);
+        election.start(new LeaderElection.Listener() {
+            @Override
+            public void onElected() {
+            }
+
+            @Override
+            public void onRevoked() {
+            }
+        });
+        while (!election.isLeader()) {
+            Thread.sleep(10);
+        }
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        server.stop(0);
+        dispatcher.destroy();
+        scheduler.destroy();
+        executor.destroy();
+        election.destroy();
+    }
+
+    @Test
+    void replacesInvalidFileIdAndKeepsValidOne() throws Exception {
+        FileIdValidator validator = newValidator("42");
+        cache.saveFileId(VIDEO, "STALE");
+        cache.saveFileId(MONOPOLY, "GOOD");
+
+        validator.validateAll();
+
+        assertEquals("FRESH", cache.peekFileId(VIDEO));
+        assertEquals("GOOD", cache.peekFileId(MONOPOLY));
+        assertEquals(List.of("getfile", "getfile", "sendvideo"), methods.stream().sorted().toList());
+        assertEquals(1.0, meterRegistry.get("telegram.fileid.validations").tag("result", "valid").counter().count());
+        assertEquals(1.0, meterRegistry.get("telegram.fileid.validations").tag("result", "invalid").counter().count());
+        assertEquals(1.0, meterRegistry.get("telegram.fileid.refreshes").tag("result", "uploaded").counter().count());
+    }
+
+    @Test
+    void removesInvalidFileIdWithoutPreloadChat() throws Exception {
+        FileIdValidator validator = newValidator("");
+        cache.saveFileId(VIDEO, "STALE");
+
+        validator.validateAll();
+
+        assertNull(cache.peekFileId(VIDEO));
+        assertEquals(List.of("getfile"), methods);
+        assertEquals(1.0, meterRegistry.get("telegram.fileid.refreshes").tag("result", "removed").counter().count());
+    }
+
+    private FileIdValidator newValidator(String chatId) {
+        TelegramBotConfig config = new TelegramBotConfig();
+        ReflectionTestUtils.setField(config, "botToken", TOKEN);
+        ReflectionTestUtils.setField(config, "botUsername", "validator_bot");
+        ReflectionTestUtils.setField(config, "apiUrl", "http://localhost:" + server.getAddress().getPort() + "/");
+
+        RouteProperties properties = new RouteProperties();
+        properties.getRoutes().put("video", mediaRoute("видео", VIDEO));
+        properties.getRoutes().put("monopoly", mediaRoute("монополия", MONOPOLY));
+        RouteTable routeTable = new RouteTable(properties);
+        ReplyTemplates replyTemplates = new ReplyTemplates(routeTable);
+
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        MediaStore mediaStore = new MediaStore(resolver, "media", tempDir.resolve("media").toString());
+        cache = new FileIdCacheService(meterRegistry, new MediaDigestService(mediaStore),
+                new JournalFileIdStore(tempDir.resolve("cache.properties"), 60_000, 100), 600_000, 1000);
+        dispatcher = new UpdateDispatcher(meterRegistry, 4, 100);
+        scheduler = new TelegramSendScheduler(meterRegistry, 1000, 1000, 1000, 1000, 1000, 0, 2);
+        scheduler.afterPropertiesSet();
+        executor = new PriorityTaskExecutor(meterRegistry, 8, 4, 2, 100);
+        SubscriberRegistry subscribers = new SubscriberRegistry(
+                new JournalSubscriberStore(tempDir.resolve("subscribers.txt")), meterRegistry, 100);
+        EvgenBot bot = new EvgenBot(config, routeTable, replyTemplates, cache, mediaStore, dispatcher,
+                new UpdateCoalescer(meterRegistry, false, 0), scheduler, executor, subscribers,
+                new StartupTimings(meterRegistry), meterRegistry);
+        return new FileIdValidator(bot, routeTable, cache, mediaStore, scheduler, executor, election, meterRegistry,
+                chatId, false, 0, 60_000, 0.2, 0);
+    }
+
+    private static RouteProperties.RouteDefinition mediaRoute(String trigger, String mediaPath) {
+        RouteProperties.RouteDefinition route = new RouteProperties.RouteDefinition();
+        route.setAction(RouteAction.MEDIA);
+        route.setTriggers(List.of(trigger));
+        route.setMediaPath(mediaPath);
+        return route;
+    }
+
+    private void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            String method = path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+            methods.add(method);
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            Matcher matcher = FILE_ID.matcher(body);
+            String fileId = matcher.find() ? matcher.group(1) : "";
+            int status = 200;
+            String reply;
+            if (method.equals("getfile") && fileId.equals("STALE")) {
+                status = 400;
+                reply = "{\"ok\":false,\"error_code\":400,"
+                        + "\"description\":\"Bad Request: wrong file identifier/HTTP URL specified\"}";
+            } else if (method.equals("getfile")) {
+                reply = "{\"ok\":true,\"result\":{\"file_id\":\"%s\",\"file_unique_id\":\"u1\",\"file_size\":1}}"
+                        .formatted(fileId);
+            } else {
+                reply = """
+                        {"ok":true,"result":{"message_id":1,"date":0,"chat":{"id":42,"type":"private"},
+                        "video":{"file_id":"FRESH","file_unique_id":"u2","width":1,"height":1,"duration":1}}}""";
+            }
+            byte[] response = reply.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+    }
+}
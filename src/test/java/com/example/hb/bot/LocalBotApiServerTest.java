@@ -0,0 +1,135 @@
+package com.example.hb.bot;
+
+import com.example.hb.config.RouteProperties;
+import com.example.hb.config.TelegramBotConfig;
+import com.example.hb.service.FileIdCacheService;
+import com.example.hb.service.JournalFileIdStore;
+import com.example.hb.service.JournalSubscriberStore;
+import com.example.hb.service.MediaDigestService;
+import com.example.hb.service.MediaStore;
+import com.example.hb.service.PriorityTaskExecutor;
+import com.example.hb.service.StartupTimings;
+import com.example.hb.service.SubscriberRegistry;
+import com.example.hb.service.TelegramSendScheduler;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Бот против заглушки своего Bot API сервера: проверяем адрес запросов и то,
+ * что медиа уходит file:// путём, а не multipart-загрузкой файла.
+ */
+class LocalBotApiServerTest {
+
+    private static final String TOKEN = "123:local";
+    private static final String MEDIA_PATH = "media/IMG_0128.MOV";
+    private static final String VIDEO_REPLY = """
+            {"ok":true,"result":{"message_id":1,"date":0,"chat":{"id":42,"type":"private"},
+            "video":{"file_id":"LOCAL_FILE_ID","file_unique_id":"u1","width":1,"height":1,"duration":1}}}""";
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> paths = new CopyOnWriteArrayList<>();
+    private final List<String> bodies = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private UpdateDispatcher dispatcher;
+    private TelegramSendScheduler scheduler;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        server.stop(0);
+        dispatcher.destroy();
+        scheduler.destroy();
+    }
+
+    @Test
+    void uploadsMediaAsLocalFilePath() throws Exception {
+        startServer();
+        MediaStore mediaStore = newMediaStore();
+        FileIdCacheService cache = newCache();
+        EvgenBot bot = newBot("http://localhost:" + server.getAddress().getPort() + "/", true, cache, mediaStore);
+
+        String fileId = bot.uploadAndCacheMediaSync(42L, MEDIA_PATH, "IMG_0128.MOV");
+
+        assertEquals("LOCAL_FILE_ID", fileId);
+        assertEquals("LOCAL_FILE_ID", cache.getFileId(MEDIA_PATH));
+        assertEquals(List.of("/bot" + TOKEN + "/sendvideo"), paths);
+        String fileUri = mediaStore.getPath(MEDIA_PATH).toAbsolutePath().toUri().toString();
+        assertTrue(bodies.get(0).contains(fileUri), bodies.get(0));
+        assertFalse(bodies.get(0).contains("filename=\"IMG_0128.MOV\""), "file content must not be uploaded");
+    }
+
+    @Test
+    void uploadsMultipartWhenLocalFilesDisabled() throws Exception {
+        startServer();
+        EvgenBot bot = newBot("http://localhost:" + server.getAddress().getPort(), false, newCache(),
+                newMediaStore());
+
+        assertEquals("LOCAL_FILE_ID", bot.uploadAndCacheMediaSync(42L, MEDIA_PATH, "IMG_0128.MOV"));
+        assertTrue(bodies.get(0).contains("filename=\"IMG_0128.MOV\""));
+    }
+
+    private void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            paths.add(exchange.getRequestURI().getPath());
+            bodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.ISO_8859_1));
+            byte[] response = VIDEO_REPLY.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+    }
+
+    private MediaStore newMediaStore() {
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        return new MediaStore(resolver, "media", tempDir.resolve("media").toString());
+    }
+
+    private FileIdCacheService newCache() {
+        return new FileIdCacheService(new SimpleMeterRegistry(), new MediaDigestService(newMediaStore()),
+                new JournalFileIdStore(tempDir.resolve("cache.properties"), 60_000, 100), 600_000, 1000);
+    }
+
+    private EvgenBot newBot(String apiUrl, boolean localFiles, FileIdCacheService cache, MediaStore mediaStore) {
+        TelegramBotConfig config = new TelegramBotConfig();
+        ReflectionTestUtils.setField(config, "botToken", TOKEN);
+        ReflectionTestUtils.setField(config, "botUsername", "local_bot");
+        ReflectionTestUtils.setField(config, "apiUrl", apiUrl);
+        ReflectionTestUtils.setField(config, "localFiles", localFiles);
+
+        RouteProperties properties = new RouteProperties();
+        properties.setKeyboard(List.of(List.of("малышка оторва")));
+        RouteTable routeTable = new RouteTable(properties);
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        dispatcher = new UpdateDispatcher(meterRegistry, 4, 100);
+        scheduler = new TelegramSendScheduler(meterRegistry, 30, 1, 3, 20, 3, 0, 2);
+        scheduler.afterPropertiesSet();
+        return new EvgenBot(config, routeTable, new ReplyTemplates(routeTable), cache, mediaStore, dispatcher,
+                new UpdateCoalescer(meterRegistry, true, 2000), scheduler,
+                new PriorityTaskExecutor(meterRegistry, 8, 4, 2, 100),
+                new SubscriberRegistry(new JournalSubscriberStore(tempDir.resolve("subscribers.txt")), meterRegistry, 100),
+                new StartupTimings(meterRegistry), meterRegistry);
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.hb.bot;
+
+import com.example.hb.config.RouteProperties;
+import com.example.hb.config.TelegramBotConfig;
+import com.example.hb.service.FileIdCacheService;
+import com.example.hb.service.InMemoryLeaseStore;
+import com.example.hb.service.JournalFileIdStore;
+import com.example.hb.service.JournalSubscriberStore;
+import com.example.hb.service.LeaderElection;
+import com.example.hb.service.MediaDigestService;
+import com.example.hb.service.MediaStore;
+import com.example.hb.service.PriorityTaskExecutor;
+import com.example.hb.service.StartupTimings;
+import com.example.hb.service.SubscriberRegistry;
+import com.example.hb.service.TelegramSendScheduler;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Замена видео в наблюдаемом каталоге: лидер загружает новое содержимое до публикации, остальные реплики
+ * публикуют его по File ID из общего хранилища; удаление возвращает исходное
+ */
+class MediaWatcherTest {
+
+    private static final String VIDEO = "media/IMG_0128.MOV";
+
+    @TempDir
+    Path tempDir;
+
+    private final List<String> methods = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private UpdateDispatcher dispatcher;
+    private TelegramSendScheduler scheduler;
+    private PriorityTaskExecutor executor;
+    private MediaWatcher watcher;
+    private LeaderElection election;
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private FileIdCacheService cache;
+    private MediaStore mediaStore;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        watcher.destroy();
+        server.stop(0);
+        dispatcher.destroy();
+        scheduler.destroy();
+        executor.destroy();
+        election.destroy();
+    }
+
+    @Test
+    void uploadsNewContentBeforePublishingAndRevertsOnDelete() throws Exception {
+        election = new LeaderElection(new InMemoryLeaseStore(), meterRegistry, "test", 10_000, 3_000);
+        election.start(new LeaderElection.Listener() {
+            @Override
+            public void onElected() {
+            }
+
+            @Override
+            public void onRevoked() {
+            }
+        });
+        while (!election.isLeader()) {
+            Thread.sleep(10);
+        }
+        Path watchDir = startWatcher();
+
+        String bundledKey = mediaStore.getMediaFile(VIDEO).contentKey();
+        cache.saveFileId(VIDEO, "BUNDLED");
+        watcher.afterPropertiesSet();
+
+        byte[] replacement = "new congratulations".getBytes(StandardCharsets.UTF_8);
+        Files.write(watchDir.resolve("IMG_0128.MOV"), replacement);
+        await(() -> !bundledKey.equals(mediaStore.getMediaFile(VIDEO).contentKey()));
+
+        // К моменту публикации File ID нового содержимого уже есть — пользователь не ждёт загрузку
+        assertEquals("FRESH", cache.getFileId(VIDEO));
+        assertArrayEquals(replacement, Files.readAllBytes(mediaStore.getPath(VIDEO)));
+        assertEquals(List.of("sendvideo"), methods);
+
+        Files.delete(watchDir.resolve("IMG_0128.MOV"));
+        await(() -> bundledKey.equals(mediaStore.getMediaFile(VIDEO).contentKey()));
+
+        assertEquals("BUNDLED", cache.getFileId(VIDEO));
+        assertEquals(1.0, meterRegistry.get("telegram.media.reloads").tag("result", "uploaded").counter().count());
+        assertEquals(1.0, meterRegistry.get("telegram.media.reloads").tag("result", "reverted").counter().count());
+    }
+
+    @Test
+    void followerPublishesOnceLeaderUploaded() throws Exception {
+        // Выборы не запущены — реплика не лидер
+        election = new LeaderElection(new InMemoryLeaseStore(), meterRegistry, "test", 10_000, 3_000);
+        Path watchDir = startWatcher();
+        String bundledKey = mediaStore.getMediaFile(VIDEO).contentKey();
+        watcher.afterPropertiesSet();
+
+        Path replacement = watchDir.resolve("IMG_0128.MOV");
+        Files.writeString(replacement, "leader uploads this", StandardCharsets.UTF_8);
+        Thread.sleep(500);
+        assertEquals(bundledKey, mediaStore.getMediaFile(VIDEO).contentKey());
+
+        // File ID появился в общем хранилище — загрузил лидер
+        cache.saveContentFileId(MediaDigestService.computeContentKey(replacement), "FROM_LEADER");
+        await(() -> !bundledKey.equals(mediaStore.getMediaFile(VIDEO).contentKey()));
+
+        assertEquals("FROM_LEADER", cache.getFileId(VIDEO));
+        assertEquals(List.of(), methods);
+        assertEquals(1.0, meterRegistry.get("telegram.media.reloads").tag("result", "cached").counter().count());
+    }
+
+    private Path startWatcher() throws Exception {
+        startServer();
+        TelegramBotConfig config = new TelegramBotConfig();
+        ReflectionTestUtils.setField(config, "botToken", "123:watcher");
+        ReflectionTestUtils.setField(config, "botUsername", "watcher_bot");
+        ReflectionTestUtils.setField(config, "apiUrl", "http://localhost:" + server.getAddress().getPort() + "/");
+
+        RouteProperties.RouteDefinition video = new RouteProperties.RouteDefinition();
+        video.setAction(RouteAction.MEDIA);
+        video.setTriggers(List.of("видео"));
+        video.setMediaPath(VIDEO);
+        RouteProperties properties = new RouteProperties();
+        properties.getRoutes().put("video", video);
+        RouteTable routeTable = new RouteTable(properties);
+
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        mediaStore = new MediaStore(resolver, "media", tempDir.resolve("store").toString());
+        cache = new FileIdCacheService(meterRegistry, new MediaDigestService(mediaStore),
+                new JournalFileIdStore(tempDir.resolve("cache.properties"), 60_000, 100), 600_000, 1000);
+        dispatcher = new UpdateDispatcher(meterRegistry, 4, 100);
+        scheduler = new TelegramSendScheduler(meterRegistry, 1000, 1000, 1000, 1000, 1000, 0, 2);
+        scheduler.afterPropertiesSet();
+        executor = new PriorityTaskExecutor(meterRegistry, 8, 4, 2, 100);
+        EvgenBot bot = new EvgenBot(config, routeTable, new ReplyTemplates(routeTable), cache, mediaStore,
+                dispatcher, new UpdateCoalescer(meterRegistry, false, 0), scheduler, executor,
+                new SubscriberRegistry(new JournalSubscriberStore(tempDir.resolve("subscribers.txt")),
+                        meterRegistry, 100),
+                new StartupTimings(meterRegistry), meterRegistry);
+        Path watchDir = tempDir.resolve("watch");
+        watcher = new MediaWatcher(bot, mediaStore, cache, executor, election, meterRegistry, watchDir.toString(),
+                "media", "42", 100, 60_000);
+        return watchDir;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met in 10 s");
+            Thread.sleep(20);
+        }
+    }
+
+    private void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            methods.add(path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT));
+            exchange.getRequestBody().readAllBytes();
+            byte[] response = """
+                    {"ok":true,"result":{"message_id":1,"date":0,"chat":{"id":42,"type":"private"},
+                    "video":{"file_id":"FRESH","file_unique_id":"u1","width":1,"height":1,"duration":1}}}"""
+                    .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.hb.bot;
+
+import com.example.hb.config.RouteProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplyTemplateTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void preparedMessageSerializesLikeSendMessage() throws Exception {
+        KeyboardRow row = new KeyboardRow();
+        row.add("малышка оторва");
+        ReplyKeyboardMarkup keyboard = new ReplyKeyboardMarkup();
+        keyboard.setResizeKeyboard(true);
+        keyboard.setKeyboard(List.of(row));
+
+        ReplyTemplate template = ReplyTemplate.of(message("0", "Как я могу тебе \"помочь\"?", keyboard));
+        String prepared = objectMapper.writeValueAsString(template.forChat(-100123L));
+        String expected = objectMapper.writeValueAsString(message("-100123", "Как я могу тебе \"помочь\"?", keyboard));
+
+        assertEquals(objectMapper.readTree(expected), objectMapper.readTree(prepared));
+        assertEquals(SendMessage.PATH, template.forChat(1L).getMethod());
+    }
+
+    @Test
+    void mediaRouteWithoutMissingTextGetsDefaultReply() throws Exception {
+        RouteProperties.RouteDefinition video = new RouteProperties.RouteDefinition();
+        video.setAction(RouteAction.MEDIA);
+        video.setTriggers(List.of("видео"));
+        video.setMediaPath("media/deleted.mp4");
+        RouteProperties properties = new RouteProperties();
+        properties.getRoutes().put("video", video);
+        RouteTable routeTable = new RouteTable(properties);
+
+        PreparedSendMessage reply = new ReplyTemplates(routeTable).missingMedia(routeTable.resolve("видео"), 7L);
+
+        assertEquals("Медиафайл ещё не настроен.", objectMapper.readTree(reply.toJson()).get("text").asText());
+        assertEquals(7L, reply.getChatId());
+    }
+
+    private static SendMessage message(String chatId, String text, ReplyKeyboardMarkup keyboard) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId);
+        message.setText(text);
+        message.setReplyMarkup(keyboard);
+        return message;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.hb.bot;
+
+import com.example.hb.config.RouteProperties;
+import com.example.hb.config.RouteProperties.RouteDefinition;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouteTableTest {
+
+    @Test
+    void resolvesEveryTriggerOfRoute() {
+        RouteProperties properties = new RouteProperties();
+        properties.getRoutes().put("congratulations",
+                media(List.of("малышка оторва", "🎉 Поздравление"), "media/IMG_0128.MOV"));
+        properties.getRoutes().put("photo", media(List.of("фото"), "media/cake.JPG"));
+
+        RouteTable table = new RouteTable(properties);
+
+        Route route = table.resolve("🎉 Поздравление");
+        assertEquals("congratulations", route.id());
+        assertEquals(route, table.resolve("малышка оторва"));
+        assertEquals("IMG_0128.MOV", route.fileName());
+        assertTrue(route.video());
+        assertFalse(table.resolve("фото").video());
+        assertNull(table.resolve("неизвестно"));
+        assertEquals(2, table.getMediaRoutes().size());
+    }
+
+    @Test
+    void rejectsTriggerSharedByTwoRoutes() {
+        RouteProperties properties = new RouteProperties();
+        properties.getRoutes().put("a", media(List.of("кнопка"), "media/a.mp4"));
+        properties.getRoutes().put("b", media(List.of("кнопка"), "media/b.mp4"));
+
+        assertThrows(IllegalStateException.class, () -> new RouteTable(properties));
+    }
+
+    private static RouteDefinition media(List<String> triggers, String mediaPath) {
+        RouteDefinition definition = new RouteDefinition();
+        definition.setAction(RouteAction.MEDIA);
+        definition.setTriggers(triggers);
+        definition.setMediaPath(mediaPath);
+        return definition;
+    }
+}
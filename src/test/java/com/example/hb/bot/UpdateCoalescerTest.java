@@ -0,0 +1,79 @@
+package com.example.hb.bot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpdateCoalescerTest {
+
+    private static final Route MONOPOLY = route("monopoly");
+    private static final Route JOKE = route("joke");
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void collapsesRequestStillWaitingInQueue() {
+        UpdateCoalescer coalescer = new UpdateCoalescer(meterRegistry, true, 0);
+        int now = now();
+
+        assertTrue(coalescer.admit(1L, MONOPOLY, now));
+        assertFalse(coalescer.admit(1L, MONOPOLY, now));
+        // Другой чат и другой маршрут не схлопываются
+        assertTrue(coalescer.admit(2L, MONOPOLY, now));
+        assertTrue(coalescer.admit(1L, JOKE, now));
+
+        coalescer.started(1L, MONOPOLY);
+        assertTrue(coalescer.admit(1L, MONOPOLY, now));
+        assertEquals(1, coalesced("pending"));
+    }
+
+    @Test
+    void collapsesRepeatsWithinWindow() {
+        UpdateCoalescer coalescer = new UpdateCoalescer(meterRegistry, true, 60_000);
+        assertTrue(coalescer.admit(1L, MONOPOLY, now()));
+        coalescer.started(1L, MONOPOLY);
+
+        assertFalse(coalescer.admit(1L, MONOPOLY, now()));
+        assertEquals(1, coalesced("window"));
+    }
+
+    @Test
+    void collapsesWholeStartupBacklog() {
+        UpdateCoalescer coalescer = new UpdateCoalescer(meterRegistry, true, 0);
+        // Сообщения отправлены, пока бот лежал: до старта процесса
+        int beforeStart = now() - 3600;
+        for (int i = 0; i < 5; i++) {
+            boolean admitted = coalescer.admit(1L, MONOPOLY, beforeStart + i * 60);
+            assertEquals(i == 0, admitted);
+            coalescer.started(1L, MONOPOLY);
+        }
+        assertEquals(4, coalesced("backlog"));
+
+        // Новое нажатие после рестарта — уже не бэклог
+        assertTrue(coalescer.admit(1L, MONOPOLY, now()));
+    }
+
+    @Test
+    void passesEverythingWhenDisabled() {
+        UpdateCoalescer coalescer = new UpdateCoalescer(meterRegistry, false, 60_000);
+        assertTrue(coalescer.admit(1L, MONOPOLY, now()));
+        assertTrue(coalescer.admit(1L, MONOPOLY, now()));
+        assertTrue(coalescer.admit(1L, null, now()));
+        assertEquals(0, coalescer.size());
+    }
+
+    private double coalesced(String reason) {
+        return meterRegistry.get("bot.updates.coalesced").tag("reason", reason).counter().count();
+    }
+
+    private static int now() {
+        return (int) (System.currentTimeMillis() / 1000);
+    }
+
+    private static Route route(String id) {
+        return new Route(id, RouteAction.MEDIA, null, "media/" + id + ".mp4", id + ".mp4", null, true, null);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.hb.bot;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UpdateDispatcherTest {
+
+    private UpdateDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (dispatcher != null) {
+            dispatcher.destroy();
+        }
+    }
+
+    @Test
+    void keepsArrivalOrderWithinChat() throws InterruptedException {
+        dispatcher = new UpdateDispatcher(new SimpleMeterRegistry(), 8, 10_000);
+        int chats = 20;
+        int perChat = 200;
+        List<List<Integer>> seen = new ArrayList<>();
+        for (int c = 0; c < chats; c++) {
+            seen.add(Collections.synchronizedList(new ArrayList<>()));
+        }
+        CountDownLatch done = new CountDownLatch(chats * perChat);
+
+        for (int i = 0; i < perChat; i++) {
+            for (int c = 0; c < chats; c++) {
+                int chat = c;
+                int seq = i;
+                dispatcher.dispatch((long) chat, () -> {
+                    seen.get(chat).add(seq);
+                    done.countDown();
+                });
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        for (List<Integer> chatSeen : seen) {
+            for (int i = 0; i < perChat; i++) {
+                assertEquals(i, chatSeen.get(i));
+            }
+        }
+    }
+
+    @Test
+    void boundsConcurrentHandlers() throws InterruptedException {
+        int maxInFlight = 3;
+        dispatcher = new UpdateDispatcher(new SimpleMeterRegistry(), maxInFlight, 10_000);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(30);
+
+        for (long chat = 0; chat < 30; chat++) {
+            dispatcher.dispatch(chat, () -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(peak.get() <= maxInFlight, "peak " + peak.get());
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() throws InterruptedException {
+        dispatcher = new UpdateDispatcher(new SimpleMeterRegistry(), 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+
+        dispatcher.dispatch(1L, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertTrue(dispatcher.dispatch(1L, () -> { }));
+        assertFalse(dispatcher.dispatch(1L, () -> { }));
+        release.countDown();
+    }
+
+    @Test
+    void asyncHandlerHoldsChatOrderWithoutHoldingThread() throws Exception {
+        dispatcher = new UpdateDispatcher(new SimpleMeterRegistry(), 8, 100);
+        CompletableFuture<Void> firstReply = new CompletableFuture<>();
+        List<String> seen = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch otherChat = new CountDownLatch(1);
+
+        dispatcher.dispatchAsync(1L, () -> {
+            seen.add("first");
+            return firstReply.thenRun(() -> seen.add("first done"));
+        });
+        dispatcher.dispatch(1L, () -> seen.add("second"));
+        dispatcher.dispatch(2L, otherChat::countDown);
+
+        assertTrue(otherChat.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of("first"), seen);
+        assertFalse(dispatcher.isIdle(1L));
+
+        firstReply.complete(null);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!dispatcher.isIdle(1L) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of("first", "first done", "second"), seen);
+    }
+}
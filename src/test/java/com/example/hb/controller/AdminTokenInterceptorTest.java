@@ -0,0 +1,51 @@
+package com.example.hb.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdminTokenInterceptorTest {
+
+    private static final String HEADER = BroadcastController.TOKEN_HEADER;
+
+    @Test
+    void hidesEndpointsUntilTokenIsConfigured() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(new AdminTokenInterceptor(HEADER, "").preHandle(request("anything"), response, null));
+        assertEquals(404, response.getStatus());
+    }
+
+    @Test
+    void rejectsWrongOrMissingToken() {
+        AdminTokenInterceptor interceptor = new AdminTokenInterceptor(HEADER, "secret");
+
+        MockHttpServletResponse wrong = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(request("secreT"), wrong, null));
+        assertEquals(403, wrong.getStatus());
+
+        MockHttpServletResponse missing = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(request(null), missing, null));
+        assertEquals(403, missing.getStatus());
+    }
+
+    @Test
+    void passesMatchingToken() {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(new AdminTokenInterceptor(HEADER, "secret").preHandle(request("secret"), response, null));
+        assertEquals(200, response.getStatus());
+    }
+
+    private static MockHttpServletRequest request(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/broadcast");
+        if (token != null) {
+            request.addHeader(HEADER, token);
+        }
+        return request;
+    }
+}
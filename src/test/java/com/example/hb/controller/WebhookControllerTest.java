@@ -0,0 +1,132 @@
+package com.example.hb.controller;
+
+import com.example.hb.bot.EvgenBot;
+import com.example.hb.bot.ReplyTemplates;
+import com.example.hb.bot.RouteTable;
+import com.example.hb.bot.UpdateCoalescer;
+import com.example.hb.bot.UpdateDispatcher;
+import com.example.hb.config.RouteProperties;
+import com.example.hb.config.TelegramBotConfig;
+import com.example.hb.service.FileIdCacheService;
+import com.example.hb.service.JournalFileIdStore;
+import com.example.hb.service.JournalSubscriberStore;
+import com.example.hb.service.MediaDigestService;
+import com.example.hb.service.MediaStore;
+import com.example.hb.service.PriorityTaskExecutor;
+import com.example.hb.service.StartupTimings;
+import com.example.hb.service.SubscriberRegistry;
+import com.example.hb.service.TelegramSendScheduler;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Контроллер вызывается напрямую; до Bot API дело не доходит — ответ TEXT-маршрута уходит в теле webhook
+ */
+class WebhookControllerTest {
+
+    private static final String SECRET = "s3cr3t";
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private TelegramBotConfig config;
+    private UpdateDispatcher dispatcher;
+    private TelegramSendScheduler scheduler;
+    private WebhookController controller;
+
+    @BeforeEach
+    void setUp() {
+        config = new TelegramBotConfig();
+        ReflectionTestUtils.setField(config, "botToken", "123:webhook");
+        ReflectionTestUtils.setField(config, "botUsername", "webhook_bot");
+        ReflectionTestUtils.setField(config, "mode", "webhook");
+        ReflectionTestUtils.setField(config, "webhookSecret", SECRET);
+        controller = new WebhookController(newBot(), config);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.destroy();
+        scheduler.destroy();
+    }
+
+    @Test
+    void notFoundInPollingMode() {
+        ReflectionTestUtils.setField(config, "mode", "polling");
+
+        assertEquals(HttpStatus.NOT_FOUND, controller.onUpdate(update("меню"), SECRET).getStatusCode());
+    }
+
+    @Test
+    void rejectsWrongSecret() {
+        assertEquals(HttpStatus.FORBIDDEN, controller.onUpdate(update("меню"), "wrong").getStatusCode());
+        assertEquals(HttpStatus.FORBIDDEN, controller.onUpdate(update("меню"), null).getStatusCode());
+    }
+
+    @Test
+    void answersTextRouteInlineWhenChatIsIdle() throws Exception {
+        ResponseEntity<byte[]> response = controller.onUpdate(update("меню"), SECRET);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        JsonNode reply = objectMapper.readTree(response.getBody());
+        assertEquals("sendmessage", reply.get("method").asText());
+        assertEquals("42", reply.get("chat_id").asText());
+        assertEquals("Меню ещё не настроено", reply.get("text").asText());
+    }
+
+    @Test
+    void acceptsUpdateWithoutRouteWithEmptyBody() {
+        ResponseEntity<byte[]> response = controller.onUpdate(update("неизвестно"), SECRET);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNull(response.getBody());
+    }
+
+    private static byte[] update(String text) {
+        return """
+                {"update_id":1,"message":{"message_id":1,"date":%d,"chat":{"id":42,"type":"private"},"text":"%s"}}"""
+                .formatted(System.currentTimeMillis() / 1000, text).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private EvgenBot newBot() {
+        RouteProperties.RouteDefinition menu = new RouteProperties.RouteDefinition();
+        menu.setTriggers(List.of("меню"));
+        menu.setText("Меню ещё не настроено");
+        RouteProperties properties = new RouteProperties();
+        properties.getRoutes().put("menu", menu);
+        RouteTable routeTable = new RouteTable(properties);
+
+        MeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MediaStore mediaStore = new MediaStore(new PathMatchingResourcePatternResolver(), "media",
+                tempDir.resolve("media").toString());
+        FileIdCacheService cache = new FileIdCacheService(meterRegistry, new MediaDigestService(mediaStore),
+                new JournalFileIdStore(tempDir.resolve("cache.properties"), 60_000, 100), 600_000, 1000);
+        dispatcher = new UpdateDispatcher(meterRegistry, 4, 100);
+        scheduler = new TelegramSendScheduler(meterRegistry, 1000, 1000, 1000, 1000, 1000, 0, 2);
+        scheduler.afterPropertiesSet();
+        return new EvgenBot(config, routeTable, new ReplyTemplates(routeTable), cache, mediaStore, dispatcher,
+                new UpdateCoalescer(meterRegistry, false, 0), scheduler,
+                new PriorityTaskExecutor(meterRegistry, 8, 4, 2, 100),
+                new SubscriberRegistry(new JournalSubscriberStore(tempDir.resolve("subscribers.txt")),
+                        meterRegistry, 100),
+                new StartupTimings(meterRegistry), meterRegistry);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.hb.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DeliveryStoreTest {
+
+    private static final ScheduledDelivery FIRST =
+            new ScheduledDelivery("d1", 42, "video", 1_790_000_000_000L, "Europe/Moscow");
+    private static final ScheduledDelivery SECOND =
+            new ScheduledDelivery("d2", -1001234567890L, "шутка", 1_790_000_100_000L, "UTC");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void journalStoreContract() {
+        try (DeliveryStore store = new JournalDeliveryStore(tempDir.resolve("deliveries.txt"))) {
+            assertContract(store);
+        }
+    }
+
+    @Test
+    void journalStoreSurvivesRedeploy() {
+        Path journal = tempDir.resolve("deliveries.txt");
+        JournalDeliveryStore store = new JournalDeliveryStore(journal);
+        store.put(FIRST);
+        store.put(SECOND);
+        store.remove("d1");
+
+        assertEquals(List.of(SECOND), new JournalDeliveryStore(journal).loadAll());
+    }
+
+    @Test
+    void jdbcStoreContract() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        try (DeliveryStore store = new JdbcDeliveryStore(dataSource, "bot_delivery")) {
+            assertContract(store);
+        }
+    }
+
+    @Test
+    void redisStoreContract() throws IOException {
+        try (FakeRedisServer server = new FakeRedisServer();
+             RedisClient redis = new RedisClient(server.uri(), 2000)) {
+            assertContract(new RedisDeliveryStore(redis, "telegram:deliveries"));
+        }
+    }
+
+    private static void assertContract(DeliveryStore store) {
+        long since = System.currentTimeMillis();
+        assertNull(store.get("d1"));
+        store.put(new ScheduledDelivery("d1", 42, "video", 1, "UTC"));
+        store.put(FIRST);
+        store.put(SECOND);
+        assertEquals(FIRST, store.get("d1"));
+
+        store.remove("d2");
+        store.remove("missing");
+        assertNull(store.get("d2"));
+        assertEquals(List.of(FIRST), store.loadAll());
+        // Сверка лидера видит записанное с момента since, без выполненных и отменённых
+        assertEquals(List.of(FIRST), store.updatedSince(since));
+        assertEquals(List.of(), store.updatedSince(System.currentTimeMillis() + 60_000));
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.hb.service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Минимальный сервер с протоколом Redis для тестов: хэш-команды RedisFileIdStore,
+ * скрипты аренды RedisLeaseStore (EVAL узнаёт их по тексту и выполняет на Java)
+ * и sorted set со строками RedisSubscriberStore
+ */
+final class FakeRedisServer implements AutoCloseable {
+
+    private record Value(String value, long expiresAt) {
+    }
+
+    private final Map<String, Map<String, String>> hashes = new ConcurrentHashMap<>();
+    private final Map<String, Value> strings = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Double>> sortedSets = new ConcurrentHashMap<>();
+    private final List<Socket> connections = new ArrayList<>();
+    private final ServerSocket serverSocket;
+
+    FakeRedisServer() throws IOException {
+        serverSocket = new ServerSocket(0);
+        Thread acceptor = new Thread(this::accept, "fake-redis");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    URI uri() {
+        return URI.create("redis://:secret@localhost:" + serverSocket.getLocalPort() + "/2");
+    }
+
+    synchronized void dropConnections() throws IOException {
+        for (Socket connection : connections) {
+            connection.close();
+        }
+        connections.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        dropConnections();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket connection = serverSocket.accept();
+                synchronized (this) {
+                    connections.add(connection);
+                }
+                Thread handler = new Thread(() -> serve(connection), "fake-redis-connection");
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                return;
+            }
+        }
+    }
+
+    private void serve(Socket connection) {
+        try (connection) {
+            InputStream in = new BufferedInputStream(connection.getInputStream());
+            OutputStream out = connection.getOutputStream();
+            List<String> command;
+            while ((command = readCommand(in)) != null) {
+                String reply;
+                synchronized (this) {
+                    reply = execute(command);
+                }
+                out.write(reply.getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Соединение закрыто тестом
+        }
+    }
+
+    private String execute(List<String> command) {
+        switch (command.get(0)) {
+            case "AUTH":
+                return "secret".equals(command.get(1)) ? "+OK\r\n" : "-WRONGPASS invalid password\r\n";
+            case "SELECT":
+                return "+OK\r\n";
+            case "HGET":
+                return bulk(hash(command).get(command.get(2)));
+            case "HSET":
+                return integer(hash(command).put(command.get(2), command.get(3)) == null ? 1 : 0);
+            case "HDEL":
+                return integer(hash(command).remove(command.get(2)) == null ? 0 : 1);
+            case "HGETALL": {
+                Map<String, String> hash = hash(command);
+                StringBuilder reply = new StringBuilder("*" + hash.size() * 2 + "\r\n");
+                hash.forEach((key, value) -> reply.append(bulk(key)).append(bulk(value)));
+                return reply.toString();
+            }
+            case "HMGET": {
+                Map<String, String> hash = hash(command);
+                StringBuilder reply = new StringBuilder("*" + (command.size() - 2) + "\r\n");
+                command.subList(2, command.size()).forEach(field -> reply.append(bulk(hash.get(field))));
+                return reply.toString();
+            }
+            case "ZADD":
+                return integer(sortedSet(command).put(command.get(3), Double.parseDouble(command.get(2))) == null ? 1 : 0);
+            case "ZREM":
+                return integer(sortedSet(command).remove(command.get(2)) != null ? 1 : 0);
+            case "ZCARD":
+                return integer(sortedSet(command).size());
+            case "ZRANGEBYSCORE":
+                return rangeByScore(sortedSet(command), command.get(2),
+                        command.size() > 6 ? Integer.parseInt(command.get(6)) : Integer.MAX_VALUE);
+            case "GET": {
+                Value value = strings.get(command.get(1));
+                return bulk(value != null ? value.value() : null);
+            }
+            case "SET":
+                strings.put(command.get(1), new Value(command.get(2), Long.MAX_VALUE));
+                return "+OK\r\n";
+            case "EVAL":
+                return eval(command.get(1), command.get(3), command.subList(4, command.size()));
+            default:
+                return "-ERR unknown command\r\n";
+        }
+    }
+
+    private String eval(String script, String key, List<String> args) {
+        Value current = strings.get(key);
+        if (current != null && current.expiresAt() <= System.currentTimeMillis()) {
+            strings.remove(key);
+            current = null;
+        }
+        if (RedisLeaseStore.ACQUIRE_SCRIPT.equals(script)) {
+            if (current == null || current.value().equals(args.get(0))) {
+                strings.put(key, new Value(args.get(0), System.currentTimeMillis() + Long.parseLong(args.get(1))));
+                return integer(1);
+            }
+            return integer(0);
+        }
+        if (RedisLeaseStore.RELEASE_SCRIPT.equals(script)) {
+            if (current != null && current.value().equals(args.get(0))) {
+                strings.remove(key);
+                return integer(1);
+            }
+            return integer(0);
+        }
+        return "-ERR unknown script\r\n";
+    }
+
+    /**
+     * ZRANGEBYSCORE key min +inf [LIMIT 0 count]; min — число или (число для строгого сравнения
+     */
+    private static String rangeByScore(Map<String, Double> set, String min, int count) {
+        boolean exclusive = min.startsWith("(");
+        double bound = Double.parseDouble(exclusive ? min.substring(1) : min);
+        List<String> members = set.entrySet().stream()
+                .filter(entry -> exclusive ? entry.getValue() > bound : entry.getValue() >= bound)
+                .sorted(Map.Entry.<String, Double>comparingByValue().thenComparing(Map.Entry.comparingByKey()))
+                .limit(count)
+                .map(Map.Entry::getKey)
+                .toList();
+        StringBuilder reply = new StringBuilder("*" + members.size() + "\r\n");
+        members.forEach(member -> reply.append(bulk(member)));
+        return reply.toString();
+    }
+
+    private Map<String, Double> sortedSet(List<String> command) {
+        return sortedSets.computeIfAbsent(command.get(1), key -> new ConcurrentHashMap<>());
+    }
+
+    private Map<String, String> hash(List<String> command) {
+        return hashes.computeIfAbsent(command.get(1), key -> new ConcurrentHashMap<>());
+    }
+
+    private static String integer(long value) {
+        return ":" + value + "\r\n";
+    }
+
+    private static String bulk(String value) {
+        if (value == null) {
+            return "$-1\r\n";
+        }
+        return "$" + value.getBytes(StandardCharsets.UTF_8).length + "\r\n" + value + "\r\n";
+    }
+
+    private static List<String> readCommand(InputStream in) throws IOException {
+        String header = readLine(in);
+        if (header == null) {
+            return null;
+        }
+        int count = Integer.parseInt(header.substring(1));
+        List<String> args = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int length = Integer.parseInt(readLine(in).substring(1));
+            byte[] bytes = in.readNBytes(length + 2);
+            args.add(new String(bytes, 0, length, StandardCharsets.UTF_8));
+        }
+        return args;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b < 0) {
+                return null;
+            }
+            line.write(b);
+        }
+        in.read();
+        return line.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.hb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileIdCacheServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void journalSurvivesRestartWithoutSnapshot() throws IOException {
+        Path cacheFile = tempDir.resolve("cache.properties");
+        FileIdCacheService cache = open(cacheFile, 1000);
+        cache.saveFileId("media/a.mp4", "FILE_A");
+        cache.saveFileId("media/b.mp4", "FILE_B");
+        cache.removeFileId("media/a.mp4");
+        cache.flush();
+
+        assertFalse(Files.exists(cacheFile));
+        assertTrue(Files.exists(tempDir.resolve("cache.properties.journal")));
+
+        FileIdCacheService reopened = open(cacheFile, 1000);
+        assertNull(reopened.getFileId("media/a.mp4"));
+        assertEquals("FILE_B", reopened.getFileId("media/b.mp4"));
+    }
+
+    @Test
+    void compactsJournalIntoSnapshot() throws IOException {
+        Path cacheFile = tempDir.resolve("cache.properties");
+        FileIdCacheService cache = open(cacheFile, 3);
+        cache.saveFileId("media/a.mp4", "FILE_A");
+        cache.saveFileId("media/b.mp4", "FILE_B");
+        cache.saveFileId("media/a.mp4", "FILE_A2");
+        cache.flush();
+
+        assertTrue(Files.exists(cacheFile));
+        assertFalse(Files.exists(tempDir.resolve("cache.properties.journal")));
+        FileIdCacheService reopened = open(cacheFile, 3);
+        assertEquals("FILE_A2", reopened.getFileId("media/a.mp4"));
+        assertEquals("FILE_B", reopened.getFileId("media/b.mp4"));
+    }
+
+    @Test
+    void ignoresTruncatedJournalTail() throws IOException {
+        Path cacheFile = tempDir.resolve("cache.properties");
+        Files.writeString(tempDir.resolve("cache.properties.journal"),
+                "+media/a.mp4\tFILE_A\n+media/b.mp4\tFILE_", StandardCharsets.UTF_8, StandardOpenOption.CREATE);
+
+        FileIdCacheService cache = open(cacheFile, 1000);
+        assertEquals("FILE_A", cache.getFileId("media/a.mp4"));
+        assertFalse(cache.hasFileId("media/b.mp4"));
+
+        // Запись после оборванного хвоста не должна склеиться с ним
+        cache.saveFileId("media/b.mp4", "FILE_B");
+        cache.saveFileId("media/c.mp4", "FILE_C");
+        cache.flush();
+        FileIdCacheService reopened = open(cacheFile, 1000);
+        assertEquals("FILE_A", reopened.getFileId("media/a.mp4"));
+        assertEquals("FILE_B", reopened.getFileId("media/b.mp4"));
+        assertEquals("FILE_C", reopened.getFileId("media/c.mp4"));
+    }
+
+    @Test
+    void keysEntriesByContentAndMigratesPathKeys() throws IOException {
+        Path cacheFile = tempDir.resolve("cache.properties");
+        Files.writeString(cacheFile, "media/IMG_0451.MP4=LEGACY_ID\n", StandardCharsets.ISO_8859_1);
+        MediaDigestService digests = digests(tempDir.resolve("media"));
+
+        FileIdCacheService cache = open(cacheFile, 1000, digests);
+        assertEquals("LEGACY_ID", cache.getFileId("media/IMG_0451.MP4"));
+        cache.flush();
+
+        FileIdCacheService reopened = open(cacheFile, 1000, digests);
+        assertEquals("LEGACY_ID", reopened.getFileId("media/IMG_0451.MP4"));
+        // Тот же файл под другим именем — тот же File ID
+        assertEquals(digests.getContentKey("media/IMG_0451.MP4"), digests.getContentKey("media/../media/IMG_0451.MP4"));
+        assertEquals("LEGACY_ID", reopened.getFileId("media/../media/IMG_0451.MP4"));
+        assertNull(reopened.getFileId("media/IMG_0128.MOV"));
+    }
+
+    private static FileIdCacheService open(Path cacheFile, int compactThreshold) {
+        return open(cacheFile, compactThreshold, digests(cacheFile.resolveSibling("media")));
+    }
+
+    private static FileIdCacheService open(Path cacheFile, int compactThreshold, MediaDigestService digests) {
+        // Большой интервал: в тестах сбрасываем журнал вручную через flush()
+        return new FileIdCacheService(new SimpleMeterRegistry(), digests,
+                new JournalFileIdStore(cacheFile, 60_000, compactThreshold), 600_000, 1000);
+    }
+
+    private static MediaDigestService digests(Path storeDir) {
+        return new MediaDigestService(
+                new MediaStore(new PathMatchingResourcePatternResolver(), "media", storeDir.toString()));
+    }
+}
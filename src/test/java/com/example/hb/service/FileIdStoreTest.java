@@ -0,0 +1,121 @@
+package com.example.hb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FileIdStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void journalStoreContract() {
+        try (FileIdStore store = new JournalFileIdStore(tempDir.resolve("cache.properties"), 60_000, 100)) {
+            assertContract(store);
+        }
+    }
+
+    @Test
+    void jdbcStoreContract() {
+        try (FileIdStore store = new JdbcFileIdStore(h2(), "file_id_cache")) {
+            assertContract(store);
+        }
+    }
+
+    @Test
+    void redisStoreContract() throws IOException {
+        try (FakeRedisServer server = new FakeRedisServer();
+             RedisClient redis = new RedisClient(server.uri(), 2000)) {
+            FileIdStore store = new RedisFileIdStore(redis, "telegram:file-ids");
+            assertContract(store);
+            // Оборванное соединение переоткрывается прозрачно
+            server.dropConnections();
+            assertEquals("FILE_B", store.get("sha256:b"));
+        }
+    }
+
+    @Test
+    void replicaReusesFileIdUploadedByAnother() {
+        DriverManagerDataSource dataSource = h2();
+        MediaDigestService digests = new MediaDigestService(
+                new MediaStore(new PathMatchingResourcePatternResolver(), "media", tempDir.resolve("media").toString()));
+        FileIdCacheService first = new FileIdCacheService(new SimpleMeterRegistry(), digests,
+                new JdbcFileIdStore(dataSource, "file_id_cache"), 600_000, 1000);
+        FileIdCacheService second = new FileIdCacheService(new SimpleMeterRegistry(), digests,
+                new JdbcFileIdStore(dataSource, "file_id_cache"), 0, 1000);
+
+        assertNull(second.getFileId("media/IMG_0451.MP4"));
+        first.saveFileId("media/IMG_0451.MP4", "FILE_A");
+        assertEquals("FILE_A", second.getFileId("media/IMG_0451.MP4"));
+
+        // Без TTL near-cache второй реплики сразу видит инвалидацию первой
+        first.removeFileId("media/IMG_0451.MP4");
+        assertNull(second.getFileId("media/IMG_0451.MP4"));
+    }
+
+    @Test
+    void nearCacheEvictsWhenFull() {
+        MediaDigestService digests = new MediaDigestService(
+                new MediaStore(new PathMatchingResourcePatternResolver(), "media", tempDir.resolve("media").toString()));
+        Map<String, String> backing = new ConcurrentHashMap<>();
+        FileIdStore store = new FileIdStore() {
+            @Override
+            public String get(String key) {
+                return backing.get(key);
+            }
+
+            @Override
+            public void put(String key, String fileId) {
+                backing.put(key, fileId);
+            }
+
+            @Override
+            public void remove(String key) {
+                backing.remove(key);
+            }
+
+            @Override
+            public Map<String, String> loadAll() {
+                return Map.copyOf(backing);
+            }
+        };
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FileIdCacheService cache = new FileIdCacheService(registry, digests, store, 600_000, 2);
+        cache.saveFileId("media/a.mp4", "FILE_A");
+        cache.saveFileId("media/b.mp4", "FILE_B");
+        cache.saveFileId("media/c.mp4", "FILE_C");
+
+        assertEquals(2.0, registry.get("telegram.fileid.cache.size").gauge().value());
+        // Вытесненная запись читается из хранилища
+        assertEquals("FILE_A", cache.getFileId("media/a.mp4"));
+        assertEquals(1.0, registry.get("telegram.fileid.cache.lookups").tag("result", "store").counter().count());
+    }
+
+    private static void assertContract(FileIdStore store) {
+        assertNull(store.get("sha256:a"));
+        store.put("sha256:a", "FILE_A");
+        store.put("sha256:b", "FILE_B");
+        store.put("sha256:a", "FILE_A2");
+        assertEquals("FILE_A2", store.get("sha256:a"));
+        store.remove("sha256:a");
+        store.remove("sha256:missing");
+        assertNull(store.get("sha256:a"));
+        assertEquals(Map.of("sha256:b", "FILE_B"), store.loadAll());
+    }
+
+    private static DriverManagerDataSource h2() {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+    }
+}
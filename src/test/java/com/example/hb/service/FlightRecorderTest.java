@@ -0,0 +1,81 @@
+package com.example.hb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FlightRecorderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private FlightRecorder recorder;
+    private TelegramSendScheduler scheduler;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.destroy();
+        }
+        recorder.destroy();
+    }
+
+    @Test
+    void apiCallQueuedForAnUpdateCarriesItsIds() throws Exception {
+        recorder = start(3);
+        scheduler = new TelegramSendScheduler(new SimpleMeterRegistry(), 1000, 1000, 1000, 1000, 1000, 0, 2);
+        scheduler.afterPropertiesSet();
+
+        // Вызов выполняется на потоке планировщика, а не там, где апдейт был получен
+        UpdateTrace.with(new UpdateTrace(42, 7),
+                () -> scheduler.submit(42L, TaskPriority.INTERACTIVE, "sendVideo", 1024, () -> "ok")).join();
+
+        Path dump = recorder.dump();
+        List<RecordedEvent> calls = RecordingFile.readAllEvents(dump).stream()
+                .filter(event -> event.getEventType().getName().equals("com.example.hb.ApiCall"))
+                .toList();
+        assertEquals(1, calls.size());
+        RecordedEvent call = calls.get(0);
+        assertEquals(42, call.getLong("chatId"));
+        assertEquals(7, call.getLong("updateId"));
+        assertEquals("sendVideo", call.getString("method"));
+        assertEquals(1024, call.getLong("bytes"));
+        assertEquals(1, call.getInt("attempt"));
+    }
+
+    @Test
+    void keepsOnlyTheNewestDumps() throws Exception {
+        recorder = start(2);
+        Path first = recorder.dump();
+        Thread.sleep(5);
+        recorder.dump();
+        Thread.sleep(5);
+        Path last = recorder.dump();
+
+        try (Stream<Path> dumps = Files.list(tempDir)) {
+            assertEquals(2, dumps.count());
+        }
+        assertTrue(Files.notExists(first));
+        assertEquals(last, recorder.findDump(last.getFileName().toString()));
+        assertNull(recorder.findDump("../" + last.getFileName()));
+    }
+
+    private FlightRecorder start(int maxDumps) {
+        FlightRecorder flightRecorder = new FlightRecorder(true, 600_000, 16, tempDir.toString(), maxDumps);
+        flightRecorder.afterPropertiesSet();
+        assertTrue(flightRecorder.isRecording());
+        return flightRecorder;
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.hb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaderElectionTest {
+
+    @Test
+    void inMemoryLeaseContract() throws InterruptedException {
+        assertLeaseContract(new InMemoryLeaseStore());
+    }
+
+    @Test
+    void jdbcLeaseContract() throws InterruptedException {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        assertLeaseContract(new JdbcLeaseStore(dataSource, "bot_lease"));
+    }
+
+    @Test
+    void redisLeaseContract() throws IOException, InterruptedException {
+        try (FakeRedisServer server = new FakeRedisServer();
+             RedisClient redis = new RedisClient(server.uri(), 2000)) {
+            assertLeaseContract(new RedisLeaseStore(redis, "telegram:lease:"));
+        }
+    }
+
+    @Test
+    void followerTakesOverWhenLeaderStops() throws InterruptedException {
+        LeaseStore store = new InMemoryLeaseStore();
+        LeaderElection first = election(store);
+        LeaderElection second = election(store);
+
+        first.tick();
+        second.tick();
+        assertTrue(first.isLeader());
+        assertFalse(second.isLeader());
+
+        // Лидер завис и не продлевает аренду — после истечения срока её забирает вторая реплика
+        Thread.sleep(250);
+        second.tick();
+        assertTrue(second.isLeader());
+        first.tick();
+        assertFalse(first.isLeader());
+
+        // Штатная остановка отпускает аренду сразу
+        second.destroy();
+        first.tick();
+        assertTrue(first.isLeader());
+        first.destroy();
+    }
+
+    @Test
+    void stepsDownWhenStoreIsUnavailable() throws InterruptedException {
+        boolean[] failing = {false};
+        LeaseStore store = new InMemoryLeaseStore() {
+            @Override
+            public boolean tryAcquire(String name, String owner, Duration ttl) {
+                if (failing[0]) {
+                    throw new IllegalStateException("store is down");
+                }
+                return super.tryAcquire(name, owner, ttl);
+            }
+        };
+        LeaderElection election = new LeaderElection(store, new SimpleMeterRegistry(), "test", 200, 0);
+        election.tick();
+        assertTrue(election.isLeader());
+
+        failing[0] = true;
+        // Аренда ещё точно наша — держим лидерство
+        election.tick();
+        assertTrue(election.isLeader());
+
+        Thread.sleep(250);
+        election.tick();
+        assertFalse(election.isLeader());
+        election.destroy();
+    }
+
+    @Test
+    void stepsDownWhenStoreCallHangs() throws InterruptedException {
+        CountDownLatch hang = new CountDownLatch(1);
+        boolean[] hanging = {false};
+        LeaseStore store = new InMemoryLeaseStore() {
+            @Override
+            public boolean tryAcquire(String name, String owner, Duration ttl) {
+                if (hanging[0]) {
+                    try {
+                        hang.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.tryAcquire(name, owner, ttl);
+            }
+        };
+        LeaderElection election = election(store);
+        election.tick();
+        assertTrue(election.isLeader());
+
+        // Продление зависло дольше аренды — лидерство снимается по сроку, а не по ответу хранилища
+        hanging[0] = true;
+        long start = System.nanoTime();
+        election.tick();
+        assertFalse(election.isLeader());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(200));
+
+        hang.countDown();
+        election.destroy();
+    }
+
+    private static LeaderElection election(LeaseStore store) {
+        return new LeaderElection(store, new SimpleMeterRegistry(), "test", 200, 50);
+    }
+
+    private static void assertLeaseContract(LeaseStore store) throws InterruptedException {
+        Duration ttl = Duration.ofMillis(200);
+        assertTrue(store.tryAcquire("bot", "a", ttl));
+        assertFalse(store.tryAcquire("bot", "b", ttl));
+        // Продление своей аренды
+        assertTrue(store.tryAcquire("bot", "a", ttl));
+        // Чужой release ничего не меняет
+        store.release("bot", "b");
+        assertFalse(store.tryAcquire("bot", "b", ttl));
+        store.release("bot", "a");
+        assertTrue(store.tryAcquire("bot", "b", ttl));
+
+        Thread.sleep(250);
+        assertTrue(store.tryAcquire("bot", "a", ttl));
+    }
+}
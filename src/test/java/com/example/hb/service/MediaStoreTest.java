@@ -0,0 +1,81 @@
+package com.example.hb.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MediaStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void extractsMediaFromJarOnceAndReusesIt() throws IOException, NoSuchAlgorithmException {
+        byte[] content = "not really a video".getBytes();
+        Path jar = tempDir.resolve("media.jar");
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+            // Запись каталога, как в собранном jar: без неё classpath*: не находит файлы при сканировании
+            out.putNextEntry(new JarEntry("media/"));
+            out.closeEntry();
+            out.putNextEntry(new JarEntry("media/clip.mp4"));
+            out.write(content);
+            out.closeEntry();
+        }
+        Path storeDir = tempDir.resolve("store");
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[]{jar.toUri().toURL()}, null)) {
+            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(classLoader);
+            Path extracted = new MediaStore(resolver, "media", storeDir.toString()).getPath("media/clip.mp4");
+            assertTrue(extracted.startsWith(storeDir));
+            assertEquals("clip.mp4", extracted.getFileName().toString());
+            assertArrayEquals(content, Files.readAllBytes(extracted));
+
+            FileTime extractedAt = FileTime.fromMillis(0);
+            Files.setLastModifiedTime(extracted, extractedAt);
+            MediaStore restarted = new MediaStore(resolver, "media", storeDir.toString());
+            assertEquals(extracted, restarted.getPath("media/clip.mp4"));
+            assertEquals(extractedAt, Files.getLastModifiedTime(extracted));
+
+            MediaFile clip = restarted.getMediaFile("media/clip.mp4");
+            assertEquals(MediaKind.VIDEO, clip.kind());
+            assertEquals("video/mp4", clip.mimeType());
+            assertEquals(content.length, clip.size());
+            assertEquals(MediaDigestService.CONTENT_KEY_PREFIX + HexFormat.of().formatHex(
+                    MessageDigest.getInstance("SHA-256").digest(content)), clip.contentKey());
+            assertEquals(clip.contentKey(), new MediaDigestService(restarted).getContentKey("media/clip.mp4"));
+            assertEquals(List.of(clip), List.copyOf(restarted.getMediaFiles()));
+
+            assertFalse(restarted.exists("media/missing.mp4"));
+            assertNull(restarted.getMediaFile("media/missing.mp4"));
+            assertNull(restarted.getPath("media/missing.mp4"));
+        }
+    }
+
+    @Test
+    void detectsKindByExtension() {
+        assertEquals(MediaKind.VIDEO, MediaKind.of("IMG_0128.MOV"));
+        assertEquals(MediaKind.PHOTO, MediaKind.of("card.JPEG"));
+        assertNull(MediaKind.of("notes.txt"));
+        assertEquals("video/quicktime", MediaKind.mimeType("IMG_0128.MOV"));
+        assertEquals("application/octet-stream", MediaKind.mimeType("README"));
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.hb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PriorityTaskExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PriorityTaskExecutor executor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (executor != null) {
+            executor.destroy();
+        }
+    }
+
+    @Test
+    void freedSlotGoesToHighestPriority() throws Exception {
+        executor = new PriorityTaskExecutor(meterRegistry, 1, 1, 1, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        List<TaskPriority> order = Collections.synchronizedList(new ArrayList<>());
+
+        CompletableFuture<Boolean> blocker = executor.submit(TaskPriority.BACKGROUND,
+                () -> release.await(5, TimeUnit.SECONDS));
+        List<CompletableFuture<?>> queued = new ArrayList<>();
+        for (TaskPriority priority : List.of(TaskPriority.BACKGROUND, TaskPriority.UPLOAD, TaskPriority.INTERACTIVE)) {
+            queued.add(executor.submit(priority, () -> order.add(priority)));
+        }
+        assertEquals(1, executor.getQueued(TaskPriority.INTERACTIVE));
+
+        release.countDown();
+        blocker.get(5, TimeUnit.SECONDS);
+        CompletableFuture.allOf(queued.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(TaskPriority.INTERACTIVE, TaskPriority.UPLOAD, TaskPriority.BACKGROUND), order);
+    }
+
+    @Test
+    void backgroundCannotTakeEverySlot() throws Exception {
+        executor = new PriorityTaskExecutor(meterRegistry, 4, 4, 1, 100);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runningBackground = new AtomicInteger();
+        AtomicInteger peakBackground = new AtomicInteger();
+
+        List<CompletableFuture<?>> background = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            background.add(executor.submit(TaskPriority.BACKGROUND, () -> {
+                peakBackground.accumulateAndGet(runningBackground.incrementAndGet(), Math::max);
+                release.await(5, TimeUnit.SECONDS);
+                return runningBackground.decrementAndGet();
+            }));
+        }
+        // Фоновая работа занимает своё единственное место, загрузка пользователя проходит сразу
+        assertEquals("FILE_ID", executor.submit(TaskPriority.UPLOAD, () -> "FILE_ID").get(5, TimeUnit.SECONDS));
+
+        release.countDown();
+        CompletableFuture.allOf(background.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        assertEquals(1, peakBackground.get());
+    }
+
+    @Test
+    void shedsTasksWhenQueueIsFull() throws Exception {
+        executor = new PriorityTaskExecutor(meterRegistry, 1, 1, 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit(TaskPriority.BACKGROUND, () -> release.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> waiting = executor.submit(TaskPriority.BACKGROUND, () -> "queued");
+
+        CompletableFuture<String> shed = executor.submit(TaskPriority.BACKGROUND, () -> "shed");
+        ExecutionException e = assertThrows(ExecutionException.class, shed::get);
+        assertInstanceOf(RejectedExecutionException.class, e.getCause());
+        assertEquals(1, meterRegistry.get("bot.executor.rejected").tag("priority", "background").counter().count());
+
+        release.countDown();
+        assertEquals("queued", waiting.get(5, TimeUnit.SECONDS));
+        assertTrue(meterRegistry.get("bot.executor.queue.wait").tag("priority", "background").timer().count() >= 2);
+    }
+}
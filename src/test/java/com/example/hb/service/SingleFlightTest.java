@@ -0,0 +1,87 @@
+package com.example.hb.service;
+
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+
+    @Test
+    void concurrentCallersShareOneExecution() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 10;
+
+        List<Future<SingleFlight.Result<String>>> results = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < callers; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("media/a.mp4", () -> {
+                    executions.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "FILE_A";
+                })));
+            }
+            // Даём всем вызовам встать в ожидание первого
+            Thread.sleep(100);
+            release.countDown();
+
+            int leaders = 0;
+            for (Future<SingleFlight.Result<String>> result : results) {
+                assertEquals("FILE_A", result.get().value());
+                leaders += result.get().leader() ? 1 : 0;
+            }
+            assertEquals(1, leaders);
+        }
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void failureIsNotCached() throws TelegramApiException {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        assertThrows(TelegramApiException.class, () -> singleFlight.execute("media/a.mp4", () -> {
+            throw new TelegramApiException("upload failed");
+        }));
+        assertEquals("FILE_A", singleFlight.execute("media/a.mp4", () -> "FILE_A").value());
+    }
+
+    @Test
+    void asyncCallersJoinLeaderAndRetryAfterFailure() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CompletableFuture<String> upload = new CompletableFuture<>();
+        AtomicInteger executions = new AtomicInteger();
+
+        CompletableFuture<SingleFlight.Result<String>> leader = singleFlight.executeAsync("media/a.mp4", () -> {
+            executions.incrementAndGet();
+            return upload;
+        });
+        CompletableFuture<SingleFlight.Result<String>> joined = singleFlight.executeAsync("media/a.mp4", () -> {
+            executions.incrementAndGet();
+            return CompletableFuture.completedFuture("FILE_RETRY");
+        });
+        assertEquals(1, executions.get());
+
+        upload.completeExceptionally(new TelegramApiException("upload failed"));
+        assertThrows(ExecutionException.class, leader::get);
+        // Ожидающий не наследует ошибку лидера, а выполняет работу сам
+        assertEquals(new SingleFlight.Result<>("FILE_RETRY", true), joined.get(5, TimeUnit.SECONDS));
+        assertEquals(2, executions.get());
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.hb.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SubscriberStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void journalStoreContract() {
+        try (SubscriberStore store = new JournalSubscriberStore(tempDir.resolve("subscribers.txt"))) {
+            assertContract(store);
+        }
+    }
+
+    @Test
+    void journalStoreSurvivesRestart() {
+        Path journal = tempDir.resolve("subscribers.txt");
+        JournalSubscriberStore store = new JournalSubscriberStore(journal);
+        store.add(3);
+        store.add(1);
+        store.remove(3);
+        store.saveCheckpoint("state");
+
+        JournalSubscriberStore restarted = new JournalSubscriberStore(journal);
+        assertEquals(List.of(1L), restarted.page(Long.MIN_VALUE, 10));
+        assertEquals("state", restarted.loadCheckpoint());
+    }
+
+    @Test
+    void jdbcStoreContract() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        try (SubscriberStore store = new JdbcSubscriberStore(dataSource, "bot_subscriber", "bot_broadcast")) {
+            assertContract(store);
+        }
+    }
+
+    @Test
+    void redisStoreContract() throws IOException {
+        try (FakeRedisServer server = new FakeRedisServer();
+             RedisClient redis = new RedisClient(server.uri(), 2000)) {
+            assertContract(new RedisSubscriberStore(redis, "telegram:subscribers", "telegram:broadcast"));
+        }
+    }
+
+    @Test
+    void registryStoresRepeatedStartOnce() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SubscriberRegistry registry = new SubscriberRegistry(
+                new JournalSubscriberStore(tempDir.resolve("subscribers.txt")), meterRegistry, 100);
+
+        registry.subscribe(42L);
+        registry.subscribe(42L);
+        registry.unsubscribe(42L);
+        registry.subscribe(42L);
+
+        assertEquals(1, registry.count());
+        assertEquals(2.0, meterRegistry.get("bot.subscribers.changes").tag("change", "subscribed").counter().count());
+    }
+
+    private static void assertContract(SubscriberStore store) {
+        assertNull(store.loadCheckpoint());
+        assertTrue(store.add(-1001234567890L));
+        assertTrue(store.add(5));
+        assertTrue(store.add(7));
+        assertTrue(store.add(9));
+        assertFalse(store.add(7));
+        store.remove(9);
+        store.remove(11);
+
+        assertEquals(3, store.count());
+        assertEquals(List.of(-1001234567890L, 5L), store.page(Long.MIN_VALUE, 2));
+        assertEquals(List.of(7L), store.page(5, 2));
+        assertEquals(List.of(), store.page(7, 2));
+
+        store.saveCheckpoint("first");
+        store.saveCheckpoint("second\nline");
+        assertEquals("second\nline", store.loadCheckpoint());
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.hb.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.ApiResponse;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TelegramSendSchedulerTest {
+
+    private TelegramSendScheduler scheduler;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        scheduler.destroy();
+    }
+
+    @Test
+    void interactiveRepliesOvertakeBackgroundWork() throws Exception {
+        // Один токен в секунду на весь бот: всё, кроме первого запроса, ждёт в очереди
+        scheduler = start(1, 100);
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        CompletableFuture<String> first = scheduler.submit(1L, TaskPriority.BACKGROUND, "first", () -> {
+            firstStarted.countDown();
+            return "first";
+        });
+        assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> background = scheduler.submit(2L, TaskPriority.BACKGROUND, "bg", () -> {
+            order.add("background");
+            return null;
+        }).thenAccept(ignored -> { });
+        CompletableFuture<Void> interactive = scheduler.submit(3L, TaskPriority.INTERACTIVE, "reply", () -> {
+            order.add("interactive");
+            return null;
+        }).thenAccept(ignored -> { });
+
+        CompletableFuture.allOf(first, background, interactive).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("interactive", "background"), order);
+    }
+
+    @Test
+    void retriesAfterTooManyRequests() throws Exception {
+        scheduler = start(30, 100);
+        AtomicInteger attempts = new AtomicInteger();
+        long start = System.nanoTime();
+
+        String result = scheduler.submit(1L, TaskPriority.INTERACTIVE, "sendMessage", () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw tooManyRequests(1);
+            }
+            return "sent";
+        }).get(5, TimeUnit.SECONDS);
+
+        assertEquals("sent", result);
+        assertEquals(2, attempts.get());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    @Test
+    void limitsMessagesPerChat() throws Exception {
+        scheduler = start(30, 10);
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        // burst 3 + 10 сообщений/с на чат: 8 сообщений займут не меньше 0.5 с
+        for (int i = 0; i < 8; i++) {
+            futures.add(scheduler.submit(1L, TaskPriority.INTERACTIVE, "sendMessage", System::nanoTime));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+        long elapsed = futures.get(futures.size() - 1).get() - start;
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(450), "elapsed " + elapsed);
+    }
+
+    @Test
+    void uploadsLeaveASlotForReplies() throws Exception {
+        // Два места на всё: первая загрузка занимает одно, вторая ждёт, ответ идёт во второе
+        scheduler = start(1000, 1000);
+        CountDownLatch uploading = new CountDownLatch(1);
+        CompletableFuture<Void> finishUpload = new CompletableFuture<>();
+        CompletableFuture<String> first = scheduler.submit(1L, TaskPriority.UPLOAD, "sendVideo", 10_000_000, () -> {
+            uploading.countDown();
+            finishUpload.join();
+            return "first";
+        });
+        assertTrue(uploading.await(5, TimeUnit.SECONDS));
+        CompletableFuture<String> second = scheduler.submit(2L, TaskPriority.UPLOAD, "sendVideo", 10_000_000,
+                () -> "second");
+
+        String reply = scheduler.submit(3L, TaskPriority.INTERACTIVE, "sendMessage", () -> "reply")
+                .get(5, TimeUnit.SECONDS);
+        assertEquals("reply", reply);
+        assertFalse(second.isDone());
+
+        finishUpload.complete(null);
+        assertEquals("first", first.get(5, TimeUnit.SECONDS));
+        assertEquals("second", second.get(5, TimeUnit.SECONDS));
+    }
+
+    private TelegramSendScheduler start(double globalPerSecond, double chatPerSecond) {
+        scheduler = new TelegramSendScheduler(new SimpleMeterRegistry(), globalPerSecond, chatPerSecond, 3, 20, 3, 3, 2);
+        scheduler.afterPropertiesSet();
+        return scheduler;
+    }
+
+    private static TelegramApiRequestException tooManyRequests(int retryAfter) {
+        try {
+            ApiResponse<Object> response = new ObjectMapper().readValue(
+                    "{\"ok\":false,\"error_code\":429,\"description\":\"Too Many Requests: retry after " + retryAfter
+                            + "\",\"parameters\":{\"retry_after\":" + retryAfter + "}}",
+                    new TypeReference<>() { });
+            return new TelegramApiRequestException("Error sending message", response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
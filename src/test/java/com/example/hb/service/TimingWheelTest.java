@@ -0,0 +1,79 @@
+package com.example.hb.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    @Test
+    void firesEveryEntryOnFirstTickNotBeforeItsDeadline() {
+        long start = 1_000_500;
+        TimingWheel<Long> wheel = new TimingWheel<>(100, start);
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            // От соседнего тика до нескольких часов: записи на всех уровнях, через границы ячеек
+            long deadline = start + 100 + (long) (Math.pow(random.nextDouble(), 4) * 5 * 3_600_000);
+            deadlines.add(deadline);
+            assertTrue(wheel.schedule("d" + i, deadline, deadline));
+        }
+
+        List<Long> fired = new ArrayList<>();
+        long now = start;
+        while (wheel.size() > 0) {
+            now += 100 + random.nextInt(5000);
+            long tickNow = now;
+            wheel.advance(now, deadline -> {
+                assertTrue(deadline <= tickNow, "fired before its deadline");
+                fired.add(deadline);
+            });
+        }
+
+        assertEquals(deadlines.size(), fired.size());
+        deadlines.sort(null);
+        List<Long> sorted = new ArrayList<>(fired);
+        sorted.sort(null);
+        assertEquals(deadlines, sorted);
+    }
+
+    @Test
+    void firesWithinOneTickWhenAdvancedEveryTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 0);
+        wheel.schedule("soon", 1500, "soon");
+        wheel.schedule("later", 64 * 64 * 1000 + 250, "later");
+        List<Long> firedAt = new ArrayList<>();
+        for (long now = 1000; now <= 64 * 64 * 1000 + 2000; now += 1000) {
+            long tick = now;
+            wheel.advance(now, value -> firedAt.add(tick));
+        }
+        assertEquals(List.of(2000L, 64L * 64 * 1000 + 1000), firedAt);
+    }
+
+    @Test
+    void cancelsReplacesAndRejectsDueEntries() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 10_000);
+        wheel.schedule("a", 20_000, "first");
+        wheel.schedule("a", 30_000, "second");
+        assertEquals(1, wheel.size());
+        assertFalse(wheel.schedule("b", 10_000, "due"));
+        assertThrows(IllegalArgumentException.class,
+                () -> wheel.schedule("c", 10_000 + 2 * TimingWheel.range(1000), "never"));
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(25_000, fired::add);
+        assertEquals(List.of(), fired);
+        assertEquals("second", wheel.cancel("a"));
+        assertNull(wheel.cancel("a"));
+        wheel.advance(40_000, fired::add);
+        assertEquals(List.of(), fired);
+    }
+}